@@ -0,0 +1,55 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Deterministic world shared by the benchmarks, built by {@link WorldGenerator}.
+ * The same seed and scale always build the same data, so results can be compared between releases.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkWorld {
+    @Param({"42"})
+    public long seed;
+
+    // Multiple of the world.sql size; run with -p scale=1000 for millions of cities
+    @Param({"1", "100"})
+    public int scale;
+
+    public WorldSnapshot snapshot;
+    public Country country;
+    public City city;
+    public Capital capital;
+    public Population population;
+    public Language language;
+
+    // Filter values that exist in the data, taken from the most populous rows
+    public String continent;
+    public String region;
+    public String countryName;
+    public String district;
+    public String cityName;
+    public int n = 10;
+
+    @Setup(Level.Trial)
+    public void build() {
+        snapshot = new WorldGenerator(seed, scale).snapshot();
+
+        country = new Country(snapshot);
+        city = new City(snapshot);
+        capital = new Capital(snapshot);
+        population = new Population(snapshot);
+        language = new Language(snapshot);
+
+        Country top = country.getAllCountriesByPopulation().get(0);
+        City largest = city.getCities().get(0);
+        continent = top.continent;
+        region = top.region;
+        countryName = top.name;
+        district = largest.district;
+        cityName = largest.name;
+    }
+}
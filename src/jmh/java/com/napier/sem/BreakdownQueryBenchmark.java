@@ -0,0 +1,82 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The continent breakdown as SQL against the embedded database: the old country JOIN city query,
+ * which aggregates one row per city and counts each country once per city, against the query that
+ * sums city population per country before joining.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BreakdownQueryBenchmark {
+
+    private static final String FAN_OUT = "SELECT country.Continent AS Name, " +
+            "SUM(country.Population) AS Total_Population, " +
+            "SUM(city.Population) AS City_Population, " +
+            "SUM(country.Population) - SUM(city.Population) AS No_City_Population, " +
+            "(SUM(city.Population) / SUM(country.Population)) * 100 AS City_Percentage, " +
+            "((SUM(country.Population) - SUM(city.Population)) / SUM(country.Population)) * 100 AS No_City_Percentage " +
+            "FROM country JOIN city ON country.Code = city.CountryCode " +
+            "GROUP BY country.Continent " +
+            "ORDER BY Total_Population DESC";
+
+    private static final String PRE_AGGREGATED = Population.breakdownQuery("country.Continent", "country.Continent");
+
+    @Param({"42"})
+    public long seed;
+
+    // Multiple of the world.sql size
+    @Param({"1", "20"})
+    public int scale;
+
+    private EmbeddedDatabase db;
+    private Population population;
+
+    @Setup(Level.Trial)
+    public void build() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(seed, scale).writeSql(sql);
+        db = new EmbeddedDatabase();
+        db.runScript(new StringReader(sql.toString()));
+        population = new Population(db);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        db.close();
+    }
+
+    @Benchmark
+    public ArrayList<Population> fanOutJoin() {
+        return population.getPopulation(FAN_OUT);
+    }
+
+    @Benchmark
+    public ArrayList<Population> preAggregatedCities() {
+        return population.getPopulation(PRE_AGGREGATED);
+    }
+}
@@ -0,0 +1,53 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query benchmarks for every Capital report.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapitalBenchmark {
+
+    @Benchmark
+    public ArrayList<Capital> getCapitals(BenchmarkWorld w) {
+        return w.capital.getCapitals();
+    }
+
+    @Benchmark
+    public ArrayList<Capital> getCapitalsContinent(BenchmarkWorld w) {
+        return w.capital.getCapitalsContinent(w.continent);
+    }
+
+    @Benchmark
+    public ArrayList<Capital> getCapitalsRegion(BenchmarkWorld w) {
+        return w.capital.getCapitalsRegion(w.region);
+    }
+
+    @Benchmark
+    public ArrayList<Capital> getCapitalsPopulation(BenchmarkWorld w) {
+        return w.capital.getCapitalsPopulation(w.n);
+    }
+
+    @Benchmark
+    public ArrayList<Capital> topCapitalsContinent(BenchmarkWorld w) {
+        return w.capital.topCapitalsContinent(w.continent, w.n);
+    }
+
+    @Benchmark
+    public ArrayList<Capital> topCapitalsRegion(BenchmarkWorld w) {
+        return w.capital.topCapitalsRegion(w.region, w.n);
+    }
+}
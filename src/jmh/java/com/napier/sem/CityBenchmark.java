@@ -0,0 +1,73 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query benchmarks for every City report.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CityBenchmark {
+
+    @Benchmark
+    public ArrayList<City> getCities(BenchmarkWorld w) {
+        return w.city.getCities();
+    }
+
+    @Benchmark
+    public ArrayList<City> getCitiesContinent(BenchmarkWorld w) {
+        return w.city.getCitiesContinent(w.continent);
+    }
+
+    @Benchmark
+    public ArrayList<City> getCitiesRegion(BenchmarkWorld w) {
+        return w.city.getCitiesRegion(w.region);
+    }
+
+    @Benchmark
+    public ArrayList<City> getCitiesCountry(BenchmarkWorld w) {
+        return w.city.getCitiesCountry(w.countryName);
+    }
+
+    @Benchmark
+    public ArrayList<City> getCitiesDistrict(BenchmarkWorld w) {
+        return w.city.getCitiesDistrict(w.district);
+    }
+
+    @Benchmark
+    public ArrayList<City> getCitiesPopulation(BenchmarkWorld w) {
+        return w.city.getCitiesPopulation(w.n);
+    }
+
+    @Benchmark
+    public ArrayList<City> getTopCitiesContinent(BenchmarkWorld w) {
+        return w.city.getTopCitiesContinent(w.continent, w.n);
+    }
+
+    @Benchmark
+    public ArrayList<City> getTopCitiesRegion(BenchmarkWorld w) {
+        return w.city.getTopCitiesRegion(w.region, w.n);
+    }
+
+    @Benchmark
+    public ArrayList<City> getTopCitiesCountry(BenchmarkWorld w) {
+        return w.city.getTopCitiesCountry(w.countryName, w.n);
+    }
+
+    @Benchmark
+    public ArrayList<City> getTopCitiesDistrict(BenchmarkWorld w) {
+        return w.city.getTopCitiesDistrict(w.district, w.n);
+    }
+}
@@ -0,0 +1,53 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query benchmarks for every Country report.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountryBenchmark {
+
+    @Benchmark
+    public ArrayList<Country> getAllCountriesByPopulation(BenchmarkWorld w) {
+        return w.country.getAllCountriesByPopulation();
+    }
+
+    @Benchmark
+    public ArrayList<Country> getCountriesByContinent(BenchmarkWorld w) {
+        return w.country.getCountriesByContinent(w.continent);
+    }
+
+    @Benchmark
+    public ArrayList<Country> getCountriesByRegion(BenchmarkWorld w) {
+        return w.country.getCountriesByRegion(w.region);
+    }
+
+    @Benchmark
+    public ArrayList<Country> getTopCountriesInWorld(BenchmarkWorld w) {
+        return w.country.getTopCountriesInWorld(w.n);
+    }
+
+    @Benchmark
+    public ArrayList<Country> getTopCountriesInContinent(BenchmarkWorld w) {
+        return w.country.getTopCountriesInContinent(w.continent, w.n);
+    }
+
+    @Benchmark
+    public ArrayList<Country> getTopCountriesInRegion(BenchmarkWorld w) {
+        return w.country.getTopCountriesInRegion(w.region, w.n);
+    }
+}
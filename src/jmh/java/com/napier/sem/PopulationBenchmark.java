@@ -0,0 +1,68 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query benchmarks for every Population report.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopulationBenchmark {
+
+    @Benchmark
+    public ArrayList<Population> continentPopulation(BenchmarkWorld w) {
+        return w.population.continentPopulation();
+    }
+
+    @Benchmark
+    public ArrayList<Population> regionPopulation(BenchmarkWorld w) {
+        return w.population.regionPopulation();
+    }
+
+    @Benchmark
+    public ArrayList<Population> countryPopulation(BenchmarkWorld w) {
+        return w.population.countryPopulation();
+    }
+
+    @Benchmark
+    public ArrayList<Population> populationWorld(BenchmarkWorld w) {
+        return w.population.populationWorld();
+    }
+
+    @Benchmark
+    public ArrayList<Population> populationContinent(BenchmarkWorld w) {
+        return w.population.populationContinent(w.continent);
+    }
+
+    @Benchmark
+    public ArrayList<Population> populationRegion(BenchmarkWorld w) {
+        return w.population.populationRegion(w.region);
+    }
+
+    @Benchmark
+    public ArrayList<Population> populationCountry(BenchmarkWorld w) {
+        return w.population.populationCountry(w.countryName);
+    }
+
+    @Benchmark
+    public ArrayList<Population> populationDistrict(BenchmarkWorld w) {
+        return w.population.populationDistrict(w.district);
+    }
+
+    @Benchmark
+    public ArrayList<Population> populationCity(BenchmarkWorld w) {
+        return w.population.populationCity(w.cityName);
+    }
+}
@@ -0,0 +1,124 @@
+package com.napier.sem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the console (printX) and Markdown file (outputX) renderers.
+ *
+ * Console output is discarded so only formatting is measured. File output goes to the
+ * reports directory like a normal run, overwriting bench-*.md on every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    /**
+     * Report rows rendered by every benchmark, fetched once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Rows {
+        ArrayList<Country> countries;
+        ArrayList<City> cities;
+        ArrayList<Capital> capitals;
+        ArrayList<Population> breakdown;
+        ArrayList<Population> single;
+        ArrayList<Language> languages;
+        private PrintStream console;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkWorld w) {
+            countries = w.country.getAllCountriesByPopulation();
+            cities = w.city.getCities();
+            capitals = w.capital.getCapitals();
+            breakdown = w.population.countryPopulation();
+            single = w.population.populationDistrict(w.district);
+            languages = w.language.getLanguages();
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.setOut(console);
+        }
+    }
+
+    @Benchmark
+    public void printCountries(BenchmarkWorld w, Rows r) {
+        w.country.printCountries(r.countries);
+    }
+
+    @Benchmark
+    public void printCities(BenchmarkWorld w, Rows r) {
+        w.city.printCities(r.cities);
+    }
+
+    @Benchmark
+    public void printCapitals(BenchmarkWorld w, Rows r) {
+        w.capital.printCapitals(r.capitals);
+    }
+
+    @Benchmark
+    public void printPopulation(BenchmarkWorld w, Rows r) {
+        w.population.printPopulation(r.breakdown);
+    }
+
+    @Benchmark
+    public void printSinglePopulation(BenchmarkWorld w, Rows r) {
+        w.population.printSinglePopulation(r.single);
+    }
+
+    @Benchmark
+    public void printLanguages(BenchmarkWorld w, Rows r) {
+        w.language.printLanguages(r.languages);
+    }
+
+    @Benchmark
+    public void outputCountries(BenchmarkWorld w, Rows r) {
+        w.country.outputCountries(r.countries, "bench-countries.md");
+    }
+
+    @Benchmark
+    public void outputCities(BenchmarkWorld w, Rows r) {
+        w.city.outputCities(r.cities, "bench-cities.md");
+    }
+
+    @Benchmark
+    public void outputCapitals(BenchmarkWorld w, Rows r) {
+        w.capital.outputCapitals(r.capitals, "bench-capitals.md");
+    }
+
+    @Benchmark
+    public void outputPopulation(BenchmarkWorld w, Rows r) {
+        w.population.outputPopulation(r.breakdown, "bench-population.md");
+    }
+
+    @Benchmark
+    public void outputSinglePopulation(BenchmarkWorld w, Rows r) {
+        w.population.outputSinglePopulation(r.single, "bench-single-population.md");
+    }
+
+    @Benchmark
+    public void outputLanguage(BenchmarkWorld w, Rows r) {
+        w.language.outputLanguage(r.languages, "bench-languages.md");
+    }
+}
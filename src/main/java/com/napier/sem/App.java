@@ -1,19 +1,56 @@
 package com.napier.sem;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 
 public class App
 {
     /**
-     * Connection to MySQL database.
+     * Whether the last connect() got a valid connection from the pool.
      */
-    Connection con = null;
+    boolean connected = false;
     /**
-     * Connect to the MySQL database.
+     * Pool of connections the reports borrow from, one connection per query.
+     */
+    ConnectionPool pool = null;
+    /**
+     * How long the last connect() took.
+     */
+    long startupMillis = -1;
+    /**
+     * In-process database standing in for MySQL when -Ddb.embedded is set.
+     */
+    EmbeddedDatabase embedded = null;
+    /**
+     * Connect to the database chosen by {@link #databaseFactory()}.
      */
     public void connect() {
+        connect(databaseFactory());
+    }
+
+    /**
+     * Where physical connections come from:
+     * -Ddb.embedded=db/world.sql boots an in-process H2 database loaded from that dump (H2 ships in the jar),
+     * -Ddb.url=jdbc:... connects to any JDBC URL, otherwise MySQL on localhost:33060 in TEST_MODE or in Docker.
+     */
+    ConnectionProvider databaseFactory() {
+        String script = System.getProperty("db.embedded");
+        if (script != null) {
+            try {
+                long start = System.currentTimeMillis();
+                embedded = EmbeddedDatabase.fromScript(new File(script));
+                System.out.println("Loaded embedded database from " + script + " in " + (System.currentTimeMillis() - start) + "ms");
+                return embedded;
+            } catch (SQLException | IOException e) {
+                System.out.println("Could not start embedded database: " + e.getMessage());
+                System.exit(-1);
+            }
+        }
+
         try
         {
             // Load Database driver
@@ -25,54 +62,112 @@ public class App
             System.exit(-1);
         }
 
-        int retries = 10;
-        for (int i = 0; i < retries; ++i)
+        // Dynamically set the connection URL based on TEST_MODE, unless one is given
+        String dbUrl = System.getProperty("db.url");
+        if (dbUrl != null) {
+            System.out.println("Using database " + dbUrl);
+        } else if ("true".equals(System.getProperty("TEST_MODE"))) {
+            // For tests: Connect to host-exposed port
+            dbUrl = "jdbc:mysql://localhost:33060/world?useSSL=false&allowPublicKeyRetrieval=true";
+        } else {
+            // For production (inside Docker): Use service name
+            dbUrl = "jdbc:mysql://db:3306/world?useSSL=false&allowPublicKeyRetrieval=true";
+        }
+        // Connector/J ignores the fetch size unless server-side cursors are switched on
+        if (QueryHelper.FETCH_MODE == QueryHelper.FetchMode.CURSOR) {
+            dbUrl = withCursorFetch(dbUrl);
+        }
+        String url = dbUrl;
+        return () -> DriverManager.getConnection(url, "root", "example");
+    }
+
+    /**
+     * Add useCursorFetch=true to a MySQL URL that does not set it already.
+     */
+    static String withCursorFetch(String url) {
+        if (url.contains("useCursorFetch")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "useCursorFetch=true";
+    }
+
+    /**
+     * Connect through a pool over {@code factory}, retrying with exponential backoff until
+     * -Ddb.startupTimeoutMillis (default 5 minutes) has passed.
+     */
+    public void connect(ConnectionProvider factory) {
+        pool = new ConnectionPool(factory, ConnectionPool.Settings.fromSystemProperties());
+
+        // Try straight away, then back off exponentially until the start-up deadline passes
+        long deadlineMillis = Long.getLong("db.startupTimeoutMillis", 300000);
+        Backoff backoff = new Backoff(Long.getLong("db.backoffInitialMillis", 100),
+                Long.getLong("db.backoffMaxMillis", 5000));
+        long start = System.nanoTime();
+        long deadline = start + deadlineMillis * 1_000_000L;
+        int attempt = 0;
+        while (true)
         {
+            attempt++;
             System.out.println("Connecting to database...");
             try
             {
-                if ("true".equals(System.getProperty("TEST_MODE"))) {
-                    Thread.sleep(1000);  // 1 sec for integration tests
-                } else {
-                    Thread.sleep(30000); // 30 sec for real runtime
-                }
-                // Dynamically set the connection URL based on TEST_MODE
-                String dbUrl;
-                if ("true".equals(System.getProperty("TEST_MODE"))) {
-                    // For tests: Connect to host-exposed port
-                    dbUrl = "jdbc:mysql://localhost:33060/world?useSSL=false&allowPublicKeyRetrieval=true";
-                } else {
-                    // For production (inside Docker): Use service name
-                    dbUrl = "jdbc:mysql://db:3306/world?useSSL=false&allowPublicKeyRetrieval=true";
+                // Readiness probe: the first borrow must open a connection that answers isValid(),
+                // and goes straight back to the pool so every permit is left for the reports
+                try (Connection probe = pool.getConnection()) {
+                    if (!probe.isValid(5)) {
+                        throw new SQLException("connection is not ready");
+                    }
                 }
-                // Connect to database
-                con = DriverManager.getConnection(dbUrl, "root", "example");
-                System.out.println("Successfully connected");
+                connected = true;
+                startupMillis = (System.nanoTime() - start) / 1_000_000L;
+                System.out.println("Successfully connected after " + attempt + " attempt(s) in " + startupMillis + "ms");
                 break;
             }
             catch (SQLException sqle)
             {
-                System.out.println("Failed to connect to database attempt " + (i + 1) + ": " + sqle.getMessage());
+                System.out.println("Failed to connect to database attempt " + attempt + ": " + sqle.getMessage());
+            }
+
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMillis <= 0) {
+                startupMillis = (System.nanoTime() - start) / 1_000_000L;
+                System.out.println("Gave up connecting to database after " + startupMillis + "ms");
+                break;
+            }
+            try
+            {
+                Thread.sleep(Math.min(backoff.nextDelayMillis(), remainingMillis));
             }
             catch (InterruptedException ie)
             {
-                System.out.println("Thread interrupted? Should not happen.");
+                Thread.currentThread().interrupt();
+                System.out.println("Interrupted while waiting to reconnect.");
+                break;
             }
         }
     }
 
     /**
-     * Disconnect from the MySQL database.
+     * Milliseconds connect() spent before the database was ready (or before giving up).
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * Close the pool, and with it every connection to the database.
      */
     public void disconnect() {
-        if (con != null) {
-            try {
-                con.close();
+        if (pool != null) {
+            pool.close();
+            if (connected) {
                 System.out.println("Disconnected.");
-            } catch (SQLException sqle) {
-                System.out.println("Failed to close connection.");
             }
         }
+        connected = false;
+        if (embedded != null) {
+            embedded.close();
+        }
     }
 
     public static void main(String[] args)
@@ -83,6 +178,47 @@ public class App
         // Connect to database
         a.connect();
 
+        // Print per-report latency, rows, bytes and failures every -Dmetrics.dumpSeconds seconds
+        int dumpSeconds = Integer.getInteger("metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            ReportMetrics.startDump(dumpSeconds);
+        }
+
+        // "batch [reports]" writes reports 1-32 (or e.g. "1-6,23") in parallel and exits
+        if (args.length > 0 && "batch".equals(args[0])) {
+            int threads = Integer.getInteger("batch.threads", ConnectionPool.Settings.fromSystemProperties().maxSize);
+            List<Integer> reports = ReportBatch.parse(args.length > 1 ? args[1] : null);
+            long start = System.currentTimeMillis();
+            ReportBatch batch = new ReportBatch(a.pool, threads);
+            batch.setVirtualThreads(Boolean.getBoolean("batch.virtualThreads"));
+            List<ReportBatch.Result> results = batch.run(reports);
+            ReportBatch.printSummary(results, System.currentTimeMillis() - start);
+            if (dumpSeconds > 0) {
+                ReportMetrics.printSummary();
+            }
+            a.disconnect();
+            return;
+        }
+
+        // "serve [port]" answers the reports over HTTP until the process is stopped
+        if (args.length > 0 && "serve".equals(args[0])) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : Integer.getInteger("http.port", 8080);
+            int threads = Integer.getInteger("http.threads", ConnectionPool.Settings.fromSystemProperties().maxSize);
+            try {
+                ReportServer server = new ReportServer(a.pool, port, threads, Integer.getInteger("http.queue", 100));
+                server.start();
+                System.out.println("Serving reports on http://localhost:" + server.getPort() + "/");
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    server.stop();
+                    a.disconnect();
+                }));
+            } catch (IOException e) {
+                System.out.println("Could not start HTTP server: " + e.getMessage());
+                a.disconnect();
+            }
+            return;
+        }
+
         // Check for CI environment (e.g., set NON_INTERACTIVE=true in workflow)
         String ciMode = System.getenv("NON_INTERACTIVE");  // Or use "CI" if preferred
         if ("true".equals(ciMode)) {
@@ -91,8 +227,43 @@ public class App
             a.disconnect();
             System.exit(0);
         } else {
-            // Normal interactive mode: start the menu
-            Menu menu = new Menu(a.con);
+            // Normal interactive mode: start the menu, from memory if -Dworld.snapshot=true
+            Menu menu = null;
+            if (Boolean.getBoolean("world.snapshot")) {
+                try {
+                    long start = System.currentTimeMillis();
+                    WorldSnapshot snapshot = new WorldSnapshot(a.pool);
+                    System.out.println("Loaded " + snapshot.getCountryCount() + " countries and " + snapshot.getCityCount()
+                            + " cities into memory in " + (System.currentTimeMillis() - start) + "ms");
+                    menu = new Menu(snapshot);
+                } catch (SQLException e) {
+                    System.out.println("Could not load world snapshot, using the database: " + e.getMessage());
+                }
+            }
+            boolean rollup = Boolean.getBoolean("population.rollup");
+            boolean tree = Boolean.getBoolean("population.tree");
+            if (menu != null) {
+                // The snapshot already answers every population report from memory
+                if (rollup || tree) {
+                    System.out.println("Using the world snapshot; population rollup and tree are not loaded");
+                }
+            } else {
+                menu = new Menu(a.pool);
+                if (rollup) {
+                    try {
+                        menu.setPopulationRollup(PopulationRollup.load(a.pool));
+                    } catch (SQLException e) {
+                        System.out.println("Could not load population rollup, using the database: " + e.getMessage());
+                    }
+                }
+                if (tree) {
+                    try {
+                        menu.setPopulationTree(PopulationTree.load(a.pool));
+                    } catch (SQLException e) {
+                        System.out.println("Could not load population tree, using the database: " + e.getMessage());
+                    }
+                }
+            }
             menu.start();
         }
 
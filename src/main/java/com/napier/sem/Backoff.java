@@ -0,0 +1,47 @@
+package com.napier.sem;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for retrying the database connection at start-up.
+ *
+ * The n-th delay is drawn uniformly from [cap / 2, cap] where cap = initial * 2^n,
+ * limited to {@code maxMillis}, so restarted containers do not retry in lockstep.
+ */
+public class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private final Random random;
+    private int attempt;
+
+    public Backoff(long initialMillis, long maxMillis) {
+        this(initialMillis, maxMillis, new Random());
+    }
+
+    public Backoff(long initialMillis, long maxMillis, Random random) {
+        this.initialMillis = Math.max(1, initialMillis);
+        this.maxMillis = Math.max(this.initialMillis, maxMillis);
+        this.random = random;
+    }
+
+    /**
+     * Delay to wait before the next attempt.
+     */
+    public long nextDelayMillis() {
+        long cap = maxMillis;
+        // Stop shifting once the cap is reached so the value cannot overflow
+        if (attempt < 62 && initialMillis <= (maxMillis >> attempt)) {
+            cap = Math.min(maxMillis, initialMillis << attempt);
+        }
+        attempt++;
+        long half = cap / 2;
+        return half + (long) (random.nextDouble() * (cap - half + 1));
+    }
+
+    /**
+     * Number of delays handed out so far.
+     */
+    public int getAttempts() {
+        return attempt;
+    }
+}
@@ -1,8 +1,5 @@
 package com.napier.sem;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -15,9 +12,34 @@ public class Capital {
     public String country;
     public int population;
 
-    private Connection con;
+    private ConnectionProvider provider;
+    private WorldSnapshot snapshot;
+    private TopN topN;
+    private ReportCache cache = ReportCache.NONE;
+
+    private static final String[] HEADERS = {"Name", "Country", "Population"};
+
     public Capital(Connection con) {
-        this.con = con;
+        this(ConnectionProvider.of(con));
+    }
+
+    public Capital(ConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    // Answer every report from memory instead of MySQL
+    public Capital(WorldSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // Answer top N reports as a prefix of one full population ordering per filter value
+    public void setTopN(TopN topN) {
+        this.topN = topN;
+    }
+
+    // Serve repeated reports from a result cache instead of re-running the query
+    public void setCache(ReportCache cache) {
+        this.cache = cache;
     }
 
     public Capital() {
@@ -26,117 +48,124 @@ public class Capital {
 
     // All capital cities in the world
     public ArrayList<Capital> getCapitals() {
-        String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
-                "FROM city JOIN country ON city.ID = country.Capital " +
-                "ORDER BY city.Population DESC";
-        return executeQuery(query);
+        if (snapshot != null) {
+            return snapshot.capitals(WorldSnapshot.Scope.WORLD, null, WorldSnapshot.ALL);
+        }
+        return executeQuery(listReport(WorldSnapshot.Scope.WORLD), listQuery(WorldSnapshot.Scope.WORLD));
     }
 
     //All the capital cities in a continent
     public ArrayList<Capital> getCapitalsContinent(String continent) {
-        String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
-                "FROM city JOIN country ON city.ID = country.Capital " +
-                "WHERE country.Continent = ? " +
-                "ORDER BY city.Population DESC";
-        return executeQuery(query, continent);
+        if (snapshot != null) {
+            return snapshot.capitals(WorldSnapshot.Scope.CONTINENT, continent, WorldSnapshot.ALL);
+        }
+        return executeQuery(listReport(WorldSnapshot.Scope.CONTINENT), listQuery(WorldSnapshot.Scope.CONTINENT), continent);
     }
 
     //All the capital cities in a region
     public ArrayList<Capital> getCapitalsRegion(String region) {
-        String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
-                "FROM city JOIN country ON city.ID = country.Capital " +
-                "WHERE country.Region = ? " +
-                "ORDER BY city.Population DESC";
-        return executeQuery(query, region);
+        if (snapshot != null) {
+            return snapshot.capitals(WorldSnapshot.Scope.REGION, region, WorldSnapshot.ALL);
+        }
+        return executeQuery(listReport(WorldSnapshot.Scope.REGION), listQuery(WorldSnapshot.Scope.REGION), region);
     }
 
     //The top N populated capital cities in the world
     public ArrayList<Capital> getCapitalsPopulation(int n) {
+        if (snapshot != null) {
+            return snapshot.capitals(WorldSnapshot.Scope.WORLD, null, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("Capital.getCapitalsPopulation", new Object[]{n},
+                    () -> topN.top("capitals.world", null, n, () -> getCapitals()));
+        }
         String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
                 "FROM city JOIN country ON city.ID = country.Capital " +
                 "ORDER BY city.Population DESC LIMIT ?";
-        return executeQuery(query, n);
+        return executeQuery("Capital.getCapitalsPopulation", query, n);
     }
     //The top N populated capital cities in a continent
     public ArrayList<Capital> topCapitalsContinent(String continent, int n) {
+        if (snapshot != null) {
+            return snapshot.capitals(WorldSnapshot.Scope.CONTINENT, continent, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("Capital.topCapitalsContinent", new Object[]{continent, n},
+                    () -> topN.top("capitals.continent", continent, n, () -> getCapitalsContinent(continent)));
+        }
         String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
                 "FROM city JOIN country ON city.ID = country.Capital " +
                 "WHERE country.Continent = ? " +
                 "ORDER BY city.Population DESC LIMIT ?";
-        return executeQuery(query, continent, n);
+        return executeQuery("Capital.topCapitalsContinent", query, continent, n);
     }
 
     //The top N populated capital cities in a region
     public ArrayList<Capital> topCapitalsRegion(String region, int n) {
+        if (snapshot != null) {
+            return snapshot.capitals(WorldSnapshot.Scope.REGION, region, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("Capital.topCapitalsRegion", new Object[]{region, n},
+                    () -> topN.top("capitals.region", region, n, () -> getCapitalsRegion(region)));
+        }
         String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
                 "FROM city JOIN country ON city.ID = country.Capital " +
                 "WHERE country.Region = ? " +
                 "ORDER BY city.Population DESC LIMIT ?";
-        return executeQuery(query, region, n);
+        return executeQuery("Capital.topCapitalsRegion", query, region, n);
     }
 
-    // Query with no param
-    private ArrayList<Capital> executeQuery(String query) {
-        ArrayList<Capital> capitals = new ArrayList<Capital>();
-        try (PreparedStatement stmt = con.prepareStatement(query);
-             ResultSet rset = stmt.executeQuery();) {
-            while (rset.next()) {
-                Capital c = extractCapital(rset);
-                capitals.add(c);
-            }
-        } catch (Exception e) {
-            System.out.println("Query failed: " + e.getMessage());
+    // The unbounded list report for a scope, shared by the getters and streamCapitals
+    private static String listReport(WorldSnapshot.Scope scope) {
+        switch (scope) {
+            case WORLD:
+                return "Capital.getCapitals";
+            case CONTINENT:
+                return "Capital.getCapitalsContinent";
+            case REGION:
+                return "Capital.getCapitalsRegion";
+            default:
+                throw new IllegalArgumentException("No capital list report for " + scope);
         }
-        return capitals;
     }
 
-    // Query with one param
-    private ArrayList<Capital> executeQuery(String query, String param) {
-        ArrayList<Capital> capitals = new ArrayList<Capital>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1,  param);
-            try (ResultSet rset = stmt.executeQuery();) {
-                while (rset.next()) {
-                    Capital c = extractCapital(rset);
-                    capitals.add(c);
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Query failed: " + e.getMessage());
+    private static String listQuery(WorldSnapshot.Scope scope) {
+        String query = "SELECT city.Name, country.Name AS COUNTRY, city.Population " +
+                "FROM city JOIN country ON city.ID = country.Capital ";
+        switch (scope) {
+            case WORLD:
+                return query + "ORDER BY city.Population DESC";
+            case CONTINENT:
+                return query + "WHERE country.Continent = ? ORDER BY city.Population DESC";
+            case REGION:
+                return query + "WHERE country.Region = ? ORDER BY city.Population DESC";
+            default:
+                throw new IllegalArgumentException("No capital list report for " + scope);
         }
-        return capitals;
     }
 
-    // Query with int param
-    private ArrayList<Capital> executeQuery(String query, int n)  {
-        ArrayList<Capital> capitals = new ArrayList<Capital>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setInt(1,  n);
-            try (ResultSet rset = stmt.executeQuery();) {
-                while (rset.next()) {
-                    Capital c = extractCapital(rset);
-                    capitals.add(c);
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Query failed: " + e.getMessage());
-        }
-        return capitals;
+    // Run a report through the result cache
+    private ArrayList<Capital> executeQuery(String report, String query, Object... params) {
+        return ReportMetrics.time(report, params, () -> cache.get(report, params, () -> loadCapitals(report, query, params)));
     }
 
-    // Query with two param
-    private ArrayList<Capital> executeQuery(String query, String param, int i) {
+    // Query with any number of String/int params, on a connection borrowed for this query only
+    private ArrayList<Capital> loadCapitals(String report, String query, Object... params) {
         ArrayList<Capital> capitals = new ArrayList<Capital>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1,  param);
-            stmt.setInt(2, i);
+        try (Connection con = provider.getConnection();
+             PreparedStatement stmt = con.prepareStatement(query);) {
+            QueryHelper.bind(stmt, params);
+            long start = System.nanoTime();
             try (ResultSet rset = stmt.executeQuery();) {
                 while (rset.next()) {
                     Capital c = extractCapital(rset);
                     capitals.add(c);
                 }
             }
+            SlowQueryLog.get().check(con, report, query, params, System.nanoTime() - start, capitals.size());
         } catch (Exception e) {
+            ReportMetrics.recordFailure(report);
             System.out.println("Query failed: " + e.getMessage());
         }
         return capitals;
@@ -157,47 +186,12 @@ public class Capital {
             System.out.println("No countries found");
             return;
         }
+        ReportEvents.Render event = new ReportEvents.Render();
+        event.begin();
 
-        // Define column headers
-        String[] headers = {"Name", "Country", "Population"};
-
-        // Compute max width for each column
-        int[] widths = new int[headers.length];
-        for (int i = 0; i < headers.length; i++) {
-            widths[i] = headers[i].length();
-        }
-
-        for (Capital c : capitals) {
-            widths[0] = Math.max(widths[0], c.name.length());
-            widths[1] = Math.max(widths[1], c.country.length());
-            widths[2] = Math.max(widths[2], String.valueOf(c.population).length());
-        }
-
-        // Helper to print a borderline
-        Runnable printBorder = () -> {
-            for (int w : widths) {
-                System.out.print("+" + "-".repeat(w + 2));
-            }
-            System.out.println("+");
-        };
-
-        // Print header
-        printBorder.run();
-        for (int i = 0; i < headers.length; i++) {
-            System.out.printf("| %-" + widths[i] + "s ", headers[i]);
-        }
-        System.out.println("|");
-        printBorder.run();
-
-        // Print rows
-        for (Capital c : capitals) {
-            System.out.printf("| %-" + widths[0] + "s ", c.name);
-            System.out.printf("| %-" + widths[1] + "s ", c.country);
-            System.out.printf("| %-" + widths[2] + "s ", c.population);
-            System.out.println("|");
-        }
-
-        printBorder.run();
+        long chars = ConsoleTable.print(System.out, HEADERS, capitals, (c, row) -> row
+                .cell(c.name).cell(c.country).cell(c.population));
+        ReportEvents.commit(event, capitals.size(), chars);
     }
 
     public void outputCapitals(ArrayList<Capital> capitals, String filename) {
@@ -206,30 +200,96 @@ public class Capital {
             System.out.println("No capitals to output");
             return;
         }
-        System.out.println("Capital list has " + capitals.size() + " items. Generating Markdown...");
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("| Name | Country | Population |\r\n");
-        sb.append("| --- | --- | --- |\r\n");
-        for (Capital c : capitals) {
-            if (c == null) continue;
-            sb.append(" | " + c.name + " | " + c.country + " | " + c.population + "|\r\n");
-        }
-        System.out.println("Markdown content generated. Attempting to write to file: /app/reports/" + filename);
-        try {
-            File reportsDir = new File("/app/reports/");  // Absolute path to match volume mount
-            if (!reportsDir.exists()) {
-                boolean dirCreated = reportsDir.mkdirs();
-                System.out.println("Reports directory created: " + dirCreated + " at " + reportsDir.getAbsolutePath());
+        System.out.println("Capital list has " + capitals.size() + " items. Writing Markdown to: " + MarkdownWriter.REPORTS_DIR + filename);
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
+        long bytes = 0;
+        try (MarkdownWriter out = MarkdownWriter.open(filename, HEADERS)) {
+            for (Capital c : capitals) {
+                if (c == null) continue;
+                writeCapital(out, c);
             }
-            File outputFile = new File("/app/reports/" + filename);  // Absolute path
-            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-            writer.write(sb.toString());
-            writer.close();
-            System.out.println("File written successfully to: " + outputFile.getAbsolutePath());
+            bytes = out.getBytes();
+            ReportMetrics.recordBytes(bytes);
+            System.out.println("File written successfully to: " + MarkdownWriter.REPORTS_DIR + filename);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+        ReportEvents.commit(event, capitals.size(), bytes);
+    }
+
+    /**
+     * Streams the list report for {@code scope} (WORLD, CONTINENT or REGION, filtered by {@code name})
+     * straight from the ResultSet into a Markdown file in the ./reports/ directory, one row at a time,
+     * so memory use does not grow with the number of rows.
+     *
+     * @return The number of rows written, or -1 if the query failed or the file could not be
+     *         written, in which case no file is left.
+     */
+    public long streamCapitals(String filename, WorldSnapshot.Scope scope, String name) {
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
+        long rows;
+        try (MarkdownWriter out = MarkdownWriter.open(filename, HEADERS)) {
+            streamCapitals(out, scope, name);
+            ReportMetrics.recordBytes(out.getBytes());
+            ReportEvents.commit(event, out.getRows(), out.getBytes());
+            rows = out.getRows();
+        } catch (SQLException e) {
+            System.out.println("Query failed: " + e.getMessage());
+            rows = -1;
         } catch (IOException e) {
             System.out.println("Error writing file: " + e.getMessage());
-            e.printStackTrace();
+            rows = -1;
+        }
+        if (rows < 0) {
+            // A report cut short would look complete, so it is not left behind
+            MarkdownWriter.delete(filename);
+            return -1;
+        }
+        System.out.println("Streamed " + rows + " capitals to: " + MarkdownWriter.REPORTS_DIR + filename);
+        return rows;
+    }
+
+    /**
+     * Streams the list report for {@code scope} into {@code out}, encoding each row as it arrives
+     * without building Capital objects or going through the result cache.
+     *
+     * @return The number of rows written.
+     * @throws SQLException if the query fails, possibly after some rows were written.
+     */
+    public long streamCapitals(MarkdownWriter out, WorldSnapshot.Scope scope, String name) throws SQLException, IOException {
+        String report = listReport(scope);
+        Object[] params = scope == WorldSnapshot.Scope.WORLD ? new Object[0] : new Object[]{name};
+        long rows = out.getRows();
+        if (snapshot != null) {
+            // Snapshot reports are already in memory, so there is nothing to stream from
+            for (Capital c : snapshot.capitals(scope, name, WorldSnapshot.ALL)) {
+                writeCapital(out, c);
+            }
+            return out.getRows() - rows;
+        }
+        ReportEvents.Query event = new ReportEvents.Query();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = out.getBytes();
+        try {
+            QueryHelper.forEachRow(provider, report, listQuery(scope), params, rset -> out
+                    .cell(rset.getString("NAME"))
+                    .cell(rset.getString("COUNTRY"))
+                    .cell(rset.getInt("POPULATION"))
+                    .endRow());
+        } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
+            throw e;
+        } finally {
+            ReportMetrics.recordQuery(report, params, System.nanoTime() - start, out.getRows() - rows);
+            ReportEvents.commit(event, report, params, out.getRows() - rows, out.getBytes() - bytes);
         }
+        return out.getRows() - rows;
+    }
+
+    private static void writeCapital(MarkdownWriter out, Capital c) throws IOException {
+        out.cell(c.name).cell(c.country).cell(c.population).endRow();
     }
-}
\ No newline at end of file
+}
@@ -1,22 +1,48 @@
 package com.napier.sem;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
 
 public class City {
     public String name;
     public String country;
     public String district;
     public int population;
+    // Set only by getCitiesPage, as the key the next page continues after
+    int id;
 
-    private Connection con;
+    private ConnectionProvider provider;
+    private WorldSnapshot snapshot;
+    private TopN topN;
+    private ReportCache cache = ReportCache.NONE;
+
+    private static final String[] HEADERS = {"Name", "Country", "District", "Population"};
+    private static final ConsoleTable.Columns<City> COLUMNS = (c, row) -> row
+            .cell(c.name).cell(c.country).cell(c.district).cell(c.population);
 
     public City(Connection con) {
-        this.con = con;
+        this(ConnectionProvider.of(con));
+    }
+
+    public City(ConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    // Answer every report from memory instead of MySQL
+    public City(WorldSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // Answer top N reports as a prefix of one full population ordering per filter value
+    public void setTopN(TopN topN) {
+        this.topN = topN;
+    }
+
+    // Serve repeated reports from a result cache instead of re-running the query
+    public void setCache(ReportCache cache) {
+        this.cache = cache;
     }
 
     public City () {
@@ -25,150 +51,192 @@ public class City {
 
 //    All the cities in the world
     public ArrayList<City> getCities() {
-        String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "ORDER BY city.Population DESC ";
-        return executeCityQuery(query);
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.WORLD, null, WorldSnapshot.ALL);
+        }
+        // Unbounded, so fetched as -Dreport.fetchMode says
+        return executeCityQuery(listReport(WorldSnapshot.Scope.WORLD), QueryHelper.FETCH_MODE,
+                listQuery(WorldSnapshot.Scope.WORLD));
     }
 //    All the cities in a continent.
     public ArrayList<City> getCitiesContinent(String continent) {
-        String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Continent = ? " +
-                "ORDER BY city.Population DESC";
-        return executeCityQuery(query, continent);
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.CONTINENT, continent, WorldSnapshot.ALL);
+        }
+        return executeCityQuery(listReport(WorldSnapshot.Scope.CONTINENT), listQuery(WorldSnapshot.Scope.CONTINENT), continent);
     }
 //    All the cities in a region
     public ArrayList<City> getCitiesRegion(String region) {
-        String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Region = ? " +
-                "ORDER BY city.Population DESC";
-        return executeCityQuery(query, region);
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.REGION, region, WorldSnapshot.ALL);
+        }
+        return executeCityQuery(listReport(WorldSnapshot.Scope.REGION), listQuery(WorldSnapshot.Scope.REGION), region);
     }
 
 //    All the cities in a country
     public ArrayList<City> getCitiesCountry(String country) {
-        String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Name = ? " +
-                "ORDER BY city.Population DESC";
-        return executeCityQuery(query, country);
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.COUNTRY, country, WorldSnapshot.ALL);
+        }
+        return executeCityQuery(listReport(WorldSnapshot.Scope.COUNTRY), listQuery(WorldSnapshot.Scope.COUNTRY), country);
     }
 
 //    All the cities in a district
     public ArrayList<City> getCitiesDistrict(String district) {
-        String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE city.District = ? " +
-                "ORDER BY city.Population DESC";
-        return executeCityQuery(query, district);
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.DISTRICT, district, WorldSnapshot.ALL);
+        }
+        return executeCityQuery(listReport(WorldSnapshot.Scope.DISTRICT), listQuery(WorldSnapshot.Scope.DISTRICT), district);
     }
 
 //    The top N populated cities in the world
     public ArrayList<City> getCitiesPopulation(int n) {
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.WORLD, null, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("City.getCitiesPopulation", new Object[]{n},
+                    () -> topN.top("cities.world", null, n, () -> getCities()));
+        }
         String query =  "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
                 "FROM city JOIN country ON city.CountryCode = country.Code " +
                 "ORDER BY city.Population DESC LIMIT ? ";
-        return executeCityQuery(query, n);
+        return executeCityQuery("City.getCitiesPopulation", query, n);
     }
 //    The top N populated cities in a continent
     public ArrayList<City> getTopCitiesContinent(String continent, int n) {
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.CONTINENT, continent, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("City.getTopCitiesContinent", new Object[]{continent, n},
+                    () -> topN.top("cities.continent", continent, n, () -> getCitiesContinent(continent)));
+        }
         String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
                 "FROM city JOIN country ON city.CountryCode = country.Code " +
                 "WHERE country.Continent = ? " +
                 "ORDER BY city.Population DESC LIMIT ? ";
-        return executeCityQuery(query, continent, n);
+        return executeCityQuery("City.getTopCitiesContinent", query, continent, n);
     }
 
 //    The top N populated cities in a region
     public ArrayList<City> getTopCitiesRegion(String region, int n) {
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.REGION, region, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("City.getTopCitiesRegion", new Object[]{region, n},
+                    () -> topN.top("cities.region", region, n, () -> getCitiesRegion(region)));
+        }
         String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
                 "FROM city JOIN country ON city.CountryCode = country.Code " +
                 "WHERE country.Region = ? " +
                 "ORDER BY city.Population DESC LIMIT ? ";
-        return executeCityQuery(query, region, n);
+        return executeCityQuery("City.getTopCitiesRegion", query, region, n);
     }
 
 //    The top N populated cities in a country
     public ArrayList<City> getTopCitiesCountry(String country, int n) {
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.COUNTRY, country, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("City.getTopCitiesCountry", new Object[]{country, n},
+                    () -> topN.top("cities.country", country, n, () -> getCitiesCountry(country)));
+        }
         String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
                 "FROM city JOIN country ON city.CountryCode = country.Code " +
                 "WHERE country.Name = ? " +
                 "ORDER BY city.Population DESC LIMIT ? ";
-        return executeCityQuery(query, country, n);
+        return executeCityQuery("City.getTopCitiesCountry", query, country, n);
     }
 
 //    The top N populated cities in a district
     public ArrayList<City> getTopCitiesDistrict(String district, int n) {
+        if (snapshot != null) {
+            return snapshot.cities(WorldSnapshot.Scope.DISTRICT, district, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("City.getTopCitiesDistrict", new Object[]{district, n},
+                    () -> topN.top("cities.district", district, n, () -> getCitiesDistrict(district)));
+        }
         String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
                 "FROM city JOIN country ON city.CountryCode = country.Code " +
                 "WHERE city.District = ? " +
                 "ORDER BY city.Population DESC LIMIT ? ";
-        return executeCityQuery(query, district, n);
+        return executeCityQuery("City.getTopCitiesDistrict", query, district, n);
     }
 
-    //    Query without parameters
-    private ArrayList<City> executeCityQuery(String query) {
-        ArrayList<City> cities = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query); ResultSet rset = stmt.executeQuery()) {
-            while (rset.next()) {
-                City c = extractCity(rset);
-                cities.add(c);
-            }
-        } catch (SQLException e) {
-            System.out.println("Query failed: " + e.getMessage());
+    //    The unbounded list report for a scope, shared by the getters and streamCities
+    private static String listReport(WorldSnapshot.Scope scope) {
+        switch (scope) {
+            case WORLD:
+                return "City.getCities";
+            case CONTINENT:
+                return "City.getCitiesContinent";
+            case REGION:
+                return "City.getCitiesRegion";
+            case COUNTRY:
+                return "City.getCitiesCountry";
+            case DISTRICT:
+                return "City.getCitiesDistrict";
+            default:
+                throw new IllegalArgumentException("No city list report for " + scope);
         }
-        return cities;
     }
 
-    //    Query with one string parameter
-    private ArrayList<City> executeCityQuery(String query, String param) {
-        ArrayList<City> cities = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1, param);
-            try (ResultSet rset = stmt.executeQuery()) {
-                while (rset.next()) {
-                    City c = extractCity(rset);
-                    cities.add(c);
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Query failed: " + e.getMessage());
+    private static String listQuery(WorldSnapshot.Scope scope) {
+        String query = "SELECT city.Name, country.Name AS Country, city.District, city.Population " +
+                "FROM city JOIN country ON city.CountryCode = country.Code ";
+        switch (scope) {
+            case WORLD:
+                return query + "ORDER BY city.Population DESC";
+            case CONTINENT:
+                return query + "WHERE country.Continent = ? ORDER BY city.Population DESC";
+            case REGION:
+                return query + "WHERE country.Region = ? ORDER BY city.Population DESC";
+            case COUNTRY:
+                return query + "WHERE country.Name = ? ORDER BY city.Population DESC";
+            case DISTRICT:
+                return query + "WHERE city.District = ? ORDER BY city.Population DESC";
+            default:
+                throw new IllegalArgumentException("No city list report for " + scope);
         }
-        return cities;
     }
 
-    //  Query with one integer parameter
-    private ArrayList<City> executeCityQuery(String query, int n) {
-        ArrayList<City> cities = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setInt(1, n);
-            try (ResultSet rset = stmt.executeQuery()) {
-                while (rset.next()) {
-                    City c = extractCity(rset);
-                    cities.add(c);
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Query failed: " + e.getMessage());
-        }
-        return cities;
+    //    Run a report through the result cache
+    private ArrayList<City> executeCityQuery(String report, String query, Object... params) {
+        return executeCityQuery(report, QueryHelper.FetchMode.BUFFERED, query, params);
     }
 
-    //  Query with two parameters
-    private ArrayList<City> executeCityQuery(String query, String param, int n) {
+    private ArrayList<City> executeCityQuery(String report, QueryHelper.FetchMode mode, String query, Object... params) {
+        return ReportMetrics.time(report, params, () -> cache.get(report, params, () -> loadCities(report, mode, query, params)));
+    }
+
+    //    Query with any number of String/int parameters, on a connection borrowed for this query only,
+    //    recording how long the first row took to arrive
+    private ArrayList<City> loadCities(String report, QueryHelper.FetchMode mode, String query, Object... params) {
         ArrayList<City> cities = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1, param);
-            stmt.setInt(2, n);
+        try (Connection con = provider.getConnection();
+             PreparedStatement stmt = con.prepareStatement(query)) {
+            QueryHelper.applyFetchMode(stmt, mode);
+            QueryHelper.bind(stmt, params);
+            long start = System.nanoTime();
+            long firstRow = -1;
             try (ResultSet rset = stmt.executeQuery()) {
                 while (rset.next()) {
+                    if (firstRow < 0) {
+                        firstRow = System.nanoTime() - start;
+                    }
                     City c = extractCity(rset);
                     cities.add(c);
                 }
             }
+            long total = System.nanoTime() - start;
+            FirstRowLatency.record(report, mode, firstRow, total, cities.size());
+            SlowQueryLog.get().check(con, report, query, params, total, cities.size());
         } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
             System.out.println("Query failed: " + e.getMessage());
         }
         return cities;
@@ -190,49 +258,101 @@ public class City {
             System.out.println("No cities found");
             return;
         }
+        ReportEvents.Render event = new ReportEvents.Render();
+        event.begin();
 
-        // Define column headers
-        String[] headers = {"Name", "Country", "District", "Population"};
+        long chars = ConsoleTable.print(System.out, HEADERS, cities, COLUMNS);
+        ReportEvents.commit(event, cities.size(), chars);
+    }
 
-        // Compute max width for each column
-        int[] widths = new int[headers.length];
-        for (int i = 0; i < headers.length; i++) {
-            widths[i] = headers[i].length();
+    /**
+     * One page of the cities in a world, continent, region, country or district, largest first,
+     * continuing after {@code after} or from the top when it is null. Pages are found by keyset
+     * on (Population, ID) instead of OFFSET, so a late page costs the same as the first.
+     */
+    public ArrayList<City> getCitiesPage(WorldSnapshot.Scope scope, String name, City after, int limit) {
+        if (snapshot != null) {
+            throw new IllegalStateException("Paging needs a database connection");
         }
-
-        for (City c : cities) {
-            widths[0] = Math.max(widths[0], c.name.length());
-            widths[1] = Math.max(widths[1], c.country.length());
-            widths[2] = Math.max(widths[2], c.district.length());
-            widths[3] = Math.max(widths[3], String.valueOf(c.population).length());
+        String filter;
+        switch (scope) {
+            case WORLD: filter = null; break;
+            case CONTINENT: filter = "country.Continent = ?"; break;
+            case REGION: filter = "country.Region = ?"; break;
+            case COUNTRY: filter = "country.Name = ?"; break;
+            case DISTRICT: filter = "city.District = ?"; break;
+            default: throw new IllegalArgumentException("Cities cannot be listed by " + scope);
         }
-
-        // Helper to print a borderline
-        Runnable printBorder = () -> {
-            for (int w : widths) {
-                System.out.print("+" + "-".repeat(w + 2));
-            }
-            System.out.println("+");
-        };
-
-        // Print header
-        printBorder.run();
-        for (int i = 0; i < headers.length; i++) {
-            System.out.printf("| %-" + widths[i] + "s ", headers[i]);
+        ArrayList<Object> params = new ArrayList<>();
+        ArrayList<String> where = new ArrayList<>();
+        if (filter != null) {
+            where.add(filter);
+            params.add(name);
         }
-        System.out.println("|");
-        printBorder.run();
+        if (after != null) {
+            where.add("(city.Population < ? OR (city.Population = ? AND city.ID < ?))");
+            params.add(after.population);
+            params.add(after.population);
+            params.add(after.id);
+        }
+        params.add(limit);
+        String query = "SELECT city.ID, city.Name, country.Name AS Country, city.District, city.Population " +
+                "FROM city JOIN country ON city.CountryCode = country.Code " +
+                (where.isEmpty() ? "" : "WHERE " + String.join(" AND ", where) + " ") +
+                "ORDER BY city.Population DESC, city.ID DESC LIMIT ?";
+        String report = "City.getCitiesPage";
+        Object[] args = params.toArray();
+        return ReportMetrics.time(report, args, () -> loadCityPage(report, query, limit, args));
+    }
 
-        // Print rows
-        for (City c : cities) {
-            System.out.printf("| %-" + widths[0] + "s ", c.name);
-            System.out.printf("| %-" + widths[1] + "s ", c.country);
-            System.out.printf("| %-" + widths[2] + "s ", c.district);
-            System.out.printf("| %-" + widths[3] + "s ", c.population);
-            System.out.println("|");
+    private ArrayList<City> loadCityPage(String report, String query, int limit, Object... params) {
+        ArrayList<City> page = new ArrayList<>(limit);
+        try {
+            QueryHelper.forEachRow(provider, report, query, params, rset -> {
+                City c = extractCity(rset);
+                c.id = rset.getInt("ID");
+                page.add(c);
+            });
+        } catch (SQLException | IOException e) {
+            ReportMetrics.recordFailure(report);
+            System.out.println("Query failed: " + e.getMessage());
         }
+        return page;
+    }
 
-        printBorder.run();
+    /**
+     * Print the cities in a scope a page at a time, fetching each page only when {@code more}
+     * says to go on. Column widths come from the first page, so it shows at once; a later name
+     * too long for its column is cut short.
+     *
+     * @return the number of cities printed
+     */
+    public long pageCities(WorldSnapshot.Scope scope, String name, int pageSize, BooleanSupplier more) {
+        ArrayList<City> page = getCitiesPage(scope, name, null, pageSize);
+        if (page.isEmpty()) {
+            System.out.println("No cities found");
+            return 0;
+        }
+        ConsoleTable table = ConsoleTable.open(System.out, HEADERS, ConsoleTable.widths(HEADERS, page, COLUMNS));
+        long printed = 0;
+        while (true) {
+            ReportEvents.Render event = new ReportEvents.Render();
+            event.begin();
+            long chars = table.getWritten();
+            table.rows(page, COLUMNS);
+            printed += page.size();
+            ReportEvents.commit(event, page.size(), table.getWritten() - chars);
+            // A short page is the last one
+            if (page.size() < pageSize || !more.getAsBoolean()) {
+                break;
+            }
+            page = getCitiesPage(scope, name, page.get(page.size() - 1), pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+        }
+        table.end();
+        return printed;
     }
 
     public void outputCities(ArrayList<City> cities, String filename) {
@@ -241,31 +361,97 @@ public class City {
             System.out.println("No cities to output");
             return;
         }
-        System.out.println("City list has " + cities.size() + " items. Generating Markdown...");
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("| Name | Country | District | Population |\r\n");
-        sb.append("| --- | --- | --- | --- |\r\n");
-        for (City c : cities) {
-            if (c == null) continue;
-            sb.append(" | " + c.name + " | " + c.country + " | " +
-                    c.district + " | " + c.population + "|\r\n");
-        }
-        System.out.println("Markdown content generated. Attempting to write to file: /app/reports/" + filename);
-        try {
-            File reportsDir = new File("/app/reports/");  // Absolute path to match volume mount
-            if (!reportsDir.exists()) {
-                boolean dirCreated = reportsDir.mkdirs();
-                System.out.println("Reports directory created: " + dirCreated + " at " + reportsDir.getAbsolutePath());
+        System.out.println("City list has " + cities.size() + " items. Writing Markdown to: " + MarkdownWriter.REPORTS_DIR + filename);
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
+        long bytes = 0;
+        try (MarkdownWriter out = MarkdownWriter.open(filename, HEADERS)) {
+            for (City c : cities) {
+                if (c == null) continue;
+                writeCity(out, c);
             }
-            File outputFile = new File("/app/reports/" + filename);  // Absolute path
-            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-            writer.write(sb.toString());
-            writer.close();
-            System.out.println("File written successfully to: " + outputFile.getAbsolutePath());
+            bytes = out.getBytes();
+            ReportMetrics.recordBytes(bytes);
+            System.out.println("File written successfully to: " + MarkdownWriter.REPORTS_DIR + filename);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+        ReportEvents.commit(event, cities.size(), bytes);
+    }
+
+    /**
+     * Streams the list report for {@code scope} (WORLD, CONTINENT, REGION, COUNTRY or DISTRICT,
+     * filtered by {@code name}) straight from the ResultSet into a Markdown file in the ./reports/
+     * directory, one row at a time, so memory use does not grow with the number of rows.
+     *
+     * @return The number of rows written, or -1 if the query failed or the file could not be
+     *         written, in which case no file is left.
+     */
+    public long streamCities(String filename, WorldSnapshot.Scope scope, String name) {
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
+        long rows;
+        try (MarkdownWriter out = MarkdownWriter.open(filename, HEADERS)) {
+            streamCities(out, scope, name);
+            ReportMetrics.recordBytes(out.getBytes());
+            ReportEvents.commit(event, out.getRows(), out.getBytes());
+            rows = out.getRows();
+        } catch (SQLException e) {
+            System.out.println("Query failed: " + e.getMessage());
+            rows = -1;
         } catch (IOException e) {
             System.out.println("Error writing file: " + e.getMessage());
-            e.printStackTrace();
+            rows = -1;
+        }
+        if (rows < 0) {
+            // A report cut short would look complete, so it is not left behind
+            MarkdownWriter.delete(filename);
+            return -1;
         }
+        System.out.println("Streamed " + rows + " cities to: " + MarkdownWriter.REPORTS_DIR + filename);
+        return rows;
+    }
+
+    /**
+     * Streams the list report for {@code scope} into {@code out}, encoding each row as it arrives
+     * without building City objects or going through the result cache.
+     *
+     * @return The number of rows written.
+     * @throws SQLException if the query fails, possibly after some rows were written.
+     */
+    public long streamCities(MarkdownWriter out, WorldSnapshot.Scope scope, String name) throws SQLException, IOException {
+        String report = listReport(scope);
+        Object[] params = scope == WorldSnapshot.Scope.WORLD ? new Object[0] : new Object[]{name};
+        long rows = out.getRows();
+        if (snapshot != null) {
+            // Snapshot reports are already in memory, so there is nothing to stream from
+            for (City c : snapshot.cities(scope, name, WorldSnapshot.ALL)) {
+                writeCity(out, c);
+            }
+            return out.getRows() - rows;
+        }
+        ReportEvents.Query event = new ReportEvents.Query();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = out.getBytes();
+        try {
+            QueryHelper.forEachRow(provider, report, listQuery(scope), params, rset -> out
+                    .cell(rset.getString("Name"))
+                    .cell(rset.getString("Country"))
+                    .cell(rset.getString("District"))
+                    .cell(rset.getInt("Population"))
+                    .endRow());
+        } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
+            throw e;
+        } finally {
+            ReportMetrics.recordQuery(report, params, System.nanoTime() - start, out.getRows() - rows);
+            ReportEvents.commit(event, report, params, out.getRows() - rows, out.getBytes() - bytes);
+        }
+        return out.getRows() - rows;
+    }
+
+    private static void writeCity(MarkdownWriter out, City c) throws IOException {
+        out.cell(c.name).cell(c.country).cell(c.district).cell(c.population).endRow();
     }
 }
@@ -0,0 +1,54 @@
+package com.napier.sem;
+
+import java.util.Arrays;
+
+/**
+ * Column store for city rows: one primitive array per attribute instead of one object per row.
+ * The country is kept as a row number in the CountryTable and the district as a SymbolTable id.
+ */
+public class CityTable {
+    int size;
+    int[] id;
+    String[] name;
+    int[] countryRow;
+    int[] district;
+    int[] population;
+
+    public CityTable(int capacity) {
+        capacity = Math.max(capacity, 16);
+        id = new int[capacity];
+        name = new String[capacity];
+        countryRow = new int[capacity];
+        district = new int[capacity];
+        population = new int[capacity];
+    }
+
+    /**
+     * Append a row and return its row number.
+     */
+    public int add(int id, String name, int countryRow, int district, int population) {
+        if (size == this.id.length) {
+            grow();
+        }
+        int row = size++;
+        this.id[row] = id;
+        this.name[row] = name;
+        this.countryRow[row] = countryRow;
+        this.district[row] = district;
+        this.population[row] = population;
+        return row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = id.length * 2;
+        id = Arrays.copyOf(id, capacity);
+        name = Arrays.copyOf(name, capacity);
+        countryRow = Arrays.copyOf(countryRow, capacity);
+        district = Arrays.copyOf(district, capacity);
+        population = Arrays.copyOf(population, capacity);
+    }
+}
@@ -0,0 +1,326 @@
+package com.napier.sem;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * At most {@code maxSize} connections are borrowed at once; further callers wait up to
+ * {@code borrowTimeoutMillis}. Idle connections are validated before they are handed out,
+ * closed once they have been idle or alive for too long, and borrowed connections that are
+ * not returned within {@code leakThresholdMillis} are reported as leaks.
+ */
+public class ConnectionPool implements ConnectionProvider {
+
+    /**
+     * Pool settings. Zero disables idle eviction, max lifetime and leak detection.
+     */
+    public static class Settings {
+        public int maxSize = 10;
+        public long borrowTimeoutMillis = 30000;
+        public long idleTimeoutMillis = 600000;
+        public long maxLifetimeMillis = 1800000;
+        public long leakThresholdMillis = 0;
+        public int validationTimeoutSeconds = 5;
+        // Connections returned more recently than this are not pinged again on borrow
+        public long validationBypassMillis = 500;
+        public long housekeepingMillis = 30000;
+
+        /**
+         * Read settings from -Ddb.pool.* system properties, falling back to the defaults.
+         */
+        public static Settings fromSystemProperties() {
+            Settings s = new Settings();
+            s.maxSize = Integer.getInteger("db.pool.maxSize", s.maxSize);
+            s.borrowTimeoutMillis = Long.getLong("db.pool.borrowTimeoutMillis", s.borrowTimeoutMillis);
+            s.idleTimeoutMillis = Long.getLong("db.pool.idleTimeoutMillis", s.idleTimeoutMillis);
+            s.maxLifetimeMillis = Long.getLong("db.pool.maxLifetimeMillis", s.maxLifetimeMillis);
+            s.leakThresholdMillis = Long.getLong("db.pool.leakThresholdMillis", s.leakThresholdMillis);
+            s.validationTimeoutSeconds = Integer.getInteger("db.pool.validationTimeoutSeconds", s.validationTimeoutSeconds);
+            s.housekeepingMillis = Long.getLong("db.pool.housekeepingMillis", s.housekeepingMillis);
+            return s;
+        }
+    }
+
+    /**
+     * A physical connection and its bookkeeping.
+     */
+    private static class PooledConnection {
+        final Connection raw;
+        final long createdAt;
+        volatile long lastReturnedAt;
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection raw, long now) {
+            this.raw = raw;
+            this.createdAt = now;
+            this.lastReturnedAt = now;
+        }
+    }
+
+    private final ConnectionProvider factory;
+    private final Settings settings;
+    private final Semaphore permits;
+    // Most recently returned connection first, so surplus connections age out
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong leaks = new AtomicLong();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * @param factory  Opens a new physical connection each time it is called.
+     * @param settings Pool limits and timeouts.
+     */
+    public ConnectionPool(ConnectionProvider factory, Settings settings) {
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        if (settings.housekeepingMillis > 0) {
+            housekeeper.scheduleWithFixedDelay(this::housekeep,
+                    settings.housekeepingMillis, settings.housekeepingMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(settings.borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + settings.borrowTimeoutMillis
+                        + "ms waiting for a connection (" + settings.maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pc = takeIdle();
+            if (pc == null) {
+                pc = new PooledConnection(factory.getConnection(), System.currentTimeMillis());
+                open.incrementAndGet();
+            }
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowSite = settings.leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            pc.leakReported = false;
+            borrowed.add(pc);
+            return wrap(pc);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Take the most recently used idle connection that is still alive and valid.
+     */
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (expired(pc, now)) {
+                discard(pc);
+            } else if (now - pc.lastReturnedAt > settings.validationBypassMillis && !isValid(pc)) {
+                System.out.println("Discarding broken pooled connection");
+                discard(pc);
+            } else {
+                return pc;
+            }
+        }
+    }
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.raw.isValid(settings.validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean expired(PooledConnection pc, long now) {
+        return settings.maxLifetimeMillis > 0 && now - pc.createdAt >= settings.maxLifetimeMillis;
+    }
+
+    /**
+     * Hand out a proxy so that close() returns the connection instead of closing it.
+     * Each borrow gets its own proxy; using it after close() fails.
+     */
+    private Connection wrap(PooledConnection pc) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    // Not a lock: calls pass straight through, so a virtual thread blocked on the
+                    // network here does not pin its carrier
+                    private final AtomicBoolean returned = new AtomicBoolean();
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if ("close".equals(name) && method.getParameterCount() == 0) {
+                            if (returned.compareAndSet(false, true)) {
+                                release(pc);
+                            }
+                            return null;
+                        }
+                        if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                            return returned.get() || pc.raw.isClosed();
+                        }
+                        if (returned.get()) {
+                            throw new SQLException("Connection has already been returned to the pool");
+                        }
+                        return ConnectionProvider.invoke(pc.raw, method, args);
+                    }
+                });
+    }
+
+    private void release(PooledConnection pc) {
+        borrowed.remove(pc);
+        try {
+            boolean reusable = !closed && !expired(pc, System.currentTimeMillis()) && !pc.raw.isClosed();
+            if (reusable && !pc.raw.getAutoCommit()) {
+                pc.raw.rollback();
+                pc.raw.setAutoCommit(true);
+            }
+            if (reusable) {
+                pc.lastReturnedAt = System.currentTimeMillis();
+                pc.borrowSite = null;
+                synchronized (idle) {
+                    idle.addFirst(pc);
+                }
+            } else {
+                discard(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        open.decrementAndGet();
+        try {
+            pc.raw.close();
+        } catch (SQLException e) {
+            System.out.println("Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Evict idle and expired connections and report borrowed connections held past the leak threshold.
+     */
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        ArrayList<PooledConnection> evicted = new ArrayList<>();
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pc = it.next();
+                boolean idleTooLong = settings.idleTimeoutMillis > 0 && now - pc.lastReturnedAt >= settings.idleTimeoutMillis;
+                if (idleTooLong || expired(pc, now)) {
+                    it.remove();
+                    evicted.add(pc);
+                }
+            }
+        }
+        for (PooledConnection pc : evicted) {
+            discard(pc);
+        }
+
+        if (settings.leakThresholdMillis > 0) {
+            for (PooledConnection pc : borrowed) {
+                if (!pc.leakReported && now - pc.borrowedAt >= settings.leakThresholdMillis) {
+                    pc.leakReported = true;
+                    leaks.incrementAndGet();
+                    System.out.println("Possible connection leak: connection borrowed " + (now - pc.borrowedAt) + "ms ago");
+                    if (pc.borrowSite != null) {
+                        pc.borrowSite.printStackTrace(System.out);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of connections currently borrowed.
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Number of connections waiting in the pool.
+     */
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Number of physical connections currently open.
+     */
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    /**
+     * Number of borrowed connections reported as leaked so far.
+     */
+    public long getLeakCount() {
+        return leaks.get();
+    }
+
+    /**
+     * Close every idle connection. Borrowed connections are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        ArrayList<PooledConnection> remaining;
+        synchronized (idle) {
+            remaining = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PooledConnection pc : remaining) {
+            discard(pc);
+        }
+    }
+}
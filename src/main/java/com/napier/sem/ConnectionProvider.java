@@ -0,0 +1,58 @@
+package com.napier.sem;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of JDBC connections for the report classes.
+ *
+ * Every report borrows a connection for a single query and closes it afterwards,
+ * so callers must always use the returned connection in a try-with-resources block.
+ * Closing a borrowed connection hands it back to whoever provided it.
+ */
+public interface ConnectionProvider extends AutoCloseable {
+
+    /**
+     * Borrow a connection. The caller must close it when the query is finished.
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Release any connections held by the provider.
+     */
+    @Override
+    default void close() {
+        //
+    }
+
+    /**
+     * Wrap a single shared connection. Closing a borrowed connection is a no-op,
+     * so the shared connection stays open for the next query.
+     */
+    static ConnectionProvider of(Connection con) {
+        return () -> (Connection) Proxy.newProxyInstance(
+                ConnectionProvider.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        return null;
+                    }
+                    return invoke(con, method, args);
+                });
+    }
+
+    /**
+     * Call a method on the real connection, rethrowing the original exception
+     * instead of the reflective wrapper.
+     */
+    static Object invoke(Connection con, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(con, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.napier.sem;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * The bordered table every printX method writes to the console. Each row is laid out twice by
+ * the same {@link Columns} lambda: once to measure the column widths and once to pad the cells
+ * into a reusable buffer, which is encoded into a reusable byte buffer and goes to the stream a
+ * chunk at a time rather than a printf call per cell.
+ *
+ * Text and numbers are left-aligned like %s unless added with {@link #right(long)}; null text
+ * prints as "null". A table can also be opened with fixed widths and fed rows a page at a time,
+ * in which case text too long for its column is cut short with "...".
+ */
+public final class ConsoleTable {
+    static final int CHUNK = 8192;
+    // PrintStream.charset() is Java 18+; the project still compiles for Java 17
+    private static final Method CHARSET = lookupCharset();
+
+    /**
+     * Adds one item's cells to the table, in header order.
+     */
+    public interface Columns<T> {
+        void cells(T item, ConsoleTable row);
+    }
+
+    private final PrintStream out;
+    private final int[] widths;
+    private final char[] buf;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    private final CharsetEncoder encoder;
+    private final StringBuilder number = new StringBuilder(24);
+    private final String newline = System.lineSeparator();
+    private int len;
+    private int col;
+    private boolean measuring;
+    private long written;
+
+    private ConsoleTable(PrintStream out, int[] widths) {
+        this.out = out;
+        this.widths = widths;
+        // Measuring writes nothing
+        if (out == null) {
+            this.buf = null;
+            this.chars = null;
+            this.bytes = null;
+            this.encoder = null;
+        } else {
+            this.buf = new char[CHUNK];
+            this.chars = CharBuffer.wrap(buf);
+            // Replace what the charset cannot encode, as PrintStream does
+            this.encoder = charset(out).newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.bytes = ByteBuffer.allocate((int) (CHUNK * encoder.maxBytesPerChar()));
+        }
+    }
+
+    private static Method lookupCharset() {
+        try {
+            return PrintStream.class.getMethod("charset");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The charset {@code out} encodes text with.
+     */
+    static Charset charset(PrintStream out) {
+        if (CHARSET != null) {
+            try {
+                return (Charset) CHARSET.invoke(out);
+            } catch (ReflectiveOperationException e) {
+                // Fall through to the Java 17 rules
+            }
+        }
+        // Before Java 18 System.out uses sun.stdout.encoding when set, and every other stream built
+        // without a charset uses the default
+        String stdout = System.getProperty("sun.stdout.encoding");
+        if (out == System.out && stdout != null && Charset.isSupported(stdout)) {
+            return Charset.forName(stdout);
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Print {@code rows} under {@code headers}.
+     *
+     * @return the number of characters written
+     */
+    public static <T> long print(PrintStream out, String[] headers, List<T> rows, Columns<T> columns) {
+        ConsoleTable table = open(out, headers, widths(headers, rows, columns));
+        table.rows(rows, columns);
+        return table.end();
+    }
+
+    /**
+     * Column widths that fit the headers and every cell of {@code rows}.
+     */
+    public static <T> int[] widths(String[] headers, List<T> rows, Columns<T> columns) {
+        int[] widths = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            widths[i] = headers[i].length();
+        }
+        ConsoleTable table = new ConsoleTable(null, widths);
+        table.measuring = true;
+        for (T row : rows) {
+            table.col = 0;
+            columns.cells(row, table);
+        }
+        return widths;
+    }
+
+    /**
+     * Print the header of a table with the given column widths; add rows with
+     * {@link #rows(List, Columns)} and finish with {@link #end()}.
+     */
+    public static ConsoleTable open(PrintStream out, String[] headers, int[] widths) {
+        ConsoleTable table = new ConsoleTable(out, widths.clone());
+        table.border();
+        table.col = 0;
+        for (String header : headers) {
+            table.cell(header);
+        }
+        table.endRow();
+        table.border();
+        return table;
+    }
+
+    /**
+     * Print rows and flush them to the stream.
+     */
+    public <T> void rows(List<T> rows, Columns<T> columns) {
+        for (T row : rows) {
+            col = 0;
+            columns.cells(row, this);
+            endRow();
+        }
+        flush();
+    }
+
+    /**
+     * Print the bottom border.
+     *
+     * @return the number of characters written since the table was opened
+     */
+    public long end() {
+        border();
+        flush();
+        encode(true);
+        return written;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public ConsoleTable cell(String text) {
+        String s = text == null ? "null" : text;
+        if (measuring) {
+            measure(s.length());
+            return this;
+        }
+        int width = widths[col++];
+        put('|');
+        put(' ');
+        if (s.length() > width) {
+            // Only with fixed widths: keep as much as fits
+            int keep = Math.max(0, width - 3);
+            put(s, keep);
+            put("...", width - keep);
+        } else {
+            put(s, s.length());
+            padding(width - s.length());
+        }
+        put(' ');
+        return this;
+    }
+
+    public ConsoleTable cell(long value) {
+        number.setLength(0);
+        number.append(value);
+        return left();
+    }
+
+    public ConsoleTable cell(double value) {
+        number.setLength(0);
+        number.append(value);
+        return left();
+    }
+
+    /**
+     * A number right-aligned in its column.
+     */
+    public ConsoleTable right(long value) {
+        number.setLength(0);
+        number.append(value);
+        if (measuring) {
+            measure(number.length());
+            return this;
+        }
+        int pad = widths[col++] - number.length();
+        put('|');
+        put(' ');
+        padding(pad);
+        put(number, number.length());
+        put(' ');
+        return this;
+    }
+
+    private ConsoleTable left() {
+        if (measuring) {
+            measure(number.length());
+            return this;
+        }
+        int pad = widths[col++] - number.length();
+        put('|');
+        put(' ');
+        put(number, number.length());
+        padding(pad);
+        put(' ');
+        return this;
+    }
+
+    private void measure(int length) {
+        widths[col] = Math.max(widths[col], length);
+        col++;
+    }
+
+    private void endRow() {
+        put('|');
+        put(newline, newline.length());
+    }
+
+    private void border() {
+        for (int w : widths) {
+            put('+');
+            for (int i = 0; i < w + 2; i++) {
+                put('-');
+            }
+        }
+        put('+');
+        put(newline, newline.length());
+    }
+
+    private void padding(int n) {
+        for (int i = 0; i < n; i++) {
+            put(' ');
+        }
+    }
+
+    private void put(char c) {
+        if (len == buf.length) {
+            flush();
+        }
+        buf[len++] = c;
+    }
+
+    // Copy in pieces that fit the buffer, so values longer than a chunk still work
+    private void put(CharSequence s, int length) {
+        int from = 0;
+        while (from < length) {
+            if (len == buf.length) {
+                flush();
+            }
+            int n = Math.min(length - from, buf.length - len);
+            if (s instanceof String) {
+                ((String) s).getChars(from, from + n, buf, len);
+            } else {
+                ((StringBuilder) s).getChars(from, from + n, buf, len);
+            }
+            len += n;
+            from += n;
+        }
+    }
+
+    private void flush() {
+        encode(false);
+    }
+
+    // Encode the buffer straight into the byte buffer and write that, so a flush copies nothing into
+    // a new String. Half a surrogate pair at the end of a chunk waits for the rest in the next one.
+    private void encode(boolean last) {
+        chars.limit(len).position(0);
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, last);
+            if (result.isUnderflow() && last) {
+                result = encoder.flush(bytes);
+            }
+            out.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        } while (result.isOverflow());
+        int left = chars.remaining();
+        written += len - left;
+        System.arraycopy(buf, len - left, buf, 0, left);
+        len = left;
+        if (last) {
+            encoder.reset();
+        }
+    }
+}
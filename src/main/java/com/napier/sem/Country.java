@@ -2,9 +2,6 @@ package com.napier.sem;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 
 public class Country {
@@ -15,10 +12,34 @@ public class Country {
     public int population;
     public String capital;
 
-    private Connection con;
+    private ConnectionProvider provider;
+    private WorldSnapshot snapshot;
+    private TopN topN;
+    private ReportCache cache = ReportCache.NONE;
+
+    private static final String[] HEADERS = {"Code", "Name", "Continent", "Region", "Population", "Capital"};
 
     public Country(Connection con) {
-        this.con = con;
+        this(ConnectionProvider.of(con));
+    }
+
+    public Country(ConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    // Answer every report from memory instead of MySQL
+    public Country(WorldSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // Answer top N reports as a prefix of one full population ordering per filter value
+    public void setTopN(TopN topN) {
+        this.topN = topN;
+    }
+
+    // Serve repeated reports from a result cache instead of re-running the query
+    public void setCache(ReportCache cache) {
+        this.cache = cache;
     }
 
     public Country() {
@@ -27,126 +48,143 @@ public class Country {
 
     //  All countries in the world
     public ArrayList<Country> getAllCountriesByPopulation() {
-        String query =
-                "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                        "FROM country JOIN city ON country.Capital = city.ID " +
-                        "ORDER BY country.Population DESC";
-        return executeCountryQuery(query);
+        if (snapshot != null) {
+            return snapshot.countries(WorldSnapshot.Scope.WORLD, null, WorldSnapshot.ALL);
+        }
+        // Unbounded, so fetched as -Dreport.fetchMode says
+        return executeCountryQuery(listReport(WorldSnapshot.Scope.WORLD), QueryHelper.FETCH_MODE,
+                listQuery(WorldSnapshot.Scope.WORLD));
     }
 
     //   All countries in a continent
     public ArrayList<Country> getCountriesByContinent(String continent) {
-        String query =
-                "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                        "FROM country JOIN city ON country.Capital = city.ID " +
-                        "WHERE country.Continent = ? " +
-                        "ORDER BY country.Population DESC";
-        return executeCountryQuery(query, continent);
+        if (snapshot != null) {
+            return snapshot.countries(WorldSnapshot.Scope.CONTINENT, continent, WorldSnapshot.ALL);
+        }
+        return executeCountryQuery(listReport(WorldSnapshot.Scope.CONTINENT), listQuery(WorldSnapshot.Scope.CONTINENT), continent);
     }
 
     //    All countries in a region
     public ArrayList<Country> getCountriesByRegion(String region) {
-        String query =
-                "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                        "FROM country JOIN city ON country.Capital = city.ID " +
-                        "WHERE country.Region = ? " +
-                        "ORDER BY country.Population DESC";
-        return executeCountryQuery(query, region);
+        if (snapshot != null) {
+            return snapshot.countries(WorldSnapshot.Scope.REGION, region, WorldSnapshot.ALL);
+        }
+        return executeCountryQuery(listReport(WorldSnapshot.Scope.REGION), listQuery(WorldSnapshot.Scope.REGION), region);
     }
 
     //    Top N populated countries in the world
     public ArrayList<Country> getTopCountriesInWorld(int n) {
+        if (snapshot != null) {
+            return snapshot.countries(WorldSnapshot.Scope.WORLD, null, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("Country.getTopCountriesInWorld", new Object[]{n},
+                    () -> topN.top("countries.world", null, n, () -> getAllCountriesByPopulation()));
+        }
         String query =
                 "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
                         "FROM country JOIN city ON country.Capital = city.ID " +
                         "ORDER BY country.Population DESC LIMIT ?";
-        return executeCountryQueryWithLimit(query, n);
+        return executeCountryQuery("Country.getTopCountriesInWorld", query, n);
     }
 
     //    Top N populated countries in a continent
     public ArrayList<Country> getTopCountriesInContinent(String continent, int n) {
+        if (snapshot != null) {
+            return snapshot.countries(WorldSnapshot.Scope.CONTINENT, continent, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("Country.getTopCountriesInContinent", new Object[]{continent, n},
+                    () -> topN.top("countries.continent", continent, n, () -> getCountriesByContinent(continent)));
+        }
         String query =
                 "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
                         "FROM country JOIN city ON country.Capital = city.ID " +
                         "WHERE country.Continent = ? " +
                         "ORDER BY country.Population DESC LIMIT ?";
-        return executeCountryQuery(query, continent, n);
+        return executeCountryQuery("Country.getTopCountriesInContinent", query, continent, n);
     }
 
     //    Top N populated countries in a region
     public ArrayList<Country> getTopCountriesInRegion(String region, int n) {
+        if (snapshot != null) {
+            return snapshot.countries(WorldSnapshot.Scope.REGION, region, n);
+        }
+        if (topN != null) {
+            return ReportMetrics.time("Country.getTopCountriesInRegion", new Object[]{region, n},
+                    () -> topN.top("countries.region", region, n, () -> getCountriesByRegion(region)));
+        }
         String query =
                 "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
                         "FROM country JOIN city ON country.Capital = city.ID " +
                         "WHERE country.Region = ? " +
                         "ORDER BY country.Population DESC LIMIT ?";
-        return executeCountryQuery(query, region, n);
+        return executeCountryQuery("Country.getTopCountriesInRegion", query, region, n);
     }
 
-
-    //    Query without parameters
-    private ArrayList<Country> executeCountryQuery(String query) {
-        ArrayList<Country> countries = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);
-             ResultSet rset = stmt.executeQuery()) {
-            while (rset.next()) {
-                Country c = extractCountry(rset);
-                countries.add(c);
-            }
-        } catch (SQLException e) {
-            System.out.println("Query failed: " + e.getMessage());
+    //    The unbounded list report for a scope, shared by the getters and streamCountries
+    private static String listReport(WorldSnapshot.Scope scope) {
+        switch (scope) {
+            case WORLD:
+                return "Country.getAllCountriesByPopulation";
+            case CONTINENT:
+                return "Country.getCountriesByContinent";
+            case REGION:
+                return "Country.getCountriesByRegion";
+            default:
+                throw new IllegalArgumentException("No country list report for " + scope);
         }
-        return countries;
     }
 
-    //    Query with one string parameter
-    private ArrayList<Country> executeCountryQuery(String query, String param) {
-        ArrayList<Country> countries = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1, param);
-            try (ResultSet rset = stmt.executeQuery()) {
-                while (rset.next()) {
-                    Country c = extractCountry(rset);
-                    countries.add(c);
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Query failed: " + e.getMessage());
+    private static String listQuery(WorldSnapshot.Scope scope) {
+        String query =
+                "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
+                        "FROM country JOIN city ON country.Capital = city.ID ";
+        switch (scope) {
+            case WORLD:
+                return query + "ORDER BY country.Population DESC";
+            case CONTINENT:
+                return query + "WHERE country.Continent = ? ORDER BY country.Population DESC";
+            case REGION:
+                return query + "WHERE country.Region = ? ORDER BY country.Population DESC";
+            default:
+                throw new IllegalArgumentException("No country list report for " + scope);
         }
-        return countries;
     }
 
-    //    Query with one string + one integer parameter
-    private ArrayList<Country> executeCountryQuery(String query, String param, int limit) {
-        ArrayList<Country> countries = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1, param);
-            stmt.setInt(2, limit);
-            try (ResultSet rset = stmt.executeQuery()) {
-                while (rset.next()) {
-                    Country c = extractCountry(rset);
-                    countries.add(c);
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Query failed: " + e.getMessage());
-        }
-        return countries;
+    //    Run a report through the result cache
+    private ArrayList<Country> executeCountryQuery(String report, String query, Object... params) {
+        return executeCountryQuery(report, QueryHelper.FetchMode.BUFFERED, query, params);
     }
 
+    private ArrayList<Country> executeCountryQuery(String report, QueryHelper.FetchMode mode, String query, Object... params) {
+        return ReportMetrics.time(report, params, () -> cache.get(report, params, () -> loadCountries(report, mode, query, params)));
+    }
 
-    //    Query with the only integer parameter (LIMIT)
-    private ArrayList<Country> executeCountryQueryWithLimit(String query, int limit) {
+    //    Query with any number of String/int parameters, on a connection borrowed for this query only,
+    //    recording how long the first row took to arrive
+    private ArrayList<Country> loadCountries(String report, QueryHelper.FetchMode mode, String query, Object... params) {
         ArrayList<Country> countries = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setInt(1, limit);
+        try (Connection con = provider.getConnection();
+             PreparedStatement stmt = con.prepareStatement(query)) {
+            QueryHelper.applyFetchMode(stmt, mode);
+            QueryHelper.bind(stmt, params);
+            long start = System.nanoTime();
+            long firstRow = -1;
             try (ResultSet rset = stmt.executeQuery()) {
                 while (rset.next()) {
+                    if (firstRow < 0) {
+                        firstRow = System.nanoTime() - start;
+                    }
                     Country c = extractCountry(rset);
                     countries.add(c);
                 }
             }
+            long total = System.nanoTime() - start;
+            FirstRowLatency.record(report, mode, firstRow, total, countries.size());
+            SlowQueryLog.get().check(con, report, query, params, total, countries.size());
         } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
             System.out.println("Query failed: " + e.getMessage());
         }
         return countries;
@@ -170,53 +208,12 @@ public class Country {
             System.out.println("No countries found");
             return;
         }
+        ReportEvents.Render event = new ReportEvents.Render();
+        event.begin();
 
-        // Define column headers
-        String[] headers = {"Code", "Name", "Continent", "Region", "Population", "Capital"};
-
-        // Compute max width for each column
-        int[] widths = new int[headers.length];
-        for (int i = 0; i < headers.length; i++) {
-            widths[i] = headers[i].length();
-        }
-
-        for (Country c : countries) {
-            widths[0] = Math.max(widths[0], c.code.length());
-            widths[1] = Math.max(widths[1], c.name.length());
-            widths[2] = Math.max(widths[2], c.continent.length());
-            widths[3] = Math.max(widths[3], c.region.length());
-            widths[4] = Math.max(widths[4], String.valueOf(c.population).length());
-            widths[5] = Math.max(widths[5], c.capital.length());
-        }
-
-        // Helper to print a border line
-        Runnable printBorder = () -> {
-            for (int w : widths) {
-                System.out.print("+" + "-".repeat(w + 2));
-            }
-            System.out.println("+");
-        };
-
-        // Print header
-        printBorder.run();
-        for (int i = 0; i < headers.length; i++) {
-            System.out.printf("| %-" + widths[i] + "s ", headers[i]);
-        }
-        System.out.println("|");
-        printBorder.run();
-
-        // Print rows
-        for (Country c : countries) {
-            System.out.printf("| %-" + widths[0] + "s ", c.code);
-            System.out.printf("| %-" + widths[1] + "s ", c.name);
-            System.out.printf("| %-" + widths[2] + "s ", c.continent);
-            System.out.printf("| %-" + widths[3] + "s ", c.region);
-            System.out.printf("| % " + widths[4] + "d ", c.population);
-            System.out.printf("| %-" + widths[5] + "s ", c.capital);
-            System.out.println("|");
-        }
-
-        printBorder.run();
+        long chars = ConsoleTable.print(System.out, HEADERS, countries, (c, row) -> row
+                .cell(c.code).cell(c.name).cell(c.continent).cell(c.region).right(c.population).cell(c.capital));
+        ReportEvents.commit(event, countries.size(), chars);
     }
 
     /**
@@ -231,33 +228,99 @@ public class Country {
             System.out.println("No countries to output");
             return;
         }
-        System.out.println("Country list has " + countries.size() + " items. Generating Markdown...");
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("| Code | Name | Continent | Region | Population | Capital |\r\n");
-        sb.append("| --- | --- | --- | --- | --- | --- |\r\n");
-        for (Country c : countries) {
-            if (c == null) continue;
-            sb.append("| " + c.code + " | " +
-                    c.name + " | " + c.continent + " | " +
-                    c.region + " | " + c.population + " | " +
-                    c.capital + " |\r\n");
-        }
-        System.out.println("Markdown content generated. Attempting to write to file: /app/reports/" + filename);
-        try {
-            File reportsDir = new File("/app/reports/");  // Absolute path to match volume mount
-            if (!reportsDir.exists()) {
-                boolean dirCreated = reportsDir.mkdirs();
-                System.out.println("Reports directory created: " + dirCreated + " at " + reportsDir.getAbsolutePath());
+        System.out.println("Country list has " + countries.size() + " items. Writing Markdown to: " + MarkdownWriter.REPORTS_DIR + filename);
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
+        long bytes = 0;
+        try (MarkdownWriter out = MarkdownWriter.open(filename, HEADERS)) {
+            for (Country c : countries) {
+                if (c == null) continue;
+                writeCountry(out, c);
             }
-            File outputFile = new File("/app/reports/" + filename);  // Absolute path
-            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-            writer.write(sb.toString());
-            writer.close();
-            System.out.println("File written successfully to: " + outputFile.getAbsolutePath());
+            bytes = out.getBytes();
+            ReportMetrics.recordBytes(bytes);
+            System.out.println("File written successfully to: " + MarkdownWriter.REPORTS_DIR + filename);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+        ReportEvents.commit(event, countries.size(), bytes);
+    }
+
+    /**
+     * Streams the list report for {@code scope} (WORLD, CONTINENT or REGION, filtered by {@code name})
+     * straight from the ResultSet into a Markdown file in the ./reports/ directory, one row at a time,
+     * so memory use does not grow with the number of rows.
+     *
+     * @return The number of rows written, or -1 if the query failed or the file could not be
+     *         written, in which case no file is left.
+     */
+    public long streamCountries(String filename, WorldSnapshot.Scope scope, String name) {
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
+        long rows;
+        try (MarkdownWriter out = MarkdownWriter.open(filename, HEADERS)) {
+            streamCountries(out, scope, name);
+            ReportMetrics.recordBytes(out.getBytes());
+            ReportEvents.commit(event, out.getRows(), out.getBytes());
+            rows = out.getRows();
+        } catch (SQLException e) {
+            System.out.println("Query failed: " + e.getMessage());
+            rows = -1;
         } catch (IOException e) {
             System.out.println("Error writing file: " + e.getMessage());
-            e.printStackTrace();
+            rows = -1;
+        }
+        if (rows < 0) {
+            // A report cut short would look complete, so it is not left behind
+            MarkdownWriter.delete(filename);
+            return -1;
         }
+        System.out.println("Streamed " + rows + " countries to: " + MarkdownWriter.REPORTS_DIR + filename);
+        return rows;
+    }
+
+    /**
+     * Streams the list report for {@code scope} into {@code out}, encoding each row as it arrives
+     * without building Country objects or going through the result cache.
+     *
+     * @return The number of rows written.
+     * @throws SQLException if the query fails, possibly after some rows were written.
+     */
+    public long streamCountries(MarkdownWriter out, WorldSnapshot.Scope scope, String name) throws SQLException, IOException {
+        String report = listReport(scope);
+        Object[] params = scope == WorldSnapshot.Scope.WORLD ? new Object[0] : new Object[]{name};
+        long rows = out.getRows();
+        if (snapshot != null) {
+            // Snapshot reports are already in memory, so there is nothing to stream from
+            for (Country c : snapshot.countries(scope, name, WorldSnapshot.ALL)) {
+                writeCountry(out, c);
+            }
+            return out.getRows() - rows;
+        }
+        ReportEvents.Query event = new ReportEvents.Query();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = out.getBytes();
+        try {
+            QueryHelper.forEachRow(provider, report, listQuery(scope), params, rset -> out
+                    .cell(rset.getString("Code"))
+                    .cell(rset.getString("Name"))
+                    .cell(rset.getString("Continent"))
+                    .cell(rset.getString("Region"))
+                    .cell(rset.getInt("Population"))
+                    .cell(rset.getString("Capital"))
+                    .endRow());
+        } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
+            throw e;
+        } finally {
+            ReportMetrics.recordQuery(report, params, System.nanoTime() - start, out.getRows() - rows);
+            ReportEvents.commit(event, report, params, out.getRows() - rows, out.getBytes() - bytes);
+        }
+        return out.getRows() - rows;
+    }
+
+    private static void writeCountry(MarkdownWriter out, Country c) throws IOException {
+        out.cell(c.code).cell(c.name).cell(c.continent).cell(c.region).cell(c.population).cell(c.capital).endRow();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.napier.sem;
+
+import java.util.Arrays;
+
+/**
+ * Column store for country rows: one primitive array per attribute instead of one object per row.
+ * Continent and region are kept as ids into a shared SymbolTable.
+ */
+public class CountryTable {
+    int size;
+    String[] code;
+    String[] name;
+    int[] continent;
+    int[] region;
+    int[] population;
+    // City.ID of the capital as stored in the country table, 0 for none
+    int[] capitalId;
+    // Row in the CityTable of the capital, -1 for none; filled in once cities are loaded
+    int[] capitalRow;
+
+    public CountryTable(int capacity) {
+        capacity = Math.max(capacity, 16);
+        code = new String[capacity];
+        name = new String[capacity];
+        continent = new int[capacity];
+        region = new int[capacity];
+        population = new int[capacity];
+        capitalId = new int[capacity];
+        capitalRow = new int[capacity];
+    }
+
+    /**
+     * Append a row and return its row number.
+     */
+    public int add(String code, String name, int continent, int region, int population, int capitalId) {
+        if (size == this.code.length) {
+            grow();
+        }
+        int row = size++;
+        this.code[row] = code;
+        this.name[row] = name;
+        this.continent[row] = continent;
+        this.region[row] = region;
+        this.population[row] = population;
+        this.capitalId[row] = capitalId;
+        this.capitalRow[row] = -1;
+        return row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = code.length * 2;
+        code = Arrays.copyOf(code, capacity);
+        name = Arrays.copyOf(name, capacity);
+        continent = Arrays.copyOf(continent, capacity);
+        region = Arrays.copyOf(region, capacity);
+        population = Arrays.copyOf(population, capacity);
+        capitalId = Arrays.copyOf(capitalId, capacity);
+        capitalRow = Arrays.copyOf(capitalRow, capacity);
+    }
+}
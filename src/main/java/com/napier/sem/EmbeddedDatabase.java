@@ -0,0 +1,245 @@
+package com.napier.sem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the MySQL world database, so integration tests and benchmarks run
+ * without Docker.
+ *
+ * It boots an in-memory H2 database in MySQL mode (H2 is a runtime dependency, so it ships in the jar) and loads
+ * a MySQL dump such as db/world.sql into it. The dump is adjusted as it is loaded so the report
+ * SQL behaves as it does on MySQL:
+ * - CHAR columns become case-insensitive VARCHARs, as under MySQL's default collation
+ * - plain INT columns become DECIMAL, so {@code /} divides like MySQL instead of truncating
+ * - index names are dropped, because H2 needs them to be unique across tables
+ * - backslash escapes in strings are rewritten
+ * - MySQL-only statements (USE, SET, CREATE DATABASE, ...) are skipped
+ */
+public class EmbeddedDatabase implements ConnectionProvider {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final String[] SKIPPED = {
+            "CREATE DATABASE", "DROP DATABASE", "USE ", "SET ", "COMMIT", "START TRANSACTION",
+            "LOCK TABLES", "UNLOCK TABLES"
+    };
+
+    private final String url;
+    // Keeps the in-memory database alive until close()
+    private final Connection keepAlive;
+
+    /**
+     * Start an empty database with a unique name.
+     */
+    public EmbeddedDatabase() throws SQLException {
+        this("world" + COUNTER.incrementAndGet());
+    }
+
+    public EmbeddedDatabase(String name) throws SQLException {
+        try {
+            // The jar-with-dependencies keeps only one META-INF/services/java.sql.Driver, MySQL's
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("H2 driver not found", e);
+        }
+        this.url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE";
+        this.keepAlive = DriverManager.getConnection(url, "root", "");
+    }
+
+    /**
+     * Start a database loaded from a MySQL dump file, e.g. db/world.sql.
+     */
+    public static EmbeddedDatabase fromScript(File script) throws SQLException, IOException {
+        EmbeddedDatabase db = new EmbeddedDatabase();
+        try (Reader reader = Files.newBufferedReader(script.toPath(), StandardCharsets.UTF_8)) {
+            db.runScript(reader);
+        } catch (SQLException | IOException e) {
+            db.close();
+            throw e;
+        }
+        return db;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(url, "root", "");
+    }
+
+    /**
+     * Load a MySQL dump. Tables are created first, retrying those whose foreign keys point at
+     * tables created later in the dump; rows are then inserted with foreign key checks off,
+     * as the dump itself does on MySQL.
+     */
+    public void runScript(Reader script) throws SQLException, IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = script.read(buffer)) > 0) {
+            sb.append(buffer, 0, n);
+        }
+
+        List<String> ddl = new ArrayList<>();
+        List<String> dml = new ArrayList<>();
+        for (String sql : split(sb)) {
+            String upper = sql.toUpperCase(Locale.ROOT);
+            if (skipped(upper)) {
+                continue;
+            }
+            if (upper.startsWith("INSERT") || upper.startsWith("REPLACE") || upper.startsWith("UPDATE")
+                    || upper.startsWith("DELETE")) {
+                dml.add(sql);
+            } else {
+                ddl.add(upper.startsWith("CREATE TABLE") ? translateTable(sql) : sql);
+            }
+        }
+
+        try (Statement stmt = keepAlive.createStatement()) {
+            while (!ddl.isEmpty()) {
+                List<String> failed = new ArrayList<>();
+                SQLException last = null;
+                for (String sql : ddl) {
+                    try {
+                        stmt.execute(sql);
+                    } catch (SQLException e) {
+                        failed.add(sql);
+                        last = e;
+                    }
+                }
+                if (failed.size() == ddl.size()) {
+                    throw last;
+                }
+                ddl = failed;
+            }
+            stmt.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            try {
+                for (String sql : dml) {
+                    stmt.execute(sql);
+                }
+            } finally {
+                stmt.execute("SET REFERENTIAL_INTEGRITY TRUE");
+            }
+        }
+    }
+
+    private static boolean skipped(String upper) {
+        for (String prefix : SKIPPED) {
+            if (upper.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rewrite a MySQL CREATE TABLE for H2, as described on the class.
+     */
+    static String translateTable(String sql) {
+        StringBuilder out = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            String l = line.replaceAll("^(\\s*)(UNIQUE )?KEY `[^`]+` \\(", "$1$2KEY (")
+                    .replaceAll("(?i)\\bchar\\((\\d+)\\)", "varchar($1)");
+            if (!l.toUpperCase(Locale.ROOT).contains("AUTO_INCREMENT")) {
+                l = l.replaceAll("^(\\s*`[^`]+` )int\\b", "$1decimal(11,0)");
+            }
+            out.append(l).append('\n');
+        }
+        return out.toString().trim();
+    }
+
+    /**
+     * Split a script into statements, dropping comments (including MySQL's conditional
+     * comments) and rewriting backslash escapes in string literals as standard SQL.
+     */
+    static List<String> split(CharSequence script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int len = script.length();
+        for (int i = 0; i < len; i++) {
+            char c = script.charAt(i);
+            char next = i + 1 < len ? script.charAt(i + 1) : 0;
+            if (c == '\'' || c == '"') {
+                // String literal; MySQL also accepts double quotes, H2 only single
+                current.append('\'');
+                for (i++; i < len; i++) {
+                    char s = script.charAt(i);
+                    if (s == '\\' && i + 1 < len) {
+                        char e = script.charAt(++i);
+                        switch (e) {
+                            case 'n': current.append('\n'); break;
+                            case 'r': current.append('\r'); break;
+                            case 't': current.append('\t'); break;
+                            case '0': current.append('\0'); break;
+                            case '\'': current.append("''"); break;
+                            default: current.append(e);
+                        }
+                    } else if (s == c && i + 1 < len && script.charAt(i + 1) == c) {
+                        current.append(c == '\'' ? "''" : "\"");
+                        i++;
+                    } else if (s == c) {
+                        break;
+                    } else if (s == '\'') {
+                        current.append("''");
+                    } else {
+                        current.append(s);
+                    }
+                }
+                current.append('\'');
+            } else if (c == '`') {
+                int end = i + 1;
+                while (end < len && script.charAt(end) != '`') {
+                    end++;
+                }
+                current.append(script, i, Math.min(end + 1, len));
+                i = end;
+            } else if ((c == '-' && next == '-') || c == '#') {
+                while (i < len && script.charAt(i) != '\n') {
+                    i++;
+                }
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = i + 2;
+                while (end + 1 < len && !(script.charAt(end) == '*' && script.charAt(end + 1) == '/')) {
+                    end++;
+                }
+                i = end + 1;
+                current.append(' ');
+            } else if (c == ';') {
+                add(statements, current);
+            } else {
+                current.append(c);
+            }
+        }
+        add(statements, current);
+        return statements;
+    }
+
+    private static void add(List<String> statements, StringBuilder current) {
+        String sql = current.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+
+    /**
+     * Drop the database and everything in it.
+     */
+    @Override
+    public void close() {
+        try {
+            keepAlive.close();
+        } catch (SQLException e) {
+            System.out.println("Failed to close embedded database: " + e.getMessage());
+        }
+    }
+}
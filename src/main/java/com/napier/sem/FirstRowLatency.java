@@ -0,0 +1,55 @@
+package com.napier.sem;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time to first row of the last run of each report, next to its total time, so buffered and
+ * cursor fetch can be compared on big tables. With -Dreport.fetchTiming=true each run is also
+ * printed.
+ */
+public final class FirstRowLatency {
+    private static final boolean LOG = Boolean.getBoolean("report.fetchTiming");
+    private static final ConcurrentHashMap<String, Sample> LAST = new ConcurrentHashMap<>();
+
+    /**
+     * One run of a report.
+     */
+    public static final class Sample {
+        public final QueryHelper.FetchMode mode;
+        // From executing the query to the first row being readable; -1 when there were no rows
+        public final long firstRowNanos;
+        public final long totalNanos;
+        public final long rows;
+
+        Sample(QueryHelper.FetchMode mode, long firstRowNanos, long totalNanos, long rows) {
+            this.mode = mode;
+            this.firstRowNanos = firstRowNanos;
+            this.totalNanos = totalNanos;
+            this.rows = rows;
+        }
+    }
+
+    private FirstRowLatency() {
+        //
+    }
+
+    public static void record(String report, QueryHelper.FetchMode mode, long firstRowNanos, long totalNanos, long rows) {
+        LAST.put(report, new Sample(mode, firstRowNanos, totalNanos, rows));
+        if (LOG) {
+            System.out.printf("%s: first row after %.1fms, %d rows in %.1fms (%s fetch)%n", report,
+                    firstRowNanos / 1e6, rows, totalNanos / 1e6, mode.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The last run of a report, or null if it has not run.
+     */
+    public static Sample last(String report) {
+        return LAST.get(report);
+    }
+
+    static void clear() {
+        LAST.clear();
+    }
+}
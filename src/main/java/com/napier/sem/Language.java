@@ -8,13 +8,49 @@ import java.sql.*;
 import java.util.ArrayList;
 
 public class Language {
+    private static final String[] HEADERS = {"Language", "Population", "PercentageOfWorld"};
+
     private String Language;
     private long Population;
     private double Percentage;
 
-    private Connection con;
+    private ConnectionProvider provider;
+    private WorldSnapshot snapshot;
+    private ReportCache cache = ReportCache.NONE;
     public Language(Connection con){
-        this.con = con;
+        this(ConnectionProvider.of(con));
+    }
+
+    public Language(ConnectionProvider provider){
+        this.provider = provider;
+    }
+
+    // Answer the report from memory instead of MySQL
+    public Language(WorldSnapshot snapshot){
+        this.snapshot = snapshot;
+    }
+
+    // Serve repeated reports from a result cache instead of re-running the query
+    public void setCache(ReportCache cache) {
+        this.cache = cache;
+    }
+
+    Language(String language, long population, double percentage){
+        this.Language = language;
+        this.Population = population;
+        this.Percentage = percentage;
+    }
+
+    public String getLanguage() {
+        return Language;
+    }
+
+    public long getPopulation() {
+        return Population;
+    }
+
+    public double getPercentage() {
+        return Percentage;
     }
 
     public Language(){
@@ -22,6 +58,9 @@ public class Language {
     }
 
     public ArrayList<Language> getLanguages() {
+        if (snapshot != null) {
+            return snapshot.languages();
+        }
         String query = "SELECT cl.Language, SUM(ROUND(c.Population * cl.Percentage / 100)) AS Speakers, " +
                 "ROUND((SUM(c.Population * cl.Percentage / 100) / (SELECT SUM(Population) FROM country) ) * 100, 2 ) AS WorldPercentage " +
                 "FROM country c " +
@@ -29,18 +68,28 @@ public class Language {
                 "WHERE cl.Language IN ('Chinese', 'English', 'Hindi', 'Spanish', 'Arabic') " +
                 "GROUP BY cl.Language " +
                 "ORDER BY Speakers DESC ";
-        return executeQuery(query);
+        return executeQuery("Language.getLanguages", query);
     }
 
-    private ArrayList<Language> executeQuery(String query) {
+    // Run the report through the result cache
+    private ArrayList<Language> executeQuery(String report, String query) {
+        return ReportMetrics.time(report, new Object[0], () -> cache.get(report, new Object[0], () -> loadLanguages(report, query)));
+    }
+
+    private ArrayList<Language> loadLanguages(String report, String query) {
         ArrayList<Language> languages = new ArrayList<>();
-        try (PreparedStatement stmt = con.prepareStatement(query);
-        ResultSet rs = stmt.executeQuery();) {
-            while (rs.next()) {
-                Language l = extractQuery(rs);
-                languages.add(l);
+        try (Connection con = provider.getConnection();
+        PreparedStatement stmt = con.prepareStatement(query);) {
+            long start = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery();) {
+                while (rs.next()) {
+                    Language l = extractQuery(rs);
+                    languages.add(l);
+                }
             }
+            SlowQueryLog.get().check(con, report, query, null, System.nanoTime() - start, languages.size());
         } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
             System.out.println("Query failed: " + e.getMessage());
         }
         return languages;
@@ -59,47 +108,12 @@ public class Language {
             System.out.println("No Languages found");
             return;
         }
+        ReportEvents.Render event = new ReportEvents.Render();
+        event.begin();
 
-        // Define column headers
-        String[] headers = {"Language", "Population", "PercentageOfWorld"};
-
-        // Compute max width for each column
-        int[] widths = new int[headers.length];
-        for (int i = 0; i < headers.length; i++) {
-            widths[i] = headers[i].length();
-        }
-
-        for (Language l : languages) {
-            widths[0] = Math.max(widths[0], l.Language.length());
-            widths[1] = Math.max(widths[1], String.valueOf(l.Population).length());
-            widths[2] = Math.max(widths[2], String.valueOf(l.Percentage).length());
-        }
-
-        // Helper to print a borderline
-        Runnable printBorder = () -> {
-            for (int w : widths) {
-                System.out.print("+" + "-".repeat(w + 2));
-            }
-            System.out.println("+");
-        };
-
-        // Print header
-        printBorder.run();
-        for (int i = 0; i < headers.length; i++) {
-            System.out.printf("| %-" + widths[i] + "s ", headers[i]);
-        }
-        System.out.println("|");
-        printBorder.run();
-
-        // Print rows
-        for (Language l : languages) {
-            System.out.printf("| %-" + widths[0] + "s ", l.Language);
-            System.out.printf("| %-" + widths[1] + "s ", l.Population);
-            System.out.printf("| %-" + widths[2] + "s ", l.Percentage);
-            System.out.println("|");
-        }
-
-        printBorder.run();
+        long chars = ConsoleTable.print(System.out, HEADERS, languages, (l, row) -> row
+                .cell(l.Language).cell(l.Population).cell(l.Percentage));
+        ReportEvents.commit(event, languages.size(), chars);
     }
 
     public void outputLanguage(ArrayList<Language> languages, String filename) {
@@ -109,6 +123,8 @@ public class Language {
             return;
         }
         System.out.println("Language list has " + languages.size() + " items. Generating Markdown...");
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
 
         StringBuilder sb = new StringBuilder();
         sb.append("| Name | Population | Percentage of the World |\r\n");
@@ -117,6 +133,8 @@ public class Language {
             if (l == null) continue;
             sb.append(" | " + l.Language + " | " + l.Population + " | " +  l.Percentage + "|\r\n");
         }
+        String markdown = sb.toString();
+        long bytes = MarkdownWriter.utf8Length(markdown);
         System.out.println("Markdown content generated. Attempting to write to file: /app/reports/" + filename);
         try {
             File reportsDir = new File("/app/reports/");  // Absolute path to match volume mount
@@ -126,12 +144,14 @@ public class Language {
             }
             File outputFile = new File("/app/reports/" + filename);  // Absolute path
             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-            writer.write(sb.toString());
+            writer.write(markdown);
             writer.close();
+            ReportMetrics.recordBytes(bytes);
             System.out.println("File written successfully to: " + outputFile.getAbsolutePath());
         } catch (IOException e) {
             System.out.println("Error writing file: " + e.getMessage());
             e.printStackTrace();
         }
+        ReportEvents.commit(event, languages.size(), bytes);
     }
 }
@@ -0,0 +1,169 @@
+package com.napier.sem;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded LRU report cache with an optional time-to-live.
+ *
+ * Once {@code maxEntries} results are held the least recently used one is dropped. Results older
+ * than {@code ttlMillis} are reloaded on the next request. Empty results are not kept, so a
+ * failed query is retried on the next request. A result whose load overlapped an invalidation is
+ * returned but not kept, as it may have been read before the data changed.
+ */
+public class LruReportCache implements ReportCache {
+
+    /**
+     * A cached result and when it stops being served.
+     */
+    private static class Entry {
+        final String report;
+        final ArrayList<?> rows;
+        final long expiresAt;
+
+        Entry(String report, ArrayList<?> rows, long expiresAt) {
+            this.report = report;
+            this.rows = rows;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final LinkedHashMap<String, Entry> entries;
+    // Bumped by every invalidation; guarded by entries
+    private long generation;
+
+    /**
+     * @param maxEntries Most results held at once; at least 1.
+     * @param ttlMillis  How long a result is served for; zero keeps results until evicted.
+     */
+    public LruReportCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    LruReportCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, use ReportCache.NONE for no cache");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // Access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > LruReportCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cache sized from -Dreport.cache.maxEntries and -Dreport.cache.ttlMillis, or
+     * {@link ReportCache#NONE} when maxEntries is 0, the default, so reports are never stale
+     * unless caching is asked for.
+     */
+    public static ReportCache fromSystemProperties() {
+        int maxEntries = Integer.getInteger("report.cache.maxEntries", 0);
+        if (maxEntries <= 0) {
+            return ReportCache.NONE;
+        }
+        return new LruReportCache(maxEntries, Long.getLong("report.cache.ttlMillis", 300000));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ArrayList<T> get(String report, Object[] params, Supplier<ArrayList<T>> load) {
+        String key = ReportCache.key(report, params);
+        long loadedAt;
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && (ttlMillis <= 0 || clock.getAsLong() < e.expiresAt)) {
+                hits.incrementAndGet();
+                return new ArrayList<>((ArrayList<T>) e.rows);
+            }
+            if (e != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+            loadedAt = generation;
+        }
+        misses.incrementAndGet();
+
+        // Run the query outside the lock so other reports are not held up
+        ArrayList<T> rows = load.get();
+        if (!rows.isEmpty()) {
+            Entry e = new Entry(report, new ArrayList<>(rows), clock.getAsLong() + ttlMillis);
+            synchronized (entries) {
+                if (generation == loadedAt) {
+                    entries.put(key, e);
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void invalidate(String report) {
+        synchronized (entries) {
+            generation++;
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().report.equals(report)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * Number of results held.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Requests answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Requests that ran the query.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Results dropped because the cache was full or the result had expired.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
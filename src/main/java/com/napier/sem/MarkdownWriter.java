@@ -0,0 +1,122 @@
+package com.napier.sem;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a Markdown table one row at a time, so a report never has to be held as a whole
+ * document in memory. Cells are written straight to a buffered writer.
+ */
+public class MarkdownWriter implements Closeable {
+    // Absolute path to match the volume mount
+    public static final String REPORTS_DIR = "/app/reports/";
+
+    private final Writer out;
+    private long rows;
+    private long bytes;
+
+    public MarkdownWriter(Writer out, String... headers) throws IOException {
+        this.out = out;
+        for (String header : headers) {
+            cell(header);
+        }
+        endLine();
+        for (int i = 0; i < headers.length; i++) {
+            cell("---");
+        }
+        endLine();
+    }
+
+    /**
+     * Create or replace a report file in the reports directory and write its header.
+     */
+    public static MarkdownWriter open(String filename, String... headers) throws IOException {
+        File reportsDir = new File(REPORTS_DIR);
+        if (!reportsDir.exists()) {
+            boolean dirCreated = reportsDir.mkdirs();
+            System.out.println("Reports directory created: " + dirCreated + " at " + reportsDir.getAbsolutePath());
+        }
+        Writer writer = new BufferedWriter(new FileWriter(new File(reportsDir, filename)), 1 << 16);
+        try {
+            return new MarkdownWriter(writer, headers);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Remove a report file from the reports directory, e.g. one left incomplete by an error.
+     */
+    public static void delete(String filename) {
+        File file = new File(REPORTS_DIR, filename);
+        if (file.exists() && !file.delete()) {
+            System.out.println("Could not delete incomplete report: " + file.getAbsolutePath());
+        }
+    }
+
+    public MarkdownWriter cell(String value) throws IOException {
+        out.write("| ");
+        if (value != null) {
+            out.write(value);
+            bytes += utf8Length(value);
+        }
+        out.write(' ');
+        bytes += 3;
+        return this;
+    }
+
+    public MarkdownWriter cell(long value) throws IOException {
+        return cell(Long.toString(value));
+    }
+
+    public MarkdownWriter cell(double value) throws IOException {
+        return cell(Double.toString(value));
+    }
+
+    /**
+     * Finish the current row.
+     */
+    public void endRow() throws IOException {
+        endLine();
+        rows++;
+    }
+
+    // Number of rows written, not counting the header
+    public long getRows() {
+        return rows;
+    }
+
+    // Size of the table so far in UTF-8, header included
+    public long getBytes() {
+        return bytes;
+    }
+
+    private void endLine() throws IOException {
+        out.write("|\r\n");
+        bytes += 3;
+    }
+
+    static int utf8Length(String s) {
+        int length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                // Three bytes, but four for a surrogate pair, which is two chars
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
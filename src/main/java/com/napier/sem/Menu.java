@@ -10,21 +10,81 @@ import java.util.Scanner;
 
 
 public class Menu {
-    private final Connection con;
+    private final ConnectionProvider provider;
     private final Country country;
     private final City city;
     private final Capital capital;
     private final Population population;
     private final Language language;
     private final Scanner scanner = new Scanner(System.in);
+    // Write unbounded list reports straight from the database to their file, without printing them
+    private final boolean streaming = Boolean.getBoolean("report.stream");
+    // Show the all-cities reports this many rows at a time instead of printing and writing them whole
+    private final int pageSize = Integer.getInteger("report.pageSize", 0);
 
     public Menu(Connection con) {
-        this.con = con;
-        this.country = new Country(con);
-        this.city = new City(con);
-        this.capital = new Capital(con);
-        this.population = new Population(con);
-        this.language = new Language(con);
+        this(ConnectionProvider.of(con));
+    }
+
+    // Each report borrows its own connection per query, so reports can share a pool
+    public Menu(ConnectionProvider provider) {
+        this.provider = provider;
+        this.country = new Country(provider);
+        this.city = new City(provider);
+        this.capital = new Capital(provider);
+        this.population = new Population(provider);
+        this.language = new Language(provider);
+
+        // Callers asking for the same report at once share one query, and with
+        // -Dreport.cache.maxEntries set, repeating a report is answered from memory
+        ReportCache results = LruReportCache.fromSystemProperties();
+        ReportCache cache = new SingleFlight(results);
+        this.country.setCache(cache);
+        this.city.setCache(cache);
+        this.capital.setCache(cache);
+        this.population.setCache(cache);
+        this.language.setCache(cache);
+
+        // Each top N report fetches its full ordering once and every later N is read from it,
+        // until the ordering expires from the cache along with the full report. Without a cache
+        // the ordering would be refetched every time, so the LIMIT queries are used instead
+        if (results != ReportCache.NONE) {
+            TopN topN = new TopN(cache);
+            this.country.setTopN(topN);
+            this.city.setTopN(topN);
+            this.capital.setTopN(topN);
+        }
+    }
+
+    // The continent, region and country breakdowns are read from precomputed totals
+    public void setPopulationRollup(PopulationRollup rollup) {
+        population.setRollup(rollup);
+    }
+
+    // The six single population reports are read from the prebuilt hierarchy
+    public void setPopulationTree(PopulationTree tree) {
+        population.setTree(tree);
+    }
+
+    // Every report is answered from the in-memory snapshot instead of MySQL
+    public Menu(WorldSnapshot snapshot) {
+        this.provider = null;
+        this.country = new Country(snapshot);
+        this.city = new City(snapshot);
+        this.capital = new Capital(snapshot);
+        this.population = new Population(snapshot);
+        this.language = new Language(snapshot);
+    }
+
+    // Paging reads the database a page at a time, so is not used with a snapshot
+    private boolean paging() {
+        return pageSize > 0 && provider != null;
+    }
+
+    // Asked between pages: Enter shows the next page, q stops
+    private boolean nextPage() {
+        System.out.print("-- Enter for the next " + pageSize + " cities, q to stop: ");
+        return !scanner.nextLine().trim().equalsIgnoreCase("q");
     }
 
     public void start() {
@@ -66,9 +126,14 @@ public class Menu {
             System.out.print("Enter your choice: ");
             int choice = scanner.nextInt();
             scanner.nextLine(); // consume newline
+            ReportMetrics.beginReport();
 
             switch (choice) {
                 case 1: {
+                    if (streaming) {
+                        country.streamCountries("1.md", WorldSnapshot.Scope.WORLD, null);
+                        break;
+                    }
                     ArrayList<Country> countries = country.getAllCountriesByPopulation();
                     country.printCountries(countries);
                     country.outputCountries(countries, "1.md");
@@ -77,6 +142,10 @@ public class Menu {
                 case 2: {
                     System.out.print("Enter continent: ");
                     String cont = scanner.nextLine();
+                    if (streaming) {
+                        country.streamCountries("2.md", WorldSnapshot.Scope.CONTINENT, cont);
+                        break;
+                    }
                     ArrayList<Country> continentCountries = country.getCountriesByContinent(cont);
                     country.printCountries(continentCountries);
                     country.outputCountries(continentCountries, "2.md");
@@ -85,6 +154,10 @@ public class Menu {
                 case 3: {
                     System.out.print("Enter region: ");
                     String region = scanner.nextLine();
+                    if (streaming) {
+                        country.streamCountries("3.md", WorldSnapshot.Scope.REGION, region);
+                        break;
+                    }
                     ArrayList<Country> regionCountries = country.getCountriesByRegion(region);
                     country.printCountries(regionCountries);
                     country.outputCountries(regionCountries, "3.md");
@@ -119,6 +192,14 @@ public class Menu {
                     break;
                 }
                 case 7: {
+                    if (paging()) {
+                        city.pageCities(WorldSnapshot.Scope.WORLD, null, pageSize, this::nextPage);
+                        break;
+                    }
+                    if (streaming) {
+                        city.streamCities("7.md", WorldSnapshot.Scope.WORLD, null);
+                        break;
+                    }
                     ArrayList<City> cities = city.getCities();
                     city.printCities(cities);
                     city.outputCities(cities, "7.md");
@@ -127,6 +208,14 @@ public class Menu {
                 case 8: {
                     System.out.print("Enter continent: ");
                     String cont = scanner.nextLine();
+                    if (paging()) {
+                        city.pageCities(WorldSnapshot.Scope.CONTINENT, cont, pageSize, this::nextPage);
+                        break;
+                    }
+                    if (streaming) {
+                        city.streamCities("8.md", WorldSnapshot.Scope.CONTINENT, cont);
+                        break;
+                    }
                     ArrayList<City> continentCities = city.getCitiesContinent(cont);
                     city.printCities(continentCities);
                     city.outputCities(continentCities, "8.md");
@@ -135,6 +224,14 @@ public class Menu {
                 case 9: {
                     System.out.print("Enter Region: ");
                     String reg = scanner.nextLine();
+                    if (paging()) {
+                        city.pageCities(WorldSnapshot.Scope.REGION, reg, pageSize, this::nextPage);
+                        break;
+                    }
+                    if (streaming) {
+                        city.streamCities("9.md", WorldSnapshot.Scope.REGION, reg);
+                        break;
+                    }
                     ArrayList<City> regionCities = city.getCitiesRegion(reg);
                     city.printCities(regionCities);
                     city.outputCities(regionCities, "9.md");
@@ -143,6 +240,14 @@ public class Menu {
                 case 10: {
                     System.out.print("Enter Country: ");
                     String cou = scanner.nextLine();
+                    if (paging()) {
+                        city.pageCities(WorldSnapshot.Scope.COUNTRY, cou, pageSize, this::nextPage);
+                        break;
+                    }
+                    if (streaming) {
+                        city.streamCities("10.md", WorldSnapshot.Scope.COUNTRY, cou);
+                        break;
+                    }
                     ArrayList<City> countryCities = city.getCitiesCountry(cou);
                     city.printCities(countryCities);
                     city.outputCities(countryCities, "10.md");
@@ -151,6 +256,14 @@ public class Menu {
                 case 11: {
                     System.out.print("Enter District: ");
                     String dis = scanner.nextLine();
+                    if (paging()) {
+                        city.pageCities(WorldSnapshot.Scope.DISTRICT, dis, pageSize, this::nextPage);
+                        break;
+                    }
+                    if (streaming) {
+                        city.streamCities("11.md", WorldSnapshot.Scope.DISTRICT, dis);
+                        break;
+                    }
                     ArrayList<City> districtCities = city.getCitiesDistrict(dis);
                     city.printCities(districtCities);
                     city.outputCities(districtCities, "11.md");
@@ -205,6 +318,10 @@ public class Menu {
                     break;
                 }
                 case 17: {
+                    if (streaming) {
+                        capital.streamCapitals("17.md", WorldSnapshot.Scope.WORLD, null);
+                        break;
+                    }
                     ArrayList<Capital> cities = capital.getCapitals();
                     capital.printCapitals(cities);
                     capital.outputCapitals(cities, "17.md");
@@ -213,6 +330,10 @@ public class Menu {
                 case 18: {
                     System.out.print("Enter continent: ");
                     String continent = scanner.nextLine();
+                    if (streaming) {
+                        capital.streamCapitals("18.md", WorldSnapshot.Scope.CONTINENT, continent);
+                        break;
+                    }
                     ArrayList<Capital> capitalsContinent = capital.getCapitalsContinent(continent);
                     capital.printCapitals(capitalsContinent);
                     capital.outputCapitals(capitalsContinent, "18.md");
@@ -221,6 +342,10 @@ public class Menu {
                 case 19: {
                     System.out.print("Enter region: ");
                     String region = scanner.nextLine();
+                    if (streaming) {
+                        capital.streamCapitals("19.md", WorldSnapshot.Scope.REGION, region);
+                        break;
+                    }
                     ArrayList<Capital> capitalsRegion = capital.getCapitalsRegion(region);
                     capital.printCapitals(capitalsRegion);
                     capital.outputCapitals(capitalsRegion, "19.md");
@@ -8,6 +8,10 @@ import java.sql.*;
 import java.util.ArrayList;
 
 public class Population {
+    private static final String[] BREAKDOWN_HEADERS =
+            {"Name", "Total_Population", "City_Population", "% in cities", "No_City_Population", "% in non cities"};
+    private static final String[] SINGLE_HEADERS = {"Name", "Population"};
+
     private String Name;
     private long totalPopulation;
     private long cityPopulation;
@@ -15,73 +19,158 @@ public class Population {
     private double cityPercentage;
     private double noCityPercentage;
 
-    private Connection con;
+    private ConnectionProvider provider;
+    private WorldSnapshot snapshot;
+    private ReportCache cache = ReportCache.NONE;
+    private PopulationRollup rollup;
+    private PopulationTree tree;
     public Population(Connection con) {
-        this.con = con;
+        this(ConnectionProvider.of(con));
+    }
+    public Population(ConnectionProvider provider) {
+        this.provider = provider;
+    }
+    // Answer every report from memory instead of MySQL
+    public Population(WorldSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+    // Serve repeated reports from a result cache instead of re-running the query
+    public void setCache(ReportCache cache) {
+        this.cache = cache;
+    }
+    // Answer the continent, region and country breakdowns from precomputed totals instead of a GROUP BY
+    public void setRollup(PopulationRollup rollup) {
+        this.rollup = rollup;
     }
+    // Answer the six single population reports from a prebuilt hierarchy instead of a SUM per report
+    public void setTree(PopulationTree tree) {
+        this.tree = tree;
+    }
+    Population(String name, long totalPopulation) {
+        this.Name = name;
+        this.totalPopulation = totalPopulation;
+    }
+    Population(String name, long totalPopulation, long cityPopulation, long noCityPopulation,
+               double cityPercentage, double noCityPercentage) {
+        this.Name = name;
+        this.totalPopulation = totalPopulation;
+        this.cityPopulation = cityPopulation;
+        this.noCityPopulation = noCityPopulation;
+        this.cityPercentage = cityPercentage;
+        this.noCityPercentage = noCityPercentage;
+    }
+
     public Population() {
         //
     }
 
+    public String getName() {
+        return Name;
+    }
+
+    public long getTotalPopulation() {
+        return totalPopulation;
+    }
+
+    public long getCityPopulation() {
+        return cityPopulation;
+    }
+
+    public long getNoCityPopulation() {
+        return noCityPopulation;
+    }
+
+    public double getCityPercentage() {
+        return cityPercentage;
+    }
+
+    public double getNoCityPercentage() {
+        return noCityPercentage;
+    }
+
     // Continent
     // So, total population is sum of population in country table.
     // Total population for people living in cities is the sum of population in City table
     // The difference between sum of population (country) and sum of population (city) is the rest of people not living in cities.
     public ArrayList<Population> continentPopulation() {
-        String query = "SELECT country.Continent AS Name, " +
-                "SUM(country.Population) AS Total_Population, " +
-                "SUM(city.Population) AS City_Population, " +
-                "SUM(country.Population) - SUM(city.Population) AS No_City_Population, " +
-                "(SUM(city.Population) / SUM(country.Population)) * 100 AS City_Percentage, " +
-                "((SUM(country.Population) - SUM(city.Population)) / SUM(country.Population)) * 100 AS No_City_Percentage " +
-                "FROM country JOIN city ON country.Code = city.CountryCode " +
-                "GROUP BY country.Continent " +
-                "ORDER BY Total_Population DESC";
-        return getPopulation(query);
+        if (snapshot != null) {
+            return snapshot.populationBreakdown(WorldSnapshot.Scope.CONTINENT);
+        }
+        if (rollup != null) {
+            return rollup.breakdown(WorldSnapshot.Scope.CONTINENT);
+        }
+        String query = breakdownQuery("country.Continent", "country.Continent");
+        return executeBreakdownQuery("Population.continentPopulation", query);
     }
 
     public ArrayList<Population> regionPopulation() {
-        String query = "SELECT country.Region AS Name, " +
-                "SUM(country.Population) AS Total_Population, " +
-                "SUM(city.Population) AS City_Population, " +
-                "SUM(country.Population) - SUM(city.Population) AS No_City_Population, " +
-                "(SUM(city.Population) / SUM(country.Population)) * 100 AS City_Percentage, " +
-                "((SUM(country.Population) - SUM(city.Population)) / SUM(country.Population)) * 100 AS No_City_Percentage " +
-                "FROM country JOIN city ON country.Code = city.CountryCode " +
-                "GROUP BY country.Region " +
-                "ORDER BY Total_Population DESC";
-        return getPopulation(query);
+        if (snapshot != null) {
+            return snapshot.populationBreakdown(WorldSnapshot.Scope.REGION);
+        }
+        if (rollup != null) {
+            return rollup.breakdown(WorldSnapshot.Scope.REGION);
+        }
+        String query = breakdownQuery("country.Region", "country.Region");
+        return executeBreakdownQuery("Population.regionPopulation", query);
     }
 
     public ArrayList<Population> countryPopulation() {
-        String query = "SELECT country.Name AS Name, " +
+        if (snapshot != null) {
+            return snapshot.populationBreakdown(WorldSnapshot.Scope.COUNTRY);
+        }
+        if (rollup != null) {
+            return rollup.breakdown(WorldSnapshot.Scope.COUNTRY);
+        }
+        String query = breakdownQuery("country.Name", "country.Code, country.Name");
+        return executeBreakdownQuery("Population.countryPopulation", query);
+    }
+
+    // City population is summed per country first and then joined, so each country's population
+    // is counted once, and countries without cities are kept with nobody living in cities
+    static String breakdownQuery(String name, String groupBy) {
+        return "SELECT " + name + " AS Name, " +
                 "SUM(country.Population) AS Total_Population, " +
-                "SUM(city.Population) AS City_Population, " +
-                "SUM(country.Population) - SUM(city.Population) AS No_City_Population, " +
-                "(SUM(city.Population) / SUM(country.Population)) * 100 AS City_Percentage, " +
-                "((SUM(country.Population) - SUM(city.Population)) / SUM(country.Population)) * 100 AS No_City_Percentage " +
-                "FROM country JOIN city ON country.Code = city.CountryCode " +
-                "GROUP BY country.Name, country.Population " +
-                "ORDER BY Total_Population DESC";
-        return getPopulation(query);
+                "SUM(COALESCE(city.Population, 0)) AS City_Population, " +
+                "SUM(country.Population) - SUM(COALESCE(city.Population, 0)) AS No_City_Population, " +
+                "(SUM(COALESCE(city.Population, 0)) / NULLIF(SUM(country.Population), 0)) * 100 AS City_Percentage, " +
+                "((SUM(country.Population) - SUM(COALESCE(city.Population, 0))) / NULLIF(SUM(country.Population), 0)) * 100 AS No_City_Percentage " +
+                "FROM country LEFT JOIN " +
+                "(SELECT CountryCode, SUM(Population) AS Population FROM city GROUP BY CountryCode) city " +
+                "ON country.Code = city.CountryCode " +
+                "GROUP BY " + groupBy + " " +
+                "ORDER BY Total_Population DESC, Name";
+    }
+
+    // Run a breakdown report through the result cache
+    private ArrayList<Population> executeBreakdownQuery(String report, String query) {
+        return ReportMetrics.time(report, new Object[0], () -> cache.get(report, new Object[0], () -> getPopulation(report, query)));
     }
 
     // To get population
     public ArrayList<Population> getPopulation(String query) {
+        return getPopulation(null, query);
+    }
+
+    private ArrayList<Population> getPopulation(String report, String query) {
         ArrayList<Population> populations = new ArrayList<>();
-        try (Statement stmt = con.createStatement();
-             ResultSet rset = stmt.executeQuery(query);) {
-            while (rset.next()) {
-                Population p = new Population();
-                p.Name = rset.getString("Name");
-                p.totalPopulation = rset.getLong("Total_Population");
-                p.cityPopulation = rset.getLong("City_Population");
-                p.cityPercentage = rset.getDouble("City_Percentage");
-                p.noCityPopulation = rset.getLong("No_City_Population");
-                p.noCityPercentage = rset.getDouble("No_City_Percentage");
-                populations.add(p);
+        try (Connection con = provider.getConnection();
+             Statement stmt = con.createStatement();) {
+            long start = System.nanoTime();
+            try (ResultSet rset = stmt.executeQuery(query);) {
+                while (rset.next()) {
+                    Population p = new Population();
+                    p.Name = rset.getString("Name");
+                    p.totalPopulation = rset.getLong("Total_Population");
+                    p.cityPopulation = rset.getLong("City_Population");
+                    p.cityPercentage = rset.getDouble("City_Percentage");
+                    p.noCityPopulation = rset.getLong("No_City_Population");
+                    p.noCityPercentage = rset.getDouble("No_City_Percentage");
+                    populations.add(p);
+                }
             }
+            SlowQueryLog.get().check(con, report, query, null, System.nanoTime() - start, populations.size());
         } catch (SQLException e) {
+            ReportMetrics.recordFailure(report);
             System.out.println("Query Failed: " + e.getMessage());
         }
         return populations;
@@ -93,52 +182,13 @@ public class Population {
             System.out.println("Population not found");
             return;
         }
+        ReportEvents.Render event = new ReportEvents.Render();
+        event.begin();
 
-        // Define column headers
-        String[] headers = {"Name", "Total_Population", "City_Population", "% in cities", "No_City_Population", "% in non cities"};
-
-        // Compute max width for each column
-        int[] widths = new int[headers.length];
-        for (int i = 0; i < headers.length; i++) {
-            widths[i] = headers[i].length();
-        }
-
-        for (Population p : populations) {
-            widths[0] = Math.max(widths[0], p.Name.length());
-            widths[1] = Math.max(widths[1], String.valueOf(p.totalPopulation).length());
-            widths[2] = Math.max(widths[2], String.valueOf(p.cityPopulation).length());
-            widths[3] = Math.max(widths[3], String.valueOf(p.cityPercentage).length());
-            widths[4] = Math.max(widths[4], String.valueOf(p.noCityPopulation).length());
-            widths[5] = Math.max(widths[5], String.valueOf(p.noCityPercentage).length());
-        }
-
-        // Helper to print a borderline
-        Runnable printBorder = () -> {
-            for (int w : widths) {
-                System.out.print("+" + "-".repeat(w + 2));
-            }
-            System.out.println("+");
-        };
-
-        // Print header
-        printBorder.run();
-        for (int i = 0; i < headers.length; i++) {
-            System.out.printf("| %-" + widths[i] + "s ", headers[i]);
-        }
-        System.out.println("|");
-        printBorder.run();
-
-        // Print rows
-        for (Population p : populations) {
-            System.out.printf("| %-" + widths[0] + "s ", p.Name);
-            System.out.printf("| %-" + widths[1] + "s ", p.totalPopulation);
-            System.out.printf("| %-" + widths[2] + "s ", p.cityPopulation);
-            System.out.printf("| %-" + widths[3] + "s ", p.cityPercentage);
-            System.out.printf("| %-" + widths[4] + "s ", p.noCityPopulation);
-            System.out.printf("| %-" + widths[5] + "s ", p.noCityPercentage);
-            System.out.println("|");
-        }
-        printBorder.run();
+        long chars = ConsoleTable.print(System.out, BREAKDOWN_HEADERS, populations, (p, row) -> row
+                .cell(p.Name).cell(p.totalPopulation).cell(p.cityPopulation).cell(p.cityPercentage)
+                .cell(p.noCityPopulation).cell(p.noCityPercentage));
+        ReportEvents.commit(event, populations.size(), chars);
     }
 
     public void outputPopulation(ArrayList<Population> populations, String filename) {
@@ -148,6 +198,8 @@ public class Population {
             return;
         }
         System.out.println("Population list has " + populations.size() + " items. Generating Markdown...");
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
 
         StringBuilder sb = new StringBuilder();
         sb.append("| Name | Total Population | City Population | % in cities | Non City Population | % in Non Cities |\r\n");
@@ -157,6 +209,8 @@ public class Population {
             sb.append(" | " + p.Name + " | " + p.totalPopulation + " | " + p.cityPopulation + " | " +
                     p.cityPercentage + " | " + p.noCityPopulation + " | " + p.noCityPercentage + "|\r\n");
         }
+        String markdown = sb.toString();
+        long bytes = MarkdownWriter.utf8Length(markdown);
         System.out.println("Markdown content generated. Attempting to write to file: /app/reports/" + filename);
         try {
             File reportsDir = new File("/app/reports/");  // Absolute path to match volume mount
@@ -166,86 +220,118 @@ public class Population {
             }
             File outputFile = new File("/app/reports/" + filename);  // Absolute path
             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-            writer.write(sb.toString());
+            writer.write(markdown);
             writer.close();
+            ReportMetrics.recordBytes(bytes);
             System.out.println("File written successfully to: " + outputFile.getAbsolutePath());
         } catch (IOException e) {
             System.out.println("Error writing file: " + e.getMessage());
             e.printStackTrace();
         }
+        ReportEvents.commit(event, populations.size(), bytes);
     }
 
     // Population of single continent/ region/ country/ district/ city
     public ArrayList<Population> populationWorld() {
+        if (snapshot != null) {
+            return snapshot.population(WorldSnapshot.Scope.WORLD, null);
+        }
+        if (tree != null) {
+            return tree.population(WorldSnapshot.Scope.WORLD, null);
+        }
         String query = "SELECT 'World' AS Name, SUM(Population) AS Population " +
                 "FROM country";
-        return executeQuery(query);
+        return executeQuery("Population.populationWorld", query);
     }
 
     public ArrayList<Population> populationContinent(String continent) {
+        if (snapshot != null) {
+            return snapshot.population(WorldSnapshot.Scope.CONTINENT, continent);
+        }
+        if (tree != null) {
+            return tree.population(WorldSnapshot.Scope.CONTINENT, continent);
+        }
         String query = "SELECT Continent AS Name, SUM(Population) AS Population " +
                 "FROM country WHERE Continent = ? " +
                 "GROUP BY Continent " +
                 "ORDER BY Population DESC";
-        return executeQuery(query, continent);
+        return executeQuery("Population.populationContinent", query, continent);
     }
 
     public ArrayList<Population> populationRegion(String region) {
+        if (snapshot != null) {
+            return snapshot.population(WorldSnapshot.Scope.REGION, region);
+        }
+        if (tree != null) {
+            return tree.population(WorldSnapshot.Scope.REGION, region);
+        }
         String query = "SELECT Region AS Name, SUM(Population) AS Population " +
                 "FROM country WHERE Region = ? " +
                 "GROUP BY Region " +
                 "ORDER BY Population DESC";
-        return executeQuery(query, region);
+        return executeQuery("Population.populationRegion", query, region);
     }
 
     public ArrayList<Population> populationCountry(String country) {
+        if (snapshot != null) {
+            return snapshot.population(WorldSnapshot.Scope.COUNTRY, country);
+        }
+        if (tree != null) {
+            return tree.population(WorldSnapshot.Scope.COUNTRY, country);
+        }
         String query = "SELECT Name, Population " +
                 "FROM country WHERE Name = ? " +
                 "ORDER BY Population DESC";
-        return executeQuery(query, country);
+        return executeQuery("Population.populationCountry", query, country);
     }
 
     public ArrayList<Population> populationDistrict(String district) {
+        if (snapshot != null) {
+            return snapshot.population(WorldSnapshot.Scope.DISTRICT, district);
+        }
+        if (tree != null) {
+            return tree.population(WorldSnapshot.Scope.DISTRICT, district);
+        }
         String query = "SELECT District AS Name, Population " +
                 "FROM city WHERE District = ? " +
                 "ORDER BY Population DESC";
-        return executeQuery(query, district);
+        return executeQuery("Population.populationDistrict", query, district);
     }
 
     public ArrayList<Population> populationCity(String city) {
+        if (snapshot != null) {
+            return snapshot.population(WorldSnapshot.Scope.CITY, city);
+        }
+        if (tree != null) {
+            return tree.population(WorldSnapshot.Scope.CITY, city);
+        }
         String query = "SELECT Name, Population " +
                 "FROM city WHERE Name = ? " +
                 "ORDER BY Population DESC";
-        return executeQuery(query, city);
+        return executeQuery("Population.populationCity", query, city);
     }
 
-    // Query without param
-    private ArrayList<Population> executeQuery(String query) {
-        ArrayList<Population> populations = new ArrayList<Population>();
-        try (PreparedStatement stmt = con.prepareStatement(query);
-             ResultSet rset = stmt.executeQuery();) {
-            while (rset.next()) {
-                Population p = extractPopulations(rset);
-                populations.add(p);
-            }
-        } catch (Exception e) {
-            System.out.println("Query failed: " + e.getMessage());
-        }
-        return populations;
+    // Run a report through the result cache
+    private ArrayList<Population> executeQuery(String report, String query, Object... params) {
+        return ReportMetrics.time(report, params, () -> cache.get(report, params, () -> loadPopulations(report, query, params)));
     }
 
-    // Query with one param
-    private ArrayList<Population> executeQuery(String query, String param) {
+    // Query with any number of params, on a connection borrowed for this query only
+    private ArrayList<Population> loadPopulations(String report, String query, Object... params) {
         ArrayList<Population> populations = new ArrayList<Population>();
-        try(PreparedStatement stmt = con.prepareStatement(query);) {
-            stmt.setString(1, param);
+        try(Connection con = provider.getConnection();
+            PreparedStatement stmt = con.prepareStatement(query);) {
+            QueryHelper.bind(stmt, params);
+            long start = System.nanoTime();
             try(ResultSet rset = stmt.executeQuery();) {
                 while (rset.next()) {
                     Population p = extractPopulations(rset);
                     populations.add(p);
                 }
             }
+            SlowQueryLog.get().check(con, report, query, params, System.nanoTime() - start, populations.size());
         }  catch (Exception e) {
+            ReportMetrics.recordFailure(report);
             System.out.println("Query failed: " + e.getMessage());
         }
         return populations;
@@ -265,45 +351,12 @@ public class Population {
             System.out.println("No population found");
             return;
         }
+        ReportEvents.Render event = new ReportEvents.Render();
+        event.begin();
 
-        // Define column headers
-        String[] headers = {"Name", "Population"};
-
-        // Compute max width for each column
-        int[] widths = new int[headers.length];
-        for (int i = 0; i < headers.length; i++) {
-            widths[i] = headers[i].length();
-        }
-
-        for (Population p : populations) {
-            widths[0] = Math.max(widths[0], p.Name.length());
-            widths[1] = Math.max(widths[1], String.valueOf(p.totalPopulation).length());
-        }
-
-        // Helper to print a borderline
-        Runnable printBorder = () -> {
-            for (int w : widths) {
-                System.out.print("+" + "-".repeat(w + 2));
-            }
-            System.out.println("+");
-        };
-
-        // Print header
-        printBorder.run();
-        for (int i = 0; i < headers.length; i++) {
-            System.out.printf("| %-" + widths[i] + "s ", headers[i]);
-        }
-        System.out.println("|");
-        printBorder.run();
-
-        // Print rows
-        for (Population p : populations) {
-            System.out.printf("| %-" + widths[0] + "s ", p.Name);
-            System.out.printf("| %-" + widths[1] + "s ", p.totalPopulation);
-            System.out.println("|");
-        }
-
-        printBorder.run();
+        long chars = ConsoleTable.print(System.out, SINGLE_HEADERS, populations, (p, row) -> row
+                .cell(p.Name).cell(p.totalPopulation));
+        ReportEvents.commit(event, populations.size(), chars);
     }
 
     public void outputSinglePopulation(ArrayList<Population> populations, String filename) {
@@ -313,6 +366,8 @@ public class Population {
             return;
         }
         System.out.println("Population list has " + populations.size() + " items. Generating Markdown...");
+        ReportEvents.Write event = new ReportEvents.Write();
+        event.begin();
 
         StringBuilder sb = new StringBuilder();
         sb.append("| Name | Total Population |\r\n");
@@ -321,6 +376,8 @@ public class Population {
             if (p == null) continue;
             sb.append(" | " + p.Name + " | " + p.totalPopulation + "|\r\n");
         }
+        String markdown = sb.toString();
+        long bytes = MarkdownWriter.utf8Length(markdown);
         System.out.println("Markdown content generated. Attempting to write to file: /app/reports/" + filename);
         try {
             File reportsDir = new File("/app/reports/");  // Absolute path to match volume mount
@@ -330,12 +387,14 @@ public class Population {
             }
             File outputFile = new File("/app/reports/" + filename);  // Absolute path
             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-            writer.write(sb.toString());
+            writer.write(markdown);
             writer.close();
+            ReportMetrics.recordBytes(bytes);
             System.out.println("File written successfully to: " + outputFile.getAbsolutePath());
         } catch (IOException e) {
             System.out.println("Error writing file: " + e.getMessage());
             e.printStackTrace();
         }
+        ReportEvents.commit(event, populations.size(), bytes);
     }
 }
@@ -0,0 +1,215 @@
+package com.napier.sem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Total, city and non-city population for every continent, region and country, computed in one
+ * pass over the country and city rows and then kept up to date as populations change, so the three
+ * breakdown reports are answered without a GROUP BY.
+ *
+ * Each country's population is counted once per group, and countries without cities are included
+ * with nobody living in cities. Percentages are rounded to four places, as MySQL returns them.
+ * Cities of unknown countries are left out, as the join would.
+ */
+public class PopulationRollup {
+
+    private static class Group {
+        final String name;
+        long total;
+        long inCities;
+
+        Group(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class CountryGroup extends Group {
+        final Group continent;
+        final Group region;
+
+        CountryGroup(String name, Group continent, Group region) {
+            super(name);
+            this.continent = continent;
+            this.region = region;
+        }
+    }
+
+    private static final class CityRow {
+        final CountryGroup country;
+        int population;
+
+        CityRow(CountryGroup country, int population) {
+            this.country = country;
+            this.population = population;
+        }
+    }
+
+    private final LinkedHashMap<String, Group> continents = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Group> regions = new LinkedHashMap<>();
+    private final LinkedHashMap<String, CountryGroup> countries = new LinkedHashMap<>();
+    private final HashMap<Integer, CityRow> cities = new HashMap<>();
+
+    // Sorted reports, rebuilt on the next read after a change
+    private ArrayList<Population> continentView;
+    private ArrayList<Population> regionView;
+    private ArrayList<Population> countryView;
+
+    /**
+     * Read the country and city tables once and build every total from them.
+     */
+    public static PopulationRollup load(ConnectionProvider provider) throws SQLException {
+        PopulationRollup rollup = new PopulationRollup();
+        try (Connection con = provider.getConnection()) {
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "SELECT Code, Name, Continent, Region, Population FROM country");
+                 ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    rollup.addCountry(rset.getString("Code"), rset.getString("Name"), rset.getString("Continent"),
+                            rset.getString("Region"), rset.getInt("Population"));
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement("SELECT ID, CountryCode, Population FROM city");
+                 ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    rollup.addCity(rset.getInt("ID"), rset.getString("CountryCode"), rset.getInt("Population"));
+                }
+            }
+        }
+        return rollup;
+    }
+
+    /**
+     * Add a country. Countries must be added before their cities.
+     */
+    public synchronized void addCountry(String code, String name, String continent, String region, int population) {
+        Group c = continents.computeIfAbsent(key(continent), k -> new Group(continent));
+        Group r = regions.computeIfAbsent(key(region), k -> new Group(region));
+        CountryGroup country = new CountryGroup(name, c, r);
+        CountryGroup old = countries.put(key(code), country);
+        if (old != null) {
+            throw new IllegalArgumentException("Country " + code + " added twice");
+        }
+        addTotal(country, population);
+    }
+
+    /**
+     * Add a city; returns false if its country is unknown, in which case it is not counted.
+     */
+    public synchronized boolean addCity(int id, String countryCode, int population) {
+        CountryGroup country = countries.get(key(countryCode));
+        if (country == null) {
+            return false;
+        }
+        if (cities.putIfAbsent(id, new CityRow(country, population)) != null) {
+            throw new IllegalArgumentException("City " + id + " added twice");
+        }
+        addInCities(country, population);
+        return true;
+    }
+
+    /**
+     * A country's population changed; returns false if the country is unknown.
+     */
+    public synchronized boolean setCountryPopulation(String code, int population) {
+        CountryGroup country = countries.get(key(code));
+        if (country == null) {
+            return false;
+        }
+        addTotal(country, population - country.total);
+        return true;
+    }
+
+    /**
+     * A city's population changed; returns false if the city is unknown.
+     */
+    public synchronized boolean setCityPopulation(int id, int population) {
+        CityRow city = cities.get(id);
+        if (city == null) {
+            return false;
+        }
+        addInCities(city.country, population - city.population);
+        city.population = population;
+        return true;
+    }
+
+    /**
+     * A city was deleted; returns false if the city is unknown.
+     */
+    public synchronized boolean removeCity(int id) {
+        CityRow city = cities.remove(id);
+        if (city == null) {
+            return false;
+        }
+        addInCities(city.country, -city.population);
+        return true;
+    }
+
+    /**
+     * The breakdown per CONTINENT, REGION or COUNTRY, largest total first.
+     */
+    public synchronized ArrayList<Population> breakdown(WorldSnapshot.Scope scope) {
+        switch (scope) {
+            case CONTINENT:
+                if (continentView == null) {
+                    continentView = view(continents);
+                }
+                return new ArrayList<>(continentView);
+            case REGION:
+                if (regionView == null) {
+                    regionView = view(regions);
+                }
+                return new ArrayList<>(regionView);
+            case COUNTRY:
+                if (countryView == null) {
+                    countryView = view(countries);
+                }
+                return new ArrayList<>(countryView);
+            default:
+                throw new IllegalArgumentException("No population breakdown by " + scope);
+        }
+    }
+
+    private void addTotal(CountryGroup country, long delta) {
+        country.total += delta;
+        country.continent.total += delta;
+        country.region.total += delta;
+        changed();
+    }
+
+    private void addInCities(CountryGroup country, long delta) {
+        country.inCities += delta;
+        country.continent.inCities += delta;
+        country.region.inCities += delta;
+        changed();
+    }
+
+    private void changed() {
+        continentView = null;
+        regionView = null;
+        countryView = null;
+    }
+
+    private static ArrayList<Population> view(LinkedHashMap<String, ? extends Group> groups) {
+        ArrayList<Population> rows = new ArrayList<>(groups.size());
+        for (Group g : groups.values()) {
+            long outside = g.total - g.inCities;
+            rows.add(new Population(g.name, g.total, g.inCities, outside,
+                    WorldSnapshot.percentage(g.inCities, g.total), WorldSnapshot.percentage(outside, g.total)));
+        }
+        rows.sort(Comparator.comparingLong(Population::getTotalPopulation).reversed()
+                .thenComparing(Population::getName));
+        return rows;
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,276 @@
+package com.napier.sem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The world, its continents, regions, countries, districts and cities as one tree with the
+ * population of every node, built in a single pass over country joined to city. The six single
+ * population reports are then a map lookup, and drilling down to a node's children or back up to
+ * its parent needs no query at all.
+ *
+ * World, continent, region and country figures are sums of country populations; district and city
+ * figures are sums of city populations. The district report has one row per city of every district
+ * with that name, as the query does. Cities of unknown countries are left out, as the join would.
+ */
+public class PopulationTree {
+
+    private static final Comparator<Node> LARGEST_FIRST =
+            Comparator.comparingLong(Node::getPopulation).reversed().thenComparing(Node::getName);
+
+    /**
+     * One place in the hierarchy.
+     */
+    public static final class Node {
+        private final WorldSnapshot.Scope level;
+        private final String name;
+        private final Node parent;
+        private final LinkedHashMap<String, Node> children = new LinkedHashMap<>();
+        private List<Node> sorted = Collections.emptyList();
+        private long population;
+
+        private Node(WorldSnapshot.Scope level, String name, Node parent) {
+            this.level = level;
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public WorldSnapshot.Scope getLevel() {
+            return level;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getPopulation() {
+            return population;
+        }
+
+        // Null for the world
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * The nodes one level down, largest population first.
+         */
+        public List<Node> getChildren() {
+            return sorted;
+        }
+    }
+
+    private final Node world = new Node(WorldSnapshot.Scope.WORLD, "World", null);
+    private final HashMap<String, Node> countriesByCode = new HashMap<>();
+    private final HashMap<Integer, Node> citiesById = new HashMap<>();
+
+    // Every node of each level by lower-case name, filled in by finish()
+    private final HashMap<WorldSnapshot.Scope, HashMap<String, List<Node>>> byName = new HashMap<>();
+    // The report rows for each level and name, so a report is a lookup
+    private final HashMap<WorldSnapshot.Scope, HashMap<String, ArrayList<Population>>> reports = new HashMap<>();
+    private boolean finished;
+
+    /**
+     * Read country joined to city once and build the whole tree from it.
+     */
+    public static PopulationTree load(ConnectionProvider provider) throws SQLException {
+        PopulationTree tree = new PopulationTree();
+        try (Connection con = provider.getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                     "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, " +
+                     "city.ID AS CityID, city.Name AS CityName, city.District, city.Population AS CityPopulation " +
+                     "FROM country LEFT JOIN city ON city.CountryCode = country.Code")) {
+            QueryHelper.applyFetchMode(stmt, QueryHelper.FetchMode.CURSOR);
+            try (ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    String code = rset.getString("Code");
+                    if (!tree.countriesByCode.containsKey(key(code))) {
+                        tree.addCountry(code, rset.getString("Name"), rset.getString("Continent"),
+                                rset.getString("Region"), rset.getInt("Population"));
+                    }
+                    int cityId = rset.getInt("CityID");
+                    if (!rset.wasNull()) {
+                        tree.addCity(cityId, rset.getString("CityName"), code, rset.getString("District"),
+                                rset.getInt("CityPopulation"));
+                    }
+                }
+            }
+        }
+        tree.finish();
+        return tree;
+    }
+
+    /**
+     * Add a country. Countries must be added before their cities, and before {@link #finish()}.
+     */
+    public void addCountry(String code, String name, String continent, String region, int population) {
+        checkOpen();
+        if (countriesByCode.containsKey(key(code))) {
+            throw new IllegalArgumentException("Country " + code + " added twice");
+        }
+        Node c = child(world, WorldSnapshot.Scope.CONTINENT, continent);
+        Node r = child(c, WorldSnapshot.Scope.REGION, region);
+        // Keyed by code, as two countries may share a name
+        Node country = new Node(WorldSnapshot.Scope.COUNTRY, name, r);
+        r.children.put(key(code), country);
+        countriesByCode.put(key(code), country);
+        for (Node n = country; n != null; n = n.parent) {
+            n.population += population;
+        }
+    }
+
+    /**
+     * Add a city; returns false if its country is unknown, in which case it is not counted.
+     */
+    public boolean addCity(int id, String name, String countryCode, String district, int population) {
+        checkOpen();
+        Node country = countriesByCode.get(key(countryCode));
+        if (country == null) {
+            return false;
+        }
+        if (citiesById.containsKey(id)) {
+            throw new IllegalArgumentException("City " + id + " added twice");
+        }
+        Node d = child(country, WorldSnapshot.Scope.DISTRICT, district);
+        Node city = new Node(WorldSnapshot.Scope.CITY, name, d);
+        d.children.put(Integer.toString(id), city);
+        citiesById.put(id, city);
+        city.population = population;
+        d.population += population;
+        return true;
+    }
+
+    /**
+     * Sort every node's children and index each level by name. The tree cannot be changed after this,
+     * so it can be read from any number of threads.
+     */
+    public PopulationTree finish() {
+        checkOpen();
+        for (WorldSnapshot.Scope level : WorldSnapshot.Scope.values()) {
+            byName.put(level, new HashMap<>());
+        }
+        index(world);
+        for (WorldSnapshot.Scope level : WorldSnapshot.Scope.values()) {
+            HashMap<String, ArrayList<Population>> rows = new HashMap<>();
+            for (List<Node> nodes : byName.get(level).values()) {
+                nodes.sort(LARGEST_FIRST);
+                rows.put(key(nodes.get(0).name), report(level, nodes));
+            }
+            reports.put(level, rows);
+        }
+        finished = true;
+        return this;
+    }
+
+    public Node getWorld() {
+        return world;
+    }
+
+    /**
+     * Every node of the given level called {@code name}, largest first; empty if there are none.
+     */
+    public List<Node> find(WorldSnapshot.Scope level, String name) {
+        checkFinished();
+        if (level == WorldSnapshot.Scope.WORLD) {
+            return Collections.singletonList(world);
+        }
+        List<Node> nodes = name == null ? null : byName.get(level).get(key(name));
+        return nodes == null ? Collections.emptyList() : Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * The single population report for the world, or for the continent, region, country, district
+     * or city called {@code name}.
+     */
+    public ArrayList<Population> population(WorldSnapshot.Scope level, String name) {
+        checkFinished();
+        if (level == WorldSnapshot.Scope.WORLD) {
+            return singleRow(world);
+        }
+        ArrayList<Population> rows = name == null ? null : reports.get(level).get(key(name));
+        return rows == null ? new ArrayList<>() : new ArrayList<>(rows);
+    }
+
+    /**
+     * The places one level below every node of the given level called {@code name}, largest first.
+     */
+    public ArrayList<Population> drillDown(WorldSnapshot.Scope level, String name) {
+        ArrayList<Population> rows = new ArrayList<>();
+        for (Node node : find(level, name)) {
+            for (Node child : node.getChildren()) {
+                rows.add(new Population(child.name, child.population));
+            }
+        }
+        if (rows.size() > 1) {
+            rows.sort(Comparator.comparingLong(Population::getTotalPopulation).reversed()
+                    .thenComparing(Population::getName));
+        }
+        return rows;
+    }
+
+    private static ArrayList<Population> report(WorldSnapshot.Scope level, List<Node> nodes) {
+        if (level == WorldSnapshot.Scope.DISTRICT) {
+            // One row per city of every district with this name, as the query returns
+            ArrayList<Population> rows = new ArrayList<>();
+            for (Node d : nodes) {
+                for (Node city : d.sorted) {
+                    rows.add(new Population(d.name, city.population));
+                }
+            }
+            rows.sort(Comparator.comparingLong(Population::getTotalPopulation).reversed());
+            return rows;
+        }
+        ArrayList<Population> rows = new ArrayList<>(nodes.size());
+        for (Node n : nodes) {
+            rows.add(new Population(n.name, n.population));
+        }
+        return rows;
+    }
+
+    private static ArrayList<Population> singleRow(Node node) {
+        ArrayList<Population> rows = new ArrayList<>(1);
+        rows.add(new Population(node.name, node.population));
+        return rows;
+    }
+
+    private void index(Node node) {
+        byName.get(node.level).computeIfAbsent(key(node.name), k -> new ArrayList<>()).add(node);
+        if (!node.children.isEmpty()) {
+            ArrayList<Node> children = new ArrayList<>(node.children.values());
+            children.sort(LARGEST_FIRST);
+            node.sorted = Collections.unmodifiableList(children);
+            for (Node child : children) {
+                index(child);
+            }
+        }
+    }
+
+    private static Node child(Node parent, WorldSnapshot.Scope level, String name) {
+        return parent.children.computeIfAbsent(key(name), k -> new Node(level, name, parent));
+    }
+
+    private void checkOpen() {
+        if (finished) {
+            throw new IllegalStateException("Population tree is already finished");
+        }
+    }
+
+    private void checkFinished() {
+        if (!finished) {
+            throw new IllegalStateException("Population tree is not finished");
+        }
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,70 @@
+package com.napier.sem;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Secondary index from a small int key (a symbol id or a country row) to the rows having that key.
+ *
+ * All posting lists are stored back to back in one int[] with an offsets array, and each list keeps
+ * the order of the ordering it was built from, so an index built from a population ordering gives
+ * every key's rows largest first. Building is a single counting pass.
+ */
+public class PostingIndex {
+    private final int[] offsets;
+    private final int[] rows;
+
+    /**
+     * @param order    Rows in the order each posting list should keep.
+     * @param keyOf    Key of a row, in [0, keyCount); negative keys are left out.
+     * @param keyCount Number of distinct keys.
+     */
+    public PostingIndex(int[] order, IntUnaryOperator keyOf, int keyCount) {
+        int[] keys = new int[order.length];
+        offsets = new int[keyCount + 1];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keyOf.applyAsInt(order[i]);
+            if (keys[i] >= 0) {
+                offsets[keys[i] + 1]++;
+            }
+        }
+        for (int k = 0; k < keyCount; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+        rows = new int[offsets[keyCount]];
+        int[] next = Arrays.copyOf(offsets, keyCount);
+        for (int i = 0; i < order.length; i++) {
+            if (keys[i] >= 0) {
+                rows[next[keys[i]]++] = order[i];
+            }
+        }
+    }
+
+    /**
+     * Number of rows with the key.
+     */
+    public int size(int key) {
+        if (key < 0 || key + 1 >= offsets.length) {
+            return 0;
+        }
+        return offsets[key + 1] - offsets[key];
+    }
+
+    /**
+     * The first {@code limit} rows with the key, in index order.
+     */
+    public int[] slice(int key, int limit) {
+        int n = Math.min(size(key), Math.max(limit, 0));
+        if (n == 0) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(rows, offsets[key], offsets[key] + n);
+    }
+
+    /**
+     * Row at a position within the key's posting list.
+     */
+    public int get(int key, int position) {
+        return rows[offsets[key] + position];
+    }
+}
@@ -0,0 +1,110 @@
+package com.napier.sem;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Small JDBC helpers shared by the report classes.
+ */
+public final class QueryHelper {
+    // Rows fetched per round trip in CURSOR mode, set with -Dreport.fetchSize
+    public static final int FETCH_SIZE = Integer.getInteger("report.fetchSize", 1000);
+
+    /**
+     * How the unbounded reports read their rows.
+     * BUFFERED is the driver default: the whole result is in client memory before the first row.
+     * CURSOR reads FETCH_SIZE rows per round trip from a server-side cursor (MySQL needs
+     * useCursorFetch=true on the URL, which App adds).
+     * STREAM has MySQL send rows one by one; the connection is busy until the last row is read.
+     */
+    public enum FetchMode { BUFFERED, CURSOR, STREAM }
+
+    // Set with -Dreport.fetchMode=buffered|cursor|stream
+    public static final FetchMode FETCH_MODE =
+            FetchMode.valueOf(System.getProperty("report.fetchMode", "buffered").toUpperCase(Locale.ROOT));
+
+    /**
+     * Receives each row of a streamed query while the ResultSet is positioned on it.
+     */
+    public interface RowHandler {
+        void row(ResultSet rset) throws SQLException, IOException;
+    }
+
+    private QueryHelper() {
+        //
+    }
+
+    /**
+     * Bind parameters in order: Strings with setString and ints with setInt.
+     */
+    public static void bind(PreparedStatement stmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            if (param instanceof Integer) {
+                stmt.setInt(i + 1, (Integer) param);
+            } else {
+                stmt.setString(i + 1, (String) param);
+            }
+        }
+    }
+
+    /**
+     * Set up a statement to fetch its rows as {@code mode} says.
+     */
+    public static void applyFetchMode(PreparedStatement stmt, FetchMode mode) throws SQLException {
+        switch (mode) {
+            case CURSOR:
+                stmt.setFetchSize(FETCH_SIZE);
+                break;
+            case STREAM:
+                try {
+                    // MySQL Connector/J's signal for a row-by-row streaming result
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                } catch (SQLException e) {
+                    // Other drivers (H2 in the tests) reject a negative size; ask for batches instead
+                    stmt.setFetchSize(FETCH_SIZE);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The fetch mode for a query whose rows are never collected: CURSOR when the URL asks for
+     * server-side cursors, otherwise STREAM, since a fetch size alone is ignored by Connector/J
+     * and the whole result would still be buffered.
+     */
+    static FetchMode rowByRowMode() {
+        return FETCH_MODE == FetchMode.CURSOR ? FetchMode.CURSOR : FetchMode.STREAM;
+    }
+
+    /**
+     * Run a query and hand each row to the handler as it is read, without collecting the rows.
+     * The whole run, handler included, is checked against the slow query log.
+     *
+     * @return the number of rows read
+     */
+    public static long forEachRow(ConnectionProvider provider, String report, String query, Object[] params,
+                                  RowHandler handler) throws SQLException, IOException {
+        long rows = 0;
+        try (Connection con = provider.getConnection();
+             PreparedStatement stmt = con.prepareStatement(query)) {
+            applyFetchMode(stmt, rowByRowMode());
+            bind(stmt, params);
+            long start = System.nanoTime();
+            try (ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    handler.row(rset);
+                    rows++;
+                }
+            }
+            SlowQueryLog.get().check(con, report, query, params, System.nanoTime() - start, rows);
+        }
+        return rows;
+    }
+}
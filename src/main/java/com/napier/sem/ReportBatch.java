@@ -0,0 +1,260 @@
+package com.napier.sem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the numbered menu reports without prompting and writes each one to reports/&lt;n&gt;.md,
+ * several at a time on a fixed pool of threads or on virtual threads. Each query borrows its own
+ * connection, so the batch takes about as long as its slowest report rather than the sum of all of them.
+ *
+ * Reports that ask for a value use -Dbatch.continent, -Dbatch.region, -Dbatch.country,
+ * -Dbatch.district, -Dbatch.city and -Dbatch.n instead.
+ */
+public class ReportBatch {
+    public static final int REPORTS = 32;
+
+    private final String continent = System.getProperty("batch.continent", "Asia");
+    private final String region = System.getProperty("batch.region", "Caribbean");
+    private final String countryName = System.getProperty("batch.country", "United Kingdom");
+    private final String district = System.getProperty("batch.district", "England");
+    private final String cityName = System.getProperty("batch.city", "Edinburgh");
+    private final int n = Integer.getInteger("batch.n", 10);
+
+    private final Country country;
+    private final City city;
+    private final Capital capital;
+    private final Population population;
+    private final Language language;
+    private final int threads;
+    private boolean virtualThreads;
+
+    /**
+     * One result per report run.
+     */
+    public static final class Result {
+        public final int report;
+        public final long rows;
+        public final long millis;
+        // Null if the report ran
+        public final String error;
+
+        Result(int report, long rows, long millis, String error) {
+            this.report = report;
+            this.rows = rows;
+            this.millis = millis;
+            this.error = error;
+        }
+    }
+
+    public ReportBatch(ConnectionProvider provider, int threads) {
+        this(new Country(provider), new City(provider), new Capital(provider), new Population(provider),
+                new Language(provider), threads);
+
+        // Reports running at the same time share one query for the same rows, and the top N
+        // reports are cut from the full orderings the list reports fetch
+        ReportCache cache = new SingleFlight();
+        TopN topN = new TopN();
+        country.setCache(cache);
+        city.setCache(cache);
+        capital.setCache(cache);
+        population.setCache(cache);
+        language.setCache(cache);
+        country.setTopN(topN);
+        city.setTopN(topN);
+        capital.setTopN(topN);
+    }
+
+    public ReportBatch(WorldSnapshot snapshot, int threads) {
+        this(new Country(snapshot), new City(snapshot), new Capital(snapshot), new Population(snapshot),
+                new Language(snapshot), threads);
+    }
+
+    private ReportBatch(Country country, City city, Capital capital, Population population, Language language,
+                        int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.country = country;
+        this.city = city;
+        this.capital = capital;
+        this.population = population;
+        this.language = language;
+        this.threads = threads;
+    }
+
+    // Run each report on its own virtual thread (Java 21+), so only the connection pool limits
+    // how many run at once; the thread count is then only used as the fallback on older runtimes
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Run the given reports and return their results in the order asked for.
+     * A report may be listed more than once; it runs once and every copy gets its result, as
+     * copies running together would all write the same reports/&lt;n&gt;.md.
+     */
+    public List<Result> run(List<Integer> reports) {
+        Set<Integer> distinct = new LinkedHashSet<>(reports);
+        ExecutorService executor = ReportExecutors.forReports("report-batch", virtualThreads,
+                Math.min(threads, Math.max(distinct.size(), 1)));
+        try {
+            Map<Integer, Future<Result>> futures = new HashMap<>();
+            for (int report : distinct) {
+                futures.put(report, executor.submit(() -> runTimed(report)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (int report : reports) {
+                try {
+                    results.add(futures.get(report).get());
+                } catch (ExecutionException e) {
+                    results.add(new Result(report, 0, 0, String.valueOf(e.getCause())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results.add(new Result(report, 0, 0, "interrupted"));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result runTimed(int report) {
+        ReportMetrics.beginReport();
+        long start = System.nanoTime();
+        try {
+            long rows = run(report);
+            // The report classes answer a failed query with no rows, which is not an empty result
+            String failed = ReportMetrics.failedReport();
+            return new Result(report, rows, (System.nanoTime() - start) / 1_000_000L,
+                    failed == null ? null : "query failed: " + failed);
+        } catch (RuntimeException e) {
+            return new Result(report, 0, (System.nanoTime() - start) / 1_000_000L, String.valueOf(e));
+        }
+    }
+
+    /**
+     * Run one numbered report, write its file and return how many rows it had.
+     */
+    long run(int report) {
+        String file = report + ".md";
+        switch (report) {
+            case 1: return countries(country.getAllCountriesByPopulation(), file);
+            case 2: return countries(country.getCountriesByContinent(continent), file);
+            case 3: return countries(country.getCountriesByRegion(region), file);
+            case 4: return countries(country.getTopCountriesInWorld(n), file);
+            case 5: return countries(country.getTopCountriesInContinent(continent, n), file);
+            case 6: return countries(country.getTopCountriesInRegion(region, n), file);
+            case 7: return cities(city.getCities(), file);
+            case 8: return cities(city.getCitiesContinent(continent), file);
+            case 9: return cities(city.getCitiesRegion(region), file);
+            case 10: return cities(city.getCitiesCountry(countryName), file);
+            case 11: return cities(city.getCitiesDistrict(district), file);
+            case 12: return cities(city.getCitiesPopulation(n), file);
+            case 13: return cities(city.getTopCitiesContinent(continent, n), file);
+            case 14: return cities(city.getTopCitiesRegion(region, n), file);
+            case 15: return cities(city.getTopCitiesCountry(countryName, n), file);
+            case 16: return cities(city.getTopCitiesDistrict(district, n), file);
+            case 17: return capitals(capital.getCapitals(), file);
+            case 18: return capitals(capital.getCapitalsContinent(continent), file);
+            case 19: return capitals(capital.getCapitalsRegion(region), file);
+            case 20: return capitals(capital.getCapitalsPopulation(n), file);
+            case 21: return capitals(capital.topCapitalsContinent(continent, n), file);
+            case 22: return capitals(capital.topCapitalsRegion(region, n), file);
+            case 23: return populations(population.continentPopulation(), file);
+            case 24: return populations(population.regionPopulation(), file);
+            case 25: return populations(population.countryPopulation(), file);
+            case 26: return singlePopulation(population.populationWorld(), file);
+            case 27: return singlePopulation(population.populationContinent(continent), file);
+            case 28: return singlePopulation(population.populationRegion(region), file);
+            case 29: return singlePopulation(population.populationCountry(countryName), file);
+            case 30: return singlePopulation(population.populationDistrict(district), file);
+            case 31: return singlePopulation(population.populationCity(cityName), file);
+            case 32: {
+                ArrayList<Language> rows = language.getLanguages();
+                language.outputLanguage(rows, file);
+                return rows.size();
+            }
+            default:
+                throw new IllegalArgumentException("No report " + report);
+        }
+    }
+
+    private long countries(ArrayList<Country> rows, String file) {
+        country.outputCountries(rows, file);
+        return rows.size();
+    }
+
+    private long cities(ArrayList<City> rows, String file) {
+        city.outputCities(rows, file);
+        return rows.size();
+    }
+
+    private long capitals(ArrayList<Capital> rows, String file) {
+        capital.outputCapitals(rows, file);
+        return rows.size();
+    }
+
+    private long populations(ArrayList<Population> rows, String file) {
+        population.outputPopulation(rows, file);
+        return rows.size();
+    }
+
+    private long singlePopulation(ArrayList<Population> rows, String file) {
+        population.outputSinglePopulation(rows, file);
+        return rows.size();
+    }
+
+    /**
+     * Parse a report list such as "1-6,23,32"; null or "all" means every report.
+     */
+    public static List<Integer> parse(String spec) {
+        TreeSet<Integer> reports = new TreeSet<>();
+        if (spec == null || spec.isBlank() || spec.trim().equalsIgnoreCase("all")) {
+            for (int i = 1; i <= REPORTS; i++) {
+                reports.add(i);
+            }
+            return new ArrayList<>(reports);
+        }
+        for (String part : spec.split(",")) {
+            String[] range = part.trim().split("-");
+            int from = Integer.parseInt(range[0].trim());
+            int to = range.length > 1 ? Integer.parseInt(range[1].trim()) : from;
+            if (from < 1 || to > REPORTS || from > to) {
+                throw new IllegalArgumentException("Reports are numbered 1 to " + REPORTS + ": " + part.trim());
+            }
+            for (int i = from; i <= to; i++) {
+                reports.add(i);
+            }
+        }
+        return new ArrayList<>(reports);
+    }
+
+    /**
+     * Print one line per report, slowest first, and the wall-clock time of the whole batch.
+     */
+    public static void printSummary(List<Result> results, long wallMillis) {
+        ArrayList<Result> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Long.compare(b.millis, a.millis));
+        long sum = 0;
+        System.out.println("+--------+----------+----------+");
+        System.out.println("| Report |     Rows |       ms |");
+        System.out.println("+--------+----------+----------+");
+        for (Result r : sorted) {
+            sum += r.millis;
+            System.out.printf("| %6d | %8d | %8d |%s%n", r.report, r.rows, r.millis,
+                    r.error == null ? "" : " failed: " + r.error);
+        }
+        System.out.println("+--------+----------+----------+");
+        System.out.println(results.size() + " reports in " + wallMillis + "ms (" + sum + "ms if run one after another)");
+    }
+}
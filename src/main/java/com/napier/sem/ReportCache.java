@@ -0,0 +1,62 @@
+package com.napier.sem;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Result cache in front of the report queries.
+ *
+ * Results are keyed on the report id (e.g. "Country.getCountriesByContinent") and its parameters.
+ * The report classes use {@link #NONE} unless a cache is set, so every call goes to the database.
+ */
+public interface ReportCache {
+
+    /**
+     * Cache that keeps nothing and always runs the query.
+     */
+    ReportCache NONE = new ReportCache() {
+        @Override
+        public <T> ArrayList<T> get(String report, Object[] params, Supplier<ArrayList<T>> load) {
+            return load.get();
+        }
+
+        @Override
+        public void invalidate(String report) {
+            //
+        }
+
+        @Override
+        public void invalidateAll() {
+            //
+        }
+    };
+
+    /**
+     * Rows of a report for the given parameters, running {@code load} when they are not cached.
+     */
+    <T> ArrayList<T> get(String report, Object[] params, Supplier<ArrayList<T>> load);
+
+    /**
+     * Drop every cached result of one report.
+     */
+    void invalidate(String report);
+
+    /**
+     * Drop every cached result, e.g. after the world data has changed.
+     */
+    void invalidateAll();
+
+    /**
+     * Cache key for a report and its parameters. Strings are lower-cased because MySQL
+     * compares them case-insensitively, so "asia" and "Asia" return the same rows.
+     */
+    static String key(String report, Object... params) {
+        StringBuilder sb = new StringBuilder(report);
+        for (Object p : params) {
+            sb.append('|');
+            sb.append(p instanceof String ? ((String) p).toLowerCase(Locale.ROOT) : String.valueOf(p));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package com.napier.sem;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the three phases of a report: the query, rendering it to the
+ * console, and writing it to a Markdown file or HTTP response. A recording started with e.g.
+ * {@code -XX:StartFlightRecording} shows where a slow report spent its time.
+ *
+ * Events are only filled in and committed when a recording has them enabled and they pass its
+ * threshold, so with no recording running each phase costs little more than two timestamps.
+ */
+public final class ReportEvents {
+
+    /**
+     * Fields shared by every phase.
+     */
+    @Category({"World Population", "Reports"})
+    @StackTrace(false)
+    public abstract static class Phase extends Event {
+        @Label("Report")
+        @Description("Report id, e.g. Country.getCountriesByContinent")
+        public String report;
+
+        @Label("Parameters")
+        public String params;
+
+        @Label("Rows")
+        public long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("com.napier.sem.ReportQuery")
+    @Label("Report Query")
+    @Description("Running a report's query, through the result cache")
+    public static final class Query extends Phase {
+    }
+
+    @Name("com.napier.sem.ReportRender")
+    @Label("Report Render")
+    @Description("Printing a report as a table on the console")
+    public static final class Render extends Phase {
+    }
+
+    @Name("com.napier.sem.ReportWrite")
+    @Label("Report Write")
+    @Description("Writing a report to a Markdown file or HTTP response")
+    public static final class Write extends Phase {
+    }
+
+    private ReportEvents() {
+        //
+    }
+
+    /**
+     * End a query event and commit it if the recording wants it.
+     */
+    static void commit(Phase event, String report, Object[] params, long rows, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.report = report;
+            event.params = params(params);
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * End a render or write event for the last report run on this thread and commit it if the
+     * recording wants it.
+     */
+    static void commit(Phase event, long rows, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.report = ReportMetrics.lastReport();
+            event.params = params(ReportMetrics.lastParams());
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private static String params(Object[] params) {
+        if (params == null || params.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Object p : params) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(p);
+        }
+        return sb.toString();
+    }
+}
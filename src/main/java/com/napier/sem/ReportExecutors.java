@@ -0,0 +1,82 @@
+package com.napier.sem;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for running report requests concurrently.
+ *
+ * Reports spend nearly all their time blocked on JDBC and file I/O, so on Java 21 and later each
+ * request can run on its own virtual thread; how many run against the database at once is then
+ * bounded by the connection pool, not by a thread pool. The project still compiles for Java 17,
+ * so virtual threads are looked up at run time and older runtimes fall back to platform threads.
+ *
+ * MySQL Connector/J 8.0.x still runs statement execution inside synchronized(connectionMutex), so
+ * a virtual thread waiting on MySQL pins its carrier until the driver is upgraded; the pool, the
+ * caches and SingleFlight themselves never block while holding a monitor.
+ */
+public final class ReportExecutors {
+    private static final Method VIRTUAL = lookupVirtual();
+
+    private ReportExecutors() {
+        //
+    }
+
+    private static Method lookupVirtual() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether this runtime has virtual threads (Java 21+).
+     */
+    public static boolean virtualThreadsAvailable() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * An executor that starts a new virtual thread per task, or null if the runtime has none.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (VIRTUAL == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VIRTUAL.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A fixed pool of daemon platform threads called {@code name}.
+     */
+    public static ExecutorService newPlatformExecutor(String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Virtual threads if {@code virtual} is set and the runtime has them, otherwise a fixed pool
+     * of {@code threads} platform threads.
+     */
+    public static ExecutorService forReports(String name, boolean virtual, int threads) {
+        ExecutorService executor = virtual ? newVirtualThreadPerTaskExecutor() : null;
+        if (executor == null) {
+            if (virtual) {
+                System.out.println("Virtual threads need Java 21 or later, using " + threads + " platform threads");
+            }
+            executor = newPlatformExecutor(name, threads);
+        }
+        return executor;
+    }
+}
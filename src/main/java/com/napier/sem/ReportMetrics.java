@@ -0,0 +1,221 @@
+package com.napier.sem;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Latency, rows returned, bytes rendered and failures for every report id, e.g.
+ * "Country.getCountriesByContinent", recorded by the query helpers of the report classes.
+ *
+ * Rendered bytes are added to the last report run on the same thread, as every caller renders a
+ * report straight after running it. The figures can be scraped from the HTTP server at
+ * /metrics/reports in Prometheus text format, or printed every -Dmetrics.dumpSeconds seconds.
+ */
+public final class ReportMetrics {
+    private static final ConcurrentHashMap<String, Stats> REPORTS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> LAST_REPORT = new ThreadLocal<>();
+    private static final ThreadLocal<Object[]> LAST_PARAMS = new ThreadLocal<>();
+    private static final ThreadLocal<String> FAILED_REPORT = new ThreadLocal<>();
+    private static final ThreadLocal<long[]> THREAD_FAILURES = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Everything recorded for one report.
+     */
+    public static final class Stats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+    }
+
+    private ReportMetrics() {
+        //
+    }
+
+    /**
+     * Run a report and record how long it took and how many rows it returned, also as a
+     * {@link ReportEvents.Query} flight recorder event.
+     */
+    public static <T> ArrayList<T> time(String report, Object[] params, Supplier<ArrayList<T>> query) {
+        ReportEvents.Query event = new ReportEvents.Query();
+        event.begin();
+        long start = System.nanoTime();
+        ArrayList<T> rows = query.get();
+        recordQuery(report, params, System.nanoTime() - start, rows.size());
+        ReportEvents.commit(event, report, params, rows.size(), 0);
+        return rows;
+    }
+
+    public static void recordQuery(String report, Object[] params, long nanos, long rows) {
+        Stats stats = stats(report);
+        stats.latency.record(nanos);
+        stats.rows.add(rows);
+        LAST_REPORT.set(report);
+        LAST_PARAMS.set(params);
+    }
+
+    // The query threw and the report came back empty; ignored for queries run without a report id
+    public static void recordFailure(String report) {
+        if (report != null) {
+            stats(report).failures.increment();
+            FAILED_REPORT.set(report);
+            THREAD_FAILURES.get()[0]++;
+        }
+    }
+
+    /**
+     * Forget the last report run on this thread, so output rendered before the next report
+     * records is not added to the one before.
+     */
+    public static void beginReport() {
+        LAST_REPORT.remove();
+        LAST_PARAMS.remove();
+        FAILED_REPORT.remove();
+    }
+
+    // The last report run on this thread and its parameters, or null
+    static String lastReport() {
+        return LAST_REPORT.get();
+    }
+
+    static Object[] lastParams() {
+        return LAST_PARAMS.get();
+    }
+
+    // A report whose query failed on this thread since beginReport, or null
+    static String failedReport() {
+        return FAILED_REPORT.get();
+    }
+
+    // Failures recorded on this thread so far; unlike failedReport, not reset by beginReport
+    static long threadFailures() {
+        return THREAD_FAILURES.get()[0];
+    }
+
+    /**
+     * Bytes of console, file or HTTP output rendered for the last report run on this thread.
+     */
+    public static void recordBytes(long bytes) {
+        String report = LAST_REPORT.get();
+        if (report != null) {
+            stats(report).bytes.add(bytes);
+        }
+    }
+
+    /**
+     * What has been recorded for a report, or null if it has not run.
+     */
+    public static Stats get(String report) {
+        return REPORTS.get(report);
+    }
+
+    /**
+     * Every report that has run, by id.
+     */
+    public static Map<String, Stats> all() {
+        return new TreeMap<>(REPORTS);
+    }
+
+    /**
+     * All reports in the Prometheus text format, for a scrape endpoint.
+     */
+    public static String prometheus() {
+        Map<String, Stats> all = all();
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE report_latency_seconds summary\n");
+        for (Map.Entry<String, Stats> e : all.entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            for (double q : new double[]{50, 90, 99, 99.9}) {
+                sb.append(String.format(Locale.ROOT, "report_latency_seconds{report=\"%s\",quantile=\"%s\"} %.6f%n",
+                        e.getKey(), q / 100, h.percentileNanos(q) / 1e9));
+            }
+            sb.append(String.format(Locale.ROOT, "report_latency_seconds_sum{report=\"%s\"} %.6f%n",
+                    e.getKey(), h.getMeanNanos() * h.getCount() / 1e9));
+            sb.append(String.format(Locale.ROOT, "report_latency_seconds_count{report=\"%s\"} %d%n",
+                    e.getKey(), h.getCount()));
+        }
+        counter(sb, all, "report_rows_total", Stats::getRows);
+        counter(sb, all, "report_bytes_total", Stats::getBytes);
+        counter(sb, all, "report_failures_total", Stats::getFailures);
+        return sb.toString();
+    }
+
+    private static void counter(StringBuilder sb, Map<String, Stats> all, String name,
+                                ToLongFunction<Stats> value) {
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, Stats> e : all.entrySet()) {
+            sb.append(name).append("{report=\"").append(e.getKey()).append("\"} ")
+                    .append(value.applyAsLong(e.getValue())).append('\n');
+        }
+    }
+
+    /**
+     * Print one line per report, busiest first.
+     */
+    public static void printSummary() {
+        ArrayList<Map.Entry<String, Stats>> rows = new ArrayList<>(all().entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue().getCalls(), a.getValue().getCalls()));
+        System.out.println("+----------------------------------------+--------+----------+----------+------------+------------+--------+");
+        System.out.println("| Report                                 |  Calls |  p50 ms  |  p99 ms  |       Rows |      Bytes | Failed |");
+        System.out.println("+----------------------------------------+--------+----------+----------+------------+------------+--------+");
+        for (Map.Entry<String, Stats> e : rows) {
+            Stats s = e.getValue();
+            System.out.printf(Locale.ROOT, "| %-38s | %6d | %8.2f | %8.2f | %10d | %10d | %6d |%n", e.getKey(), s.getCalls(),
+                    s.latency.percentileNanos(50) / 1e6, s.latency.percentileNanos(99) / 1e6,
+                    s.getRows(), s.getBytes(), s.getFailures());
+        }
+        System.out.println("+----------------------------------------+--------+----------+----------+------------+------------+--------+");
+    }
+
+    /**
+     * Print the summary every {@code seconds} seconds on a daemon thread until the returned
+     * executor is shut down.
+     */
+    public static ScheduledExecutorService startDump(long seconds) {
+        ScheduledExecutorService dump = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dump.scheduleAtFixedRate(ReportMetrics::printSummary, seconds, seconds, TimeUnit.SECONDS);
+        return dump;
+    }
+
+    static void clear() {
+        REPORTS.clear();
+        beginReport();
+    }
+
+    private static Stats stats(String report) {
+        return REPORTS.computeIfAbsent(report, r -> new Stats());
+    }
+}
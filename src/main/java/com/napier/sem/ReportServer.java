@@ -0,0 +1,483 @@
+package com.napier.sem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP front end that serves every menu report as a GET endpoint, as JSON (the default) or
+ * Markdown ({@code ?format=markdown} or {@code Accept: text/markdown}).
+ *
+ * <pre>
+ * /countries[?continent=|region=][&amp;top=N]                    reports 1-6
+ * /cities[?continent=|region=|country=|district=][&amp;top=N]     reports 7-16
+ * /capitals[?continent=|region=][&amp;top=N]                     reports 17-22
+ * /population/breakdown?by=continent|region|country            reports 23-25
+ * /population[?continent=|region=|country=|district=|city=]    reports 26-31
+ * /languages                                                   report 32
+ * /metrics                                                     p50/p99 latency per endpoint
+ * /metrics/reports                                             {@link ReportMetrics} in Prometheus text format
+ * </pre>
+ *
+ * Requests run on a fixed pool of worker threads with a bounded queue; when both are full the
+ * request is answered 503 straight away. Connections are kept alive between requests and bodies
+ * over 1 KB are gzipped for clients that accept it. A report whose query fails is answered 500,
+ * not with an empty result.
+ */
+public class ReportServer {
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final String WORKER = "report-http-";
+
+    private final Country country;
+    private final City city;
+    private final Capital capital;
+    private final Population population;
+    private final Language language;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentHashMap<String, LatencyHistogram> latency = new ConcurrentHashMap<>();
+
+    /**
+     * A report as columns and rows, ready to encode.
+     */
+    private interface Route {
+        Table run(Map<String, String> query);
+    }
+
+    private static final class Table {
+        final String[] columns;
+        final List<Object[]> rows = new ArrayList<>();
+
+        Table(String... columns) {
+            this.columns = columns;
+        }
+    }
+
+    public ReportServer(ConnectionProvider provider, int port, int threads, int queue) throws IOException {
+        this(new Country(provider), new City(provider), new Capital(provider), new Population(provider),
+                new Language(provider), port, threads, queue);
+
+        // As in the menu: identical concurrent requests share one query, and with
+        // -Dreport.cache.maxEntries set, repeated requests come from the cache and top N
+        // requests are cut from one full ordering
+        ReportCache results = LruReportCache.fromSystemProperties();
+        ReportCache cache = new SingleFlight(results);
+        country.setCache(cache);
+        city.setCache(cache);
+        capital.setCache(cache);
+        population.setCache(cache);
+        language.setCache(cache);
+        if (results != ReportCache.NONE) {
+            TopN topN = new TopN(cache);
+            country.setTopN(topN);
+            city.setTopN(topN);
+            capital.setTopN(topN);
+        }
+    }
+
+    public ReportServer(WorldSnapshot snapshot, int port, int threads, int queue) throws IOException {
+        this(new Country(snapshot), new City(snapshot), new Capital(snapshot), new Population(snapshot),
+                new Language(snapshot), port, threads, queue);
+    }
+
+    private ReportServer(Country country, City city, Capital capital, Population population, Language language,
+                         int port, int threads, int queue) throws IOException {
+        this.country = country;
+        this.city = city;
+        this.capital = capital;
+        this.population = population;
+        this.language = language;
+
+        AtomicInteger count = new AtomicInteger();
+        // A full queue runs the request on the accepting thread, which answers 503 at once
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), r -> {
+                    Thread t = new Thread(r, WORKER + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(workers);
+        route("/countries", this::countries);
+        route("/cities", this::cities);
+        route("/capitals", this::capitals);
+        route("/population/breakdown", this::breakdown);
+        route("/population", this::population);
+        route("/languages", q -> languages(language.getLanguages()));
+        server.createContext("/metrics", exchange -> {
+            if (exactPath(exchange, "/metrics")) {
+                metrics(exchange);
+            }
+        });
+        server.createContext("/metrics/reports", exchange -> {
+            if (exactPath(exchange, "/metrics/reports")) {
+                send(exchange, 200, "text/plain; version=0.0.4", ReportMetrics.prometheus().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, give running ones up to a second to finish, and stop the workers.
+     */
+    public void stop() {
+        server.stop(1);
+        workers.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Latency of every request to an endpoint so far, or null if it has had none.
+     */
+    public LatencyHistogram getLatency(String endpoint) {
+        return latency.get(endpoint);
+    }
+
+    private void route(String path, Route route) {
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            try {
+                if (!Thread.currentThread().getName().startsWith(WORKER)) {
+                    send(exchange, 503, "text/plain", "Too many requests, try again later\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    send(exchange, 405, "text/plain", "Only GET is supported\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                if (!exactPath(exchange, path)) {
+                    return;
+                }
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                ReportMetrics.beginReport();
+                Table table;
+                try {
+                    table = route.run(query);
+                } catch (IllegalArgumentException e) {
+                    send(exchange, 400, "text/plain", (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                // The report classes answer a failed query with no rows, which is not an empty result
+                String failed = ReportMetrics.failedReport();
+                if (failed != null) {
+                    send(exchange, 500, "text/plain", ("Report " + failed + " failed\n").getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                ReportEvents.Write event = new ReportEvents.Write();
+                event.begin();
+                boolean markdown = wantsMarkdown(exchange, query);
+                byte[] body = markdown ? markdown(table) : json(table);
+                ReportMetrics.recordBytes(body.length);
+                send(exchange, 200, markdown ? "text/markdown" : "application/json", body);
+                ReportEvents.commit(event, table.rows.size(), body.length);
+            } catch (RuntimeException e) {
+                System.out.println("Request failed: " + e);
+                send(exchange, 500, "text/plain", "Report failed\n".getBytes(StandardCharsets.UTF_8));
+            } finally {
+                latency.computeIfAbsent(path, p -> new LatencyHistogram()).record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    // Sub-paths fall through to their parent context, e.g. /countries/x, and are answered 404
+    private static boolean exactPath(HttpExchange exchange, String path) throws IOException {
+        if (exchange.getRequestURI().getPath().equals(path)) {
+            return true;
+        }
+        send(exchange, 404, "text/plain", "Not found\n".getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    private Table countries(Map<String, String> q) {
+        String continent = q.get("continent");
+        String region = q.get("region");
+        Integer top = top(q);
+        only(q, "continent", "region");
+        ArrayList<Country> rows;
+        if (continent != null) {
+            rows = top == null ? country.getCountriesByContinent(continent) : country.getTopCountriesInContinent(continent, top);
+        } else if (region != null) {
+            rows = top == null ? country.getCountriesByRegion(region) : country.getTopCountriesInRegion(region, top);
+        } else {
+            rows = top == null ? country.getAllCountriesByPopulation() : country.getTopCountriesInWorld(top);
+        }
+        Table table = new Table("code", "name", "continent", "region", "population", "capital");
+        for (Country c : rows) {
+            table.rows.add(new Object[]{c.code, c.name, c.continent, c.region, c.population, c.capital});
+        }
+        return table;
+    }
+
+    private Table cities(Map<String, String> q) {
+        Integer top = top(q);
+        only(q, "continent", "region", "country", "district");
+        ArrayList<City> rows;
+        if (q.containsKey("continent")) {
+            rows = top == null ? city.getCitiesContinent(q.get("continent")) : city.getTopCitiesContinent(q.get("continent"), top);
+        } else if (q.containsKey("region")) {
+            rows = top == null ? city.getCitiesRegion(q.get("region")) : city.getTopCitiesRegion(q.get("region"), top);
+        } else if (q.containsKey("country")) {
+            rows = top == null ? city.getCitiesCountry(q.get("country")) : city.getTopCitiesCountry(q.get("country"), top);
+        } else if (q.containsKey("district")) {
+            rows = top == null ? city.getCitiesDistrict(q.get("district")) : city.getTopCitiesDistrict(q.get("district"), top);
+        } else {
+            rows = top == null ? city.getCities() : city.getCitiesPopulation(top);
+        }
+        Table table = new Table("name", "country", "district", "population");
+        for (City c : rows) {
+            table.rows.add(new Object[]{c.name, c.country, c.district, c.population});
+        }
+        return table;
+    }
+
+    private Table capitals(Map<String, String> q) {
+        Integer top = top(q);
+        only(q, "continent", "region");
+        ArrayList<Capital> rows;
+        if (q.containsKey("continent")) {
+            rows = top == null ? capital.getCapitalsContinent(q.get("continent")) : capital.topCapitalsContinent(q.get("continent"), top);
+        } else if (q.containsKey("region")) {
+            rows = top == null ? capital.getCapitalsRegion(q.get("region")) : capital.topCapitalsRegion(q.get("region"), top);
+        } else {
+            rows = top == null ? capital.getCapitals() : capital.getCapitalsPopulation(top);
+        }
+        Table table = new Table("name", "country", "population");
+        for (Capital c : rows) {
+            table.rows.add(new Object[]{c.name, c.country, c.population});
+        }
+        return table;
+    }
+
+    private Table breakdown(Map<String, String> q) {
+        String by = q.getOrDefault("by", "");
+        ArrayList<Population> rows;
+        switch (by.toLowerCase(Locale.ROOT)) {
+            case "continent": rows = population.continentPopulation(); break;
+            case "region": rows = population.regionPopulation(); break;
+            case "country": rows = population.countryPopulation(); break;
+            default: throw new IllegalArgumentException("by must be continent, region or country");
+        }
+        Table table = new Table("name", "population", "cityPopulation", "cityPercentage",
+                "noCityPopulation", "noCityPercentage");
+        for (Population p : rows) {
+            table.rows.add(new Object[]{p.getName(), p.getTotalPopulation(), p.getCityPopulation(), p.getCityPercentage(),
+                    p.getNoCityPopulation(), p.getNoCityPercentage()});
+        }
+        return table;
+    }
+
+    private Table population(Map<String, String> q) {
+        only(q, "continent", "region", "country", "district", "city");
+        ArrayList<Population> rows;
+        if (q.containsKey("continent")) {
+            rows = population.populationContinent(q.get("continent"));
+        } else if (q.containsKey("region")) {
+            rows = population.populationRegion(q.get("region"));
+        } else if (q.containsKey("country")) {
+            rows = population.populationCountry(q.get("country"));
+        } else if (q.containsKey("district")) {
+            rows = population.populationDistrict(q.get("district"));
+        } else if (q.containsKey("city")) {
+            rows = population.populationCity(q.get("city"));
+        } else {
+            rows = population.populationWorld();
+        }
+        Table table = new Table("name", "population");
+        for (Population p : rows) {
+            table.rows.add(new Object[]{p.getName(), p.getTotalPopulation()});
+        }
+        return table;
+    }
+
+    private static Table languages(ArrayList<Language> rows) {
+        Table table = new Table("language", "population", "percentage");
+        for (Language l : rows) {
+            table.rows.add(new Object[]{l.getLanguage(), l.getPopulation(), l.getPercentage()});
+        }
+        return table;
+    }
+
+    // At most one of the filters may be given
+    private static void only(Map<String, String> q, String... filters) {
+        String seen = null;
+        for (String filter : filters) {
+            if (q.containsKey(filter)) {
+                if (seen != null) {
+                    throw new IllegalArgumentException("Use only one of " + seen + " and " + filter);
+                }
+                seen = filter;
+            }
+        }
+    }
+
+    private static Integer top(Map<String, String> q) {
+        String top = q.get("top");
+        if (top == null) {
+            return null;
+        }
+        try {
+            int n = Integer.parseInt(top);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("top must be a positive whole number");
+    }
+
+    static Map<String, String> parseQuery(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key.toLowerCase(Locale.ROOT), value);
+        }
+        return query;
+    }
+
+    private static boolean wantsMarkdown(HttpExchange exchange, Map<String, String> query) {
+        String format = query.get("format");
+        if (format != null) {
+            return format.equalsIgnoreCase("markdown") || format.equalsIgnoreCase("md");
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.contains("text/markdown");
+    }
+
+    static byte[] json(Table table) {
+        StringBuilder sb = new StringBuilder(64 + table.rows.size() * 64);
+        sb.append('[');
+        for (int r = 0; r < table.rows.size(); r++) {
+            Object[] row = table.rows.get(r);
+            sb.append(r == 0 ? "\n{" : ",\n{");
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(table.columns[i]).append("\":");
+                jsonValue(sb, row[i]);
+            }
+            sb.append('}');
+        }
+        sb.append(table.rows.isEmpty() ? "]\n" : "\n]\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void jsonValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            sb.append(Double.isFinite(d) ? Double.toString(d) : "null");
+        } else if (value instanceof Number) {
+            sb.append(value);
+        } else {
+            String s = value.toString();
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+    }
+
+    private static byte[] markdown(Table table) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MarkdownWriter out = new MarkdownWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8), table.columns)) {
+            for (Object[] row : table.rows) {
+                for (Object cell : row) {
+                    out.cell(String.valueOf(cell));
+                }
+                out.endRow();
+            }
+        } catch (IOException e) {
+            // Cannot happen writing to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        Map<String, LatencyHistogram> sorted = new TreeMap<>(latency);
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, LatencyHistogram> e : sorted.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(sb.length() == 1 ? "\n" : ",\n");
+            sb.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}",
+                    e.getKey(), h.getCount(), h.percentileNanos(50) / 1e6, h.percentileNanos(99) / 1e6,
+                    h.getMaxNanos() / 1e6));
+        }
+        sb.append(sorted.isEmpty() ? "}\n" : "\n}\n");
+        send(exchange, 200, "application/json", sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A known length lets the connection be reused for the next request
+    private static void send(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (body.length >= GZIP_MIN_BYTES && encoding != null && encoding.contains("gzip")) {
+            body = gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+}
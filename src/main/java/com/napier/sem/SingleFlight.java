@@ -0,0 +1,121 @@
+package com.napier.sem;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing in front of another report cache.
+ *
+ * When several threads ask for the same report with the same parameters at once, only the first
+ * runs it; the others wait for that execution and receive a copy of its rows. If the query
+ * fails, the report classes record the failure and return no rows; the failure is then recorded
+ * on every waiting thread too, so each request sees the same outcome.
+ */
+public class SingleFlight implements ReportCache {
+    private final ReportCache next;
+    private final ConcurrentHashMap<String, CompletableFuture<ArrayList<?>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    public SingleFlight() {
+        this(ReportCache.NONE);
+    }
+
+    /**
+     * @param next Cache the single execution goes through, e.g. an {@link LruReportCache}.
+     */
+    public SingleFlight(ReportCache next) {
+        this.next = next;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ArrayList<T> get(String report, Object[] params, Supplier<ArrayList<T>> load) {
+        String key = ReportCache.key(report, params);
+        CompletableFuture<ArrayList<?>> mine = new CompletableFuture<>();
+        CompletableFuture<ArrayList<?>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            collapsed.incrementAndGet();
+            try {
+                return new ArrayList<>((ArrayList<T>) await(running));
+            } catch (SharedFailure e) {
+                ReportMetrics.recordFailure(report);
+                return new ArrayList<>();
+            }
+        }
+
+        executions.incrementAndGet();
+        long failures = ReportMetrics.threadFailures();
+        try {
+            ArrayList<T> rows = next.get(report, params, load);
+            if (ReportMetrics.threadFailures() != failures) {
+                mine.completeExceptionally(new SharedFailure());
+            } else {
+                mine.complete(rows);
+            }
+            return rows;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // The shared query failed and its empty rows are not a result
+    private static final class SharedFailure extends RuntimeException {
+        SharedFailure() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static ArrayList<?> await(CompletableFuture<ArrayList<?>> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shared report", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void invalidate(String report) {
+        next.invalidate(report);
+    }
+
+    @Override
+    public void invalidateAll() {
+        next.invalidateAll();
+    }
+
+    /**
+     * Reports run on behalf of one or more callers.
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * Calls that shared another caller's execution instead of running their own.
+     */
+    public long getCollapsedCount() {
+        return collapsed.get();
+    }
+
+    /**
+     * Reports running right now.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
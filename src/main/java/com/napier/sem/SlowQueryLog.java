@@ -0,0 +1,172 @@
+package com.napier.sem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log of report queries slower than -Dreport.slowQueryMillis, one JSON object per line with
+ * the report id, SQL, bound parameters, row count, time and the EXPLAIN output, which is run on
+ * the connection the query used so it sees the same plan.
+ *
+ * The log is written to -Dreport.slowQueryLog (slow-queries.log) and rotated when it passes
+ * -Dreport.slowQueryLogBytes (10 MB), keeping -Dreport.slowQueryLogFiles old files as .1, .2 and so on.
+ * With no threshold set nothing is logged.
+ */
+public class SlowQueryLog {
+    private static volatile SlowQueryLog instance = fromSystemProperties();
+
+    private final long thresholdNanos;
+    private final File file;
+    private final long maxBytes;
+    private final int keepFiles;
+
+    public SlowQueryLog(long thresholdMillis, File file, long maxBytes, int keepFiles) {
+        if (maxBytes < 1 || keepFiles < 0) {
+            throw new IllegalArgumentException("maxBytes must be positive and keepFiles not negative");
+        }
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : thresholdMillis * 1_000_000L;
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.keepFiles = keepFiles;
+    }
+
+    /**
+     * The log set up by -Dreport.slowQueryMillis and friends; off when no threshold is given.
+     */
+    public static SlowQueryLog fromSystemProperties() {
+        return new SlowQueryLog(Long.getLong("report.slowQueryMillis", -1),
+                new File(System.getProperty("report.slowQueryLog", "slow-queries.log")),
+                Long.getLong("report.slowQueryLogBytes", 10L * 1024 * 1024),
+                Integer.getInteger("report.slowQueryLogFiles", 5));
+    }
+
+    /**
+     * The log the report classes write to.
+     */
+    public static SlowQueryLog get() {
+        return instance;
+    }
+
+    public static void set(SlowQueryLog log) {
+        instance = log;
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Log a query that took {@code nanos} if that is over the threshold. Call it before closing
+     * {@code con}; a failure to explain or write is printed and otherwise ignored.
+     */
+    public void check(Connection con, String report, String query, Object[] params, long nanos, long rows) {
+        if (thresholdNanos < 0 || nanos < thresholdNanos) {
+            return;
+        }
+        List<String> plan = explain(con, query, params);
+        StringBuilder sb = new StringBuilder(256 + query.length());
+        sb.append("{\"time\":");
+        ReportServer.jsonValue(sb, Instant.now().toString());
+        sb.append(",\"report\":");
+        ReportServer.jsonValue(sb, report);
+        sb.append(",\"millis\":").append(nanos / 1_000_000L);
+        sb.append(",\"rows\":").append(rows);
+        sb.append(",\"sql\":");
+        ReportServer.jsonValue(sb, query);
+        sb.append(",\"params\":[");
+        for (int i = 0; params != null && i < params.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            ReportServer.jsonValue(sb, params[i]);
+        }
+        sb.append("],\"plan\":[");
+        for (int i = 0; i < plan.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            ReportServer.jsonValue(sb, plan.get(i));
+        }
+        sb.append("]}\n");
+        try {
+            write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Could not write slow query log: " + e.getMessage());
+        }
+    }
+
+    // Each plan row as its columns joined with " | "
+    static List<String> explain(Connection con, String query, Object[] params) {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement("EXPLAIN " + query)) {
+            QueryHelper.bind(stmt, params == null ? new Object[0] : params);
+            try (ResultSet rset = stmt.executeQuery()) {
+                ResultSetMetaData meta = rset.getMetaData();
+                while (rset.next()) {
+                    StringBuilder row = new StringBuilder();
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        if (i > 1) {
+                            row.append(" | ");
+                        }
+                        row.append(meta.getColumnLabel(i)).append('=').append(rset.getString(i));
+                    }
+                    plan.add(row.toString());
+                }
+            }
+        } catch (SQLException e) {
+            plan.add("EXPLAIN failed: " + e.getMessage());
+        }
+        return plan;
+    }
+
+    private synchronized void write(byte[] line) throws IOException {
+        if (file.exists() && file.length() + line.length > maxBytes) {
+            rotate();
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(line);
+        }
+    }
+
+    // slow-queries.log becomes .1, .1 becomes .2 and so on; the oldest is dropped
+    private void rotate() throws IOException {
+        if (keepFiles == 0) {
+            if (!file.delete()) {
+                throw new IOException("Could not delete " + file);
+            }
+            return;
+        }
+        File oldest = rotated(keepFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Could not delete " + oldest);
+        }
+        for (int i = keepFiles - 1; i >= 1; i--) {
+            File from = rotated(i);
+            if (from.exists() && !from.renameTo(rotated(i + 1))) {
+                throw new IOException("Could not rename " + from);
+            }
+        }
+        if (!file.renameTo(rotated(1))) {
+            throw new IOException("Could not rename " + file);
+        }
+    }
+
+    File rotated(int n) {
+        return new File(file.getPath() + "." + n);
+    }
+}
@@ -0,0 +1,69 @@
+package com.napier.sem;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary that maps repeated text values (continents, regions, districts) to small int ids.
+ *
+ * Ids never change once handed out, so one table can be shared by every load of a snapshot and
+ * filters can compare ids instead of strings. Lookups take no lock; only adding a new value does.
+ * Values that differ only in case share an id, as they compare equal under the MySQL collation;
+ * the first spelling seen is the one reported back.
+ */
+public class SymbolTable {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private volatile int size;
+
+    /**
+     * Id for the value, adding it if it has not been seen before.
+     */
+    public int intern(String value) {
+        String key = value.toLowerCase(Locale.ROOT);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(key);
+            if (id == null) {
+                id = size;
+                if (id == names.length) {
+                    names = Arrays.copyOf(names, id * 2);
+                }
+                // Store the name before publishing the id, so name(id) is always readable
+                names[id] = value;
+                size = id + 1;
+                ids.put(key, id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Id for the value, or -1 if it has never been interned.
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value.toLowerCase(Locale.ROOT));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * The value an id stands for.
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Number of distinct values.
+     */
+    public int size() {
+        return size;
+    }
+}
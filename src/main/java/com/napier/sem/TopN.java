@@ -0,0 +1,107 @@
+package com.napier.sem;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Top-N engine for the "top N populated ..." reports.
+ *
+ * For each ordering (e.g. cities by continent) and key (e.g. "Asia") the full population-descending
+ * list is fetched once, and every later request is answered by copying its first N rows, whatever N is.
+ * The orderings are held as entries of a {@link ReportCache}, under report ids like
+ * "TopN.cities.continent", so they expire and are invalidated along with the reports they are cut from.
+ * Row sets without a prebuilt ordering go through {@link #select}, a bounded heap.
+ */
+public class TopN {
+    private final ReportCache cache;
+    private final Set<String> orderings = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Orderings kept in a cache of their own until evicted or cleared, for a run that ends before the
+     * world data changes, such as a batch.
+     */
+    public TopN() {
+        this(new LruReportCache(256, 0));
+    }
+
+    /**
+     * Orderings kept in {@code cache}, usually the one the report classes use, so they share its
+     * time-to-live and invalidation.
+     */
+    public TopN(ReportCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * First {@code n} rows of an ordering, loading the full ordering with {@code all} the first time.
+     * Empty results are not kept, so a failed query is retried on the next request.
+     *
+     * @param ordering Name of the ordering, e.g. "cities.continent".
+     * @param key      The grouping value, matched case-insensitively; null for the whole world.
+     * @param n        How many rows to return.
+     * @param all      Loads every row of the ordering, largest population first.
+     */
+    public <T> ArrayList<T> top(String ordering, String key, int n, Supplier<ArrayList<T>> all) {
+        String report = "TopN." + ordering;
+        orderings.add(report);
+        // The cache copies the list it hands out, so the ordering is wrapped in a one-element list
+        // and only that is copied; an empty wrapper is not kept, like an empty report
+        ArrayList<ArrayList<T>> held = cache.get(report, new Object[]{key == null ? "" : key}, () -> {
+            ArrayList<T> rows = all.get();
+            ArrayList<ArrayList<T>> wrapper = new ArrayList<>(1);
+            if (!rows.isEmpty()) {
+                wrapper.add(rows);
+            }
+            return wrapper;
+        });
+        if (held.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ArrayList<T> rows = held.get(0);
+        return new ArrayList<>(rows.subList(0, Math.min(Math.max(n, 0), rows.size())));
+    }
+
+    /**
+     * Drop every ordering, e.g. after the underlying data has changed.
+     */
+    public void clear() {
+        for (String report : orderings) {
+            cache.invalidate(report);
+        }
+    }
+
+    /**
+     * The {@code n} rows with the largest population among those passing the filter, largest first.
+     * Runs in O(rows * log n) with a heap of at most n entries; ties keep the order of {@code rows}.
+     */
+    public static int[] select(int[] rows, IntPredicate filter, int[] population, int n) {
+        if (n <= 0) {
+            return new int[0];
+        }
+        // Heap of positions in rows; the root is the weakest candidate kept so far
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(n, Math.max(rows.length, 1)) + 1, (a, b) -> {
+            int byPopulation = Integer.compare(population[rows[a]], population[rows[b]]);
+            return byPopulation != 0 ? byPopulation : Integer.compare(b, a);
+        });
+        for (int i = 0; i < rows.length; i++) {
+            if (!filter.test(rows[i])) {
+                continue;
+            }
+            if (heap.size() < n) {
+                heap.add(i);
+            } else if (population[rows[i]] > population[rows[heap.peek()]]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = rows[heap.poll()];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,444 @@
+package com.napier.sem;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generator for synthetic world data at a multiple of the size of db/world.sql.
+ *
+ * Scale 1 gives about 239 countries and 4,079 cities; scale N gives about N times as many cities.
+ * Country codes are CHAR(3), so the country count stops growing at 17,576 and larger scales add
+ * cities per country instead. Countries follow the real continent/region mix with log-normal
+ * populations, city counts grow with country population, city sizes follow a rank-size (Zipf)
+ * curve and the language mix follows how often each language appears in world.sql.
+ * The same seed and scale always produce the same rows.
+ */
+public class WorldGenerator {
+    public static final int BASE_COUNTRIES = 239;
+    public static final int BASE_CITIES = 4079;
+    static final int MAX_COUNTRIES = 26 * 26 * 26;
+
+    // Region, continent and number of countries in world.sql
+    private static final String[][] REGIONS = {
+            {"Central Africa", "Africa", "9"}, {"Eastern Africa", "Africa", "20"},
+            {"Northern Africa", "Africa", "7"}, {"Southern Africa", "Africa", "5"},
+            {"Western Africa", "Africa", "17"}, {"Antarctica", "Antarctica", "5"},
+            {"Eastern Asia", "Asia", "8"}, {"Middle East", "Asia", "18"},
+            {"Southeast Asia", "Asia", "11"}, {"Southern and Central Asia", "Asia", "14"},
+            {"Baltic Countries", "Europe", "3"}, {"British Islands", "Europe", "2"},
+            {"Eastern Europe", "Europe", "10"}, {"Nordic Countries", "Europe", "7"},
+            {"Southern Europe", "Europe", "15"}, {"Western Europe", "Europe", "9"},
+            {"Caribbean", "North America", "24"}, {"Central America", "North America", "8"},
+            {"North America", "North America", "5"}, {"Australia and New Zealand", "Oceania", "5"},
+            {"Melanesia", "Oceania", "5"}, {"Micronesia", "Oceania", "7"},
+            {"Micronesia/Caribbean", "Oceania", "1"}, {"Polynesia", "Oceania", "10"},
+            {"South America", "South America", "14"}
+    };
+
+    // Language and number of countries that speak it in world.sql
+    private static final String[][] LANGUAGES = {
+            {"English", "60"}, {"Arabic", "33"}, {"Spanish", "28"}, {"French", "25"}, {"German", "19"},
+            {"Chinese", "19"}, {"Russian", "17"}, {"Italian", "15"}, {"Creole English", "14"},
+            {"Portuguese", "12"}, {"Turkish", "12"}, {"Ful", "12"}, {"Ukrainian", "12"}, {"Polish", "10"},
+            {"Serbo-Croatian", "9"}, {"Creole French", "9"}, {"Hindi", "8"}, {"Hungarian", "8"},
+            {"Romani", "8"}, {"Belorussian", "7"}, {"Uzbek", "6"}, {"Malay", "6"}, {"Malinke", "6"},
+            {"Korean", "6"}, {"Tamil", "6"}, {"Kazakh", "6"}, {"Dutch", "5"}, {"Greek", "5"},
+            {"Armenian", "5"}, {"Azerbaijani", "5"}, {"Romanian", "5"}, {"Japanese", "4"}
+    };
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "ma", "ri", "sa", "to", "na", "ve", "bu", "de", "zan", "mor", "tel", "gor", "ba",
+            "li", "an", "sha", "quo", "ten", "wi", "har", "os", "el", "ni", "ra", "ko", "du", "pe", "ya"
+    };
+
+    /**
+     * Receives generated rows: every country first, then cities, then languages.
+     */
+    public interface Sink {
+        void country(String code, String name, String continent, String region, int population, int capitalId) throws IOException;
+
+        void city(int id, String name, String countryCode, String district, int population) throws IOException;
+
+        void language(String countryCode, String language, boolean official, double percentage) throws IOException;
+    }
+
+    private final long seed;
+    private final int scale;
+
+    /**
+     * @param seed  Seed for every random choice.
+     * @param scale Multiple of the world.sql city count, 1 or more.
+     */
+    public WorldGenerator(long seed, int scale) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("Scale must be at least 1: " + scale);
+        }
+        this.seed = seed;
+        this.scale = scale;
+    }
+
+    /**
+     * Number of countries that will be generated.
+     */
+    public int getCountryCount() {
+        return (int) Math.min((long) BASE_COUNTRIES * scale, MAX_COUNTRIES);
+    }
+
+    /**
+     * Generate every row into the sink.
+     */
+    public void generate(Sink sink) throws IOException {
+        Random random = new Random(seed);
+        int countries = getCountryCount();
+        String[] codes = new String[countries];
+        String[] names = new String[countries];
+        int[] regions = new int[countries];
+        int[] populations = new int[countries];
+        int[] cityCounts = new int[countries];
+        int[] capitalRanks = new int[countries];
+
+        // Countries, and how many cities each gets in proportion to population^0.6
+        int regionTotal = 0;
+        for (String[] r : REGIONS) {
+            regionTotal += Integer.parseInt(r[2]);
+        }
+        HashSet<String> used = new HashSet<>();
+        double weightTotal = 0;
+        double[] weights = new double[countries];
+        for (int i = 0; i < countries; i++) {
+            codes[i] = code(i);
+            String name = capitalise(word(random, 2, 4));
+            names[i] = used.add(name) ? name : name + " " + codes[i];
+            regions[i] = pick(random, REGIONS, 2, regionTotal);
+            if ("Antarctica".equals(REGIONS[regions[i]][1])) {
+                populations[i] = 0;
+            } else {
+                // Log-normal around 5.5 million, between 50 and 1.3 billion
+                double p = Math.exp(15.5 + 2.2 * random.nextGaussian());
+                populations[i] = (int) Math.max(50, Math.min(1.3e9, p));
+                weights[i] = Math.pow(populations[i], 0.6);
+                weightTotal += weights[i];
+            }
+        }
+        long cityTarget = (long) BASE_CITIES * scale;
+        int[] firstCityId = new int[countries];
+        int nextId = 1;
+        for (int i = 0; i < countries; i++) {
+            if (weights[i] > 0) {
+                cityCounts[i] = (int) Math.max(1, Math.round(cityTarget * weights[i] / weightTotal));
+                // The capital is usually, but not always, the largest city
+                capitalRanks[i] = random.nextInt(Math.min(3, cityCounts[i]));
+            }
+            firstCityId[i] = nextId;
+            nextId += cityCounts[i];
+        }
+
+        for (int i = 0; i < countries; i++) {
+            String[] region = REGIONS[regions[i]];
+            int capitalId = cityCounts[i] == 0 ? 0 : firstCityId[i] + capitalRanks[i];
+            sink.country(codes[i], names[i], region[1], region[0], populations[i], capitalId);
+        }
+
+        for (int i = 0; i < countries; i++) {
+            generateCities(random, sink, codes[i], populations[i], cityCounts[i], firstCityId[i]);
+        }
+
+        int languageTotal = 0;
+        for (String[] l : LANGUAGES) {
+            languageTotal += Integer.parseInt(l[1]);
+        }
+        for (int i = 0; i < countries; i++) {
+            generateLanguages(random, sink, codes[i], languageTotal);
+        }
+    }
+
+    private void generateCities(Random random, Sink sink, String code, int population, int count, int firstId) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        // Rank-size rule: the r-th city holds a share proportional to 1 / r^s of the urban population
+        double urban = population * (0.15 + 0.7 * random.nextDouble());
+        double s = 1.0 + 0.2 * random.nextDouble();
+        double harmonic = 0;
+        for (int r = 1; r <= count; r++) {
+            harmonic += 1 / Math.pow(r, s);
+        }
+        String[] districts = new String[Math.max(1, (int) Math.round(Math.sqrt(count)))];
+        for (int d = 0; d < districts.length; d++) {
+            districts[d] = capitalise(word(random, 2, 3));
+        }
+        for (int r = 1; r <= count; r++) {
+            int cityPopulation = (int) Math.max(1, Math.round(urban / Math.pow(r, s) / harmonic));
+            String district = districts[r == 1 ? 0 : random.nextInt(districts.length)];
+            sink.city(firstId + r - 1, capitalise(word(random, 2, 4)), code, district, cityPopulation);
+        }
+    }
+
+    private void generateLanguages(Random random, Sink sink, String code, int languageTotal) throws IOException {
+        int count = 1 + random.nextInt(5);
+        HashSet<Integer> chosen = new HashSet<>();
+        double remaining = 100;
+        for (int l = 0; l < count; l++) {
+            int language = pick(random, LANGUAGES, 1, languageTotal);
+            if (!chosen.add(language)) {
+                continue;
+            }
+            // The first language is official and spoken by most people; the rest share what is left
+            double share = l == 0 ? 40 + 59 * random.nextDouble() : remaining * random.nextDouble();
+            double pct = Math.round(Math.min(share, remaining) * 10) / 10.0;
+            remaining -= pct;
+            sink.language(code, LANGUAGES[language][0], l == 0, pct);
+        }
+    }
+
+    private static int pick(Random random, String[][] table, int weightColumn, int total) {
+        int target = random.nextInt(total);
+        for (int i = 0; i < table.length; i++) {
+            target -= Integer.parseInt(table[i][weightColumn]);
+            if (target < 0) {
+                return i;
+            }
+        }
+        return table.length - 1;
+    }
+
+    private static String word(Random random, int min, int max) {
+        StringBuilder sb = new StringBuilder();
+        int syllables = min + random.nextInt(max - min + 1);
+        for (int i = 0; i < syllables; i++) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String capitalise(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    static String code(int i) {
+        return "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+    }
+
+    /**
+     * Build an in-memory snapshot of the generated world.
+     */
+    public WorldSnapshot snapshot() {
+        WorldSnapshot.Loader loader = new WorldSnapshot.Loader();
+        try {
+            generate(new Sink() {
+                @Override
+                public void country(String code, String name, String continent, String region, int population, int capitalId) {
+                    loader.addCountry(code, name, continent, region, population, capitalId);
+                }
+
+                @Override
+                public void city(int id, String name, String countryCode, String district, int population) {
+                    loader.addCity(id, name, countryCode, district, population);
+                }
+
+                @Override
+                public void language(String countryCode, String language, boolean official, double percentage) {
+                    loader.addLanguage(countryCode, language, official, percentage);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return loader.build();
+    }
+
+    /**
+     * Write a MySQL script that recreates the world database with the generated rows,
+     * so it can replace db/world.sql.
+     */
+    public void writeSql(Writer out) throws IOException {
+        out.write("DROP DATABASE IF EXISTS `world`;\n");
+        out.write("CREATE DATABASE `world` DEFAULT CHARACTER SET utf8mb4;\n");
+        out.write("USE `world`;\n");
+        out.write("SET FOREIGN_KEY_CHECKS=0;\n");
+        out.write("SET autocommit=0;\n\n");
+        out.write("CREATE TABLE `country` (\n"
+                + "  `Code` char(3) NOT NULL DEFAULT '',\n"
+                + "  `Name` char(52) NOT NULL DEFAULT '',\n"
+                + "  `Continent` enum('Asia','Europe','North America','Africa','Oceania','Antarctica','South America') NOT NULL DEFAULT 'Asia',\n"
+                + "  `Region` char(26) NOT NULL DEFAULT '',\n"
+                + "  `SurfaceArea` decimal(10,2) NOT NULL DEFAULT '0.00',\n"
+                + "  `IndepYear` smallint DEFAULT NULL,\n"
+                + "  `Population` int NOT NULL DEFAULT '0',\n"
+                + "  `LifeExpectancy` decimal(3,1) DEFAULT NULL,\n"
+                + "  `GNP` decimal(10,2) DEFAULT NULL,\n"
+                + "  `GNPOld` decimal(10,2) DEFAULT NULL,\n"
+                + "  `LocalName` char(45) NOT NULL DEFAULT '',\n"
+                + "  `GovernmentForm` char(45) NOT NULL DEFAULT '',\n"
+                + "  `HeadOfState` char(60) DEFAULT NULL,\n"
+                + "  `Capital` int DEFAULT NULL,\n"
+                + "  `Code2` char(2) NOT NULL DEFAULT '',\n"
+                + "  PRIMARY KEY (`Code`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n\n");
+        out.write("CREATE TABLE `city` (\n"
+                + "  `ID` int NOT NULL AUTO_INCREMENT,\n"
+                + "  `Name` char(35) NOT NULL DEFAULT '',\n"
+                + "  `CountryCode` char(3) NOT NULL DEFAULT '',\n"
+                + "  `District` char(20) NOT NULL DEFAULT '',\n"
+                + "  `Population` int NOT NULL DEFAULT '0',\n"
+                + "  PRIMARY KEY (`ID`),\n"
+                + "  KEY `CountryCode` (`CountryCode`),\n"
+                + "  KEY `Population` (`Population`),\n"
+                + "  CONSTRAINT `city_ibfk_1` FOREIGN KEY (`CountryCode`) REFERENCES `country` (`Code`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n\n");
+        out.write("CREATE TABLE `countrylanguage` (\n"
+                + "  `CountryCode` char(3) NOT NULL DEFAULT '',\n"
+                + "  `Language` char(30) NOT NULL DEFAULT '',\n"
+                + "  `IsOfficial` enum('T','F') NOT NULL DEFAULT 'F',\n"
+                + "  `Percentage` decimal(4,1) NOT NULL DEFAULT '0.0',\n"
+                + "  PRIMARY KEY (`CountryCode`,`Language`),\n"
+                + "  KEY `CountryCode` (`CountryCode`),\n"
+                + "  CONSTRAINT `countryLanguage_ibfk_1` FOREIGN KEY (`CountryCode`) REFERENCES `country` (`Code`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n\n");
+
+        SqlSink sink = new SqlSink(out);
+        generate(sink);
+        sink.finish();
+        out.write("COMMIT;\n");
+        out.write("SET FOREIGN_KEY_CHECKS=1;\n");
+        out.flush();
+    }
+
+    /**
+     * Writes rows as multi-row INSERTs of up to 1000 rows, which load far faster than one statement per row.
+     */
+    private static class SqlSink implements Sink {
+        private final Writer out;
+        private String table;
+        private int rows;
+
+        SqlSink(Writer out) {
+            this.out = out;
+        }
+
+        private void row(String into, String values) throws IOException {
+            if (!into.equals(table) || rows == 1000) {
+                finish();
+                out.write("INSERT INTO " + into + " VALUES\n");
+                table = into;
+            } else {
+                out.write(",\n");
+            }
+            out.write(values);
+            rows++;
+        }
+
+        // End the open INSERT statement
+        void finish() throws IOException {
+            if (table != null && rows > 0) {
+                out.write(";\n");
+            }
+            rows = 0;
+        }
+
+        @Override
+        public void country(String code, String name, String continent, String region, int population, int capitalId) throws IOException {
+            row("`country` (`Code`,`Name`,`Continent`,`Region`,`Population`,`Capital`,`LocalName`,`Code2`)",
+                    "(" + sql(code) + "," + sql(name) + "," + sql(continent) + "," + sql(region) + ","
+                            + population + "," + (capitalId == 0 ? "NULL" : capitalId) + "," + sql(name) + ","
+                            + sql(code.substring(0, 2)) + ")");
+        }
+
+        @Override
+        public void city(int id, String name, String countryCode, String district, int population) throws IOException {
+            row("`city`", "(" + id + "," + sql(name) + "," + sql(countryCode) + "," + sql(district) + "," + population + ")");
+        }
+
+        @Override
+        public void language(String countryCode, String language, boolean official, double percentage) throws IOException {
+            row("`countrylanguage`", "(" + sql(countryCode) + "," + sql(language) + ","
+                    + (official ? "'T'" : "'F'") + "," + String.format(Locale.ROOT, "%.1f", percentage) + ")");
+        }
+    }
+
+    /**
+     * Write country.csv, city.csv and countrylanguage.csv, with a header row each, into a directory.
+     */
+    public void writeCsv(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        try (BufferedWriter countries = new BufferedWriter(new FileWriter(new File(dir, "country.csv")));
+             BufferedWriter cities = new BufferedWriter(new FileWriter(new File(dir, "city.csv")));
+             BufferedWriter languages = new BufferedWriter(new FileWriter(new File(dir, "countrylanguage.csv")))) {
+            countries.write("Code,Name,Continent,Region,Population,Capital\n");
+            cities.write("ID,Name,CountryCode,District,Population\n");
+            languages.write("CountryCode,Language,IsOfficial,Percentage\n");
+            generate(new Sink() {
+                @Override
+                public void country(String code, String name, String continent, String region, int population, int capitalId) throws IOException {
+                    countries.write(code + "," + csv(name) + "," + csv(continent) + "," + csv(region) + ","
+                            + population + "," + (capitalId == 0 ? "" : String.valueOf(capitalId)) + "\n");
+                }
+
+                @Override
+                public void city(int id, String name, String countryCode, String district, int population) throws IOException {
+                    cities.write(id + "," + csv(name) + "," + countryCode + "," + csv(district) + "," + population + "\n");
+                }
+
+                @Override
+                public void language(String countryCode, String language, boolean official, double percentage) throws IOException {
+                    languages.write(countryCode + "," + csv(language) + "," + (official ? "T" : "F") + ","
+                            + String.format(Locale.ROOT, "%.1f", percentage) + "\n");
+                }
+            });
+        }
+    }
+
+    private static String sql(String s) {
+        return "'" + s.replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Command line: WorldGenerator [--scale N] [--seed S] [--format sql|csv] [--out path]
+     * SQL goes to stdout unless --out is given; CSV needs --out as the target directory.
+     */
+    public static void main(String[] args) throws IOException {
+        int scale = 10;
+        long seed = 42;
+        String format = "sql";
+        String out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--scale": scale = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--format": format = args[i + 1]; break;
+                case "--out": out = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        WorldGenerator generator = new WorldGenerator(seed, scale);
+        if ("csv".equals(format)) {
+            if (out == null) {
+                throw new IllegalArgumentException("--format csv needs --out <directory>");
+            }
+            generator.writeCsv(new File(out));
+        } else if (out == null) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+            generator.writeSql(writer);
+        } else {
+            try (Writer writer = new BufferedWriter(new FileWriter(out))) {
+                generator.writeSql(writer);
+            }
+        }
+    }
+}
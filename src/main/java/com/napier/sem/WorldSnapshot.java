@@ -0,0 +1,659 @@
+package com.napier.sem;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory copy of the country, city and countrylanguage tables.
+ *
+ * The three tables are loaded once and every report the Menu offers is answered from memory,
+ * giving the same rows the SQL in Country, City, Capital, Population and Language would return.
+ * Countries and cities are held column-wise in a CountryTable and a CityTable, and report row
+ * objects are only created for the rows a report returns.
+ * Continent, region and district are dictionary-encoded, so those filters compare ints or test a
+ * bitmap of country rows. Text filters compare case-insensitively, like the MySQL collation does.
+ * Call {@link #refresh()} to reload; readers keep using the old data until the new load is complete.
+ */
+public class WorldSnapshot {
+
+    /**
+     * What a report is filtered by.
+     */
+    public enum Scope { WORLD, CONTINENT, REGION, COUNTRY, DISTRICT, CITY }
+
+    /**
+     * Limit meaning "no limit".
+     */
+    public static final int ALL = Integer.MAX_VALUE;
+
+    static class LanguageRow {
+        int countryRow;
+        String language;
+        boolean official;
+        // Percentage of the country's population in tenths of a percent, as stored in decimal(4,1)
+        int percentageTenths;
+    }
+
+    /**
+     * Collects rows and builds a snapshot from them. Used both for the JDBC load and for
+     * data produced in-process. Rows can be added in any order.
+     */
+    public static class Loader {
+        private final SymbolTable symbols;
+        private final CountryTable countries = new CountryTable(256);
+        private final CityTable cities = new CityTable(4096);
+        // Country code of each city row, resolved to a country row in build()
+        private String[] cityCountryCodes = new String[4096];
+        private final ArrayList<String> languageCountryCodes = new ArrayList<>();
+        private final ArrayList<LanguageRow> languages = new ArrayList<>();
+
+        public Loader() {
+            this(new SymbolTable());
+        }
+
+        /**
+         * Encode continents, regions and districts with an existing table, so ids stay the same
+         * across loads.
+         */
+        public Loader(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        public Loader addCountry(String code, String name, String continent, String region, int population, int capital) {
+            countries.add(code, name, symbols.intern(continent), symbols.intern(region), population, capital);
+            return this;
+        }
+
+        public Loader addCity(int id, String name, String countryCode, String district, int population) {
+            int row = cities.add(id, name, -1, symbols.intern(district), population);
+            if (row == cityCountryCodes.length) {
+                cityCountryCodes = Arrays.copyOf(cityCountryCodes, row * 2);
+            }
+            cityCountryCodes[row] = countryCode;
+            return this;
+        }
+
+        public Loader addLanguage(String countryCode, String language, boolean official, double percentage) {
+            LanguageRow l = new LanguageRow();
+            l.language = language;
+            l.official = official;
+            l.percentageTenths = (int) Math.round(percentage * 10);
+            languageCountryCodes.add(countryCode);
+            languages.add(l);
+            return this;
+        }
+
+        public WorldSnapshot build() {
+            return new WorldSnapshot(null, new State(this));
+        }
+    }
+
+    /**
+     * One immutable load of the three tables plus the orderings and aggregates derived from it.
+     */
+    private static class State {
+        final SymbolTable symbols;
+        final CountryTable countries;
+        final CityTable cities;
+        // Row numbers sorted by population, largest first
+        final int[] countryOrder;
+        final int[] cityOrder;
+        final int[] capitalOrder;
+        // Countries that have a capital city, as the country reports join on it
+        final int[] countryWithCapitalOrder;
+        // Posting lists from continent / region / country row / district to rows, largest population first
+        final PostingIndex countriesByContinent;
+        final PostingIndex countriesByRegion;
+        final PostingIndex citiesByContinent;
+        final PostingIndex citiesByRegion;
+        final PostingIndex citiesByCountry;
+        final PostingIndex citiesByDistrict;
+        final PostingIndex capitalsByContinent;
+        final PostingIndex capitalsByRegion;
+        // Country rows by lower-cased name, largest population first
+        final HashMap<String, int[]> countriesByName;
+        // Country rows in each continent / region, indexed by symbol id
+        final BitSet[] continentMembers;
+        final BitSet[] regionMembers;
+        final ArrayList<Population> continentBreakdown;
+        final ArrayList<Population> regionBreakdown;
+        final ArrayList<Population> countryBreakdown;
+        final ArrayList<Language> languages;
+        final long worldPopulation;
+
+        State(Loader loader) {
+            symbols = loader.symbols;
+            countries = loader.countries;
+            HashMap<String, Integer> countryByCode = new HashMap<>();
+            long world = 0;
+            for (int row = 0; row < countries.size; row++) {
+                countryByCode.put(countries.code[row], row);
+                world += countries.population[row];
+            }
+            worldPopulation = world;
+
+            // Inner join: a city without a known country never appears in a report
+            CityTable all = loader.cities;
+            cities = new CityTable(all.size);
+            HashMap<Integer, Integer> cityById = new HashMap<>();
+            for (int row = 0; row < all.size; row++) {
+                Integer country = countryByCode.get(loader.cityCountryCodes[row]);
+                if (country != null) {
+                    int kept = cities.add(all.id[row], all.name[row], country, all.district[row], all.population[row]);
+                    cityById.put(all.id[row], kept);
+                }
+            }
+
+            int capitals = 0;
+            for (int row = 0; row < countries.size; row++) {
+                Integer capital = cityById.get(countries.capitalId[row]);
+                if (capital != null) {
+                    countries.capitalRow[row] = capital;
+                    capitals++;
+                }
+            }
+            int[] capitalRows = new int[capitals];
+            capitals = 0;
+            for (int row = 0; row < countries.size; row++) {
+                if (countries.capitalRow[row] >= 0) {
+                    capitalRows[capitals++] = countries.capitalRow[row];
+                }
+            }
+
+            continentMembers = members(countries.continent, countries.size, symbols.size());
+            regionMembers = members(countries.region, countries.size, symbols.size());
+
+            countryOrder = orderByPopulation(countries.population, allRows(countries.size));
+            cityOrder = orderByPopulation(cities.population, allRows(cities.size));
+            capitalOrder = orderByPopulation(cities.population, capitalRows);
+
+            int[] withCapital = new int[countryOrder.length];
+            int n = 0;
+            for (int row : countryOrder) {
+                if (countries.capitalRow[row] >= 0) {
+                    withCapital[n++] = row;
+                }
+            }
+            countryWithCapitalOrder = Arrays.copyOf(withCapital, n);
+
+            int symbolCount = symbols.size();
+            int[] cityCountry = cities.countryRow;
+            countriesByContinent = new PostingIndex(countryWithCapitalOrder, row -> countries.continent[row], symbolCount);
+            countriesByRegion = new PostingIndex(countryWithCapitalOrder, row -> countries.region[row], symbolCount);
+            citiesByContinent = new PostingIndex(cityOrder, row -> countries.continent[cityCountry[row]], symbolCount);
+            citiesByRegion = new PostingIndex(cityOrder, row -> countries.region[cityCountry[row]], symbolCount);
+            citiesByCountry = new PostingIndex(cityOrder, row -> cityCountry[row], countries.size);
+            citiesByDistrict = new PostingIndex(cityOrder, row -> cities.district[row], symbolCount);
+            capitalsByContinent = new PostingIndex(capitalOrder, row -> countries.continent[cityCountry[row]], symbolCount);
+            capitalsByRegion = new PostingIndex(capitalOrder, row -> countries.region[cityCountry[row]], symbolCount);
+
+            HashMap<String, ArrayList<Integer>> byName = new HashMap<>();
+            for (int row : countryOrder) {
+                byName.computeIfAbsent(countries.name[row].toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(row);
+            }
+            countriesByName = new HashMap<>();
+            for (Map.Entry<String, ArrayList<Integer>> e : byName.entrySet()) {
+                countriesByName.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+
+            continentBreakdown = breakdown(this, Scope.CONTINENT);
+            regionBreakdown = breakdown(this, Scope.REGION);
+            countryBreakdown = breakdown(this, Scope.COUNTRY);
+            for (int i = 0; i < loader.languages.size(); i++) {
+                Integer country = countryByCode.get(loader.languageCountryCodes.get(i));
+                loader.languages.get(i).countryRow = country == null ? -1 : country;
+            }
+            languages = languages(this, loader.languages);
+        }
+    }
+
+    private final ConnectionProvider provider;
+    private final SymbolTable symbols = new SymbolTable();
+    private volatile State state;
+
+    /**
+     * Load the three tables through the given provider.
+     */
+    public WorldSnapshot(ConnectionProvider provider) throws SQLException {
+        this.provider = provider;
+        refresh();
+    }
+
+    private WorldSnapshot(ConnectionProvider provider, State state) {
+        this.provider = provider;
+        this.state = state;
+    }
+
+    /**
+     * Reload the three tables from the database. Reports keep using the previous data until
+     * the load has finished. Snapshots built from a Loader have nothing to reload from.
+     */
+    public void refresh() throws SQLException {
+        if (provider == null) {
+            throw new IllegalStateException("Snapshot was not loaded from a database");
+        }
+        // Strings read from the ResultSet are replaced by the shared dictionary entry straight away,
+        // so only one copy of each continent, region and district name stays on the heap
+        Loader loader = new Loader(symbols);
+        try (Connection con = provider.getConnection()) {
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "SELECT Code, Name, Continent, Region, Population, Capital FROM country");
+                 ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    loader.addCountry(rset.getString("Code"), rset.getString("Name"), rset.getString("Continent"),
+                            rset.getString("Region"), rset.getInt("Population"), rset.getInt("Capital"));
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "SELECT ID, Name, CountryCode, District, Population FROM city");
+                 ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    loader.addCity(rset.getInt("ID"), rset.getString("Name"), rset.getString("CountryCode"),
+                            rset.getString("District"), rset.getInt("Population"));
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "SELECT CountryCode, Language, IsOfficial, Percentage FROM countrylanguage");
+                 ResultSet rset = stmt.executeQuery()) {
+                while (rset.next()) {
+                    loader.addLanguage(rset.getString("CountryCode"), rset.getString("Language"),
+                            "T".equals(rset.getString("IsOfficial")), rset.getDouble("Percentage"));
+                }
+            }
+        }
+        state = new State(loader);
+    }
+
+    /**
+     * Number of countries loaded.
+     */
+    public int getCountryCount() {
+        return state.countries.size;
+    }
+
+    /**
+     * Number of cities loaded that belong to a known country.
+     */
+    public int getCityCount() {
+        return state.cities.size;
+    }
+
+    // ===== Country reports =====
+
+    /**
+     * Countries with a capital city, largest population first, filtered by WORLD, CONTINENT or REGION.
+     */
+    public ArrayList<Country> countries(Scope scope, String key, int limit) {
+        State s = state;
+        int[] rows;
+        if (scope == Scope.WORLD) {
+            rows = prefix(s.countryWithCapitalOrder, limit);
+        } else {
+            checkScope(scope, Scope.CONTINENT, Scope.REGION);
+            PostingIndex index = scope == Scope.CONTINENT ? s.countriesByContinent : s.countriesByRegion;
+            rows = index.slice(s.symbols.lookup(key), limit);
+        }
+        ArrayList<Country> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(toCountry(s, row));
+        }
+        return result;
+    }
+
+    // ===== City reports =====
+
+    /**
+     * Cities, largest population first, filtered by WORLD, CONTINENT, REGION, COUNTRY (name) or DISTRICT.
+     */
+    public ArrayList<City> cities(Scope scope, String key, int limit) {
+        State s = state;
+        int[] rows;
+        switch (scope) {
+            case WORLD:
+                rows = prefix(s.cityOrder, limit);
+                break;
+            case CONTINENT:
+                rows = s.citiesByContinent.slice(s.symbols.lookup(key), limit);
+                break;
+            case REGION:
+                rows = s.citiesByRegion.slice(s.symbols.lookup(key), limit);
+                break;
+            case COUNTRY:
+                rows = citiesOfCountry(s, key, limit);
+                break;
+            case DISTRICT:
+                rows = s.citiesByDistrict.slice(s.symbols.lookup(key), limit);
+                break;
+            default:
+                throw new IllegalArgumentException("Cities cannot be filtered by " + scope);
+        }
+        return toCities(s, rows);
+    }
+
+    // ===== Capital reports =====
+
+    /**
+     * Capital cities, largest population first, filtered by WORLD, CONTINENT or REGION.
+     */
+    public ArrayList<Capital> capitals(Scope scope, String key, int limit) {
+        State s = state;
+        int[] rows;
+        if (scope == Scope.WORLD) {
+            rows = prefix(s.capitalOrder, limit);
+        } else {
+            checkScope(scope, Scope.CONTINENT, Scope.REGION);
+            PostingIndex index = scope == Scope.CONTINENT ? s.capitalsByContinent : s.capitalsByRegion;
+            rows = index.slice(s.symbols.lookup(key), limit);
+        }
+        ArrayList<Capital> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(toCapital(s, row));
+        }
+        return result;
+    }
+
+    // ===== Population reports =====
+
+    /**
+     * City / non-city breakdown per CONTINENT, REGION or COUNTRY, largest total first.
+     */
+    public ArrayList<Population> populationBreakdown(Scope scope) {
+        State s = state;
+        switch (scope) {
+            case CONTINENT:
+                return new ArrayList<>(s.continentBreakdown);
+            case REGION:
+                return new ArrayList<>(s.regionBreakdown);
+            case COUNTRY:
+                return new ArrayList<>(s.countryBreakdown);
+            default:
+                throw new IllegalArgumentException("No population breakdown by " + scope);
+        }
+    }
+
+    /**
+     * Population of the world, or of the continent, region, country, district or city called {@code key}.
+     */
+    public ArrayList<Population> population(Scope scope, String key) {
+        State s = state;
+        CountryTable countries = s.countries;
+        CityTable cities = s.cities;
+        ArrayList<Population> result = new ArrayList<>();
+        switch (scope) {
+            case WORLD:
+                result.add(new Population("World", s.worldPopulation));
+                break;
+            case CONTINENT:
+            case REGION: {
+                int id = s.symbols.lookup(key);
+                BitSet members = members(s, scope, id);
+                if (!members.isEmpty()) {
+                    long total = 0;
+                    for (int row = members.nextSetBit(0); row >= 0; row = members.nextSetBit(row + 1)) {
+                        total += countries.population[row];
+                    }
+                    result.add(new Population(s.symbols.name(id), total));
+                }
+                break;
+            }
+            case COUNTRY:
+                for (int row : s.countriesByName.getOrDefault(lower(key), new int[0])) {
+                    result.add(new Population(countries.name[row], countries.population[row]));
+                }
+                break;
+            case DISTRICT: {
+                int id = s.symbols.lookup(key);
+                for (int row : s.citiesByDistrict.slice(id, ALL)) {
+                    result.add(new Population(s.symbols.name(id), cities.population[row]));
+                }
+                break;
+            }
+            case CITY:
+                for (int row : s.cityOrder) {
+                    if (cities.name[row].equalsIgnoreCase(key)) {
+                        result.add(new Population(cities.name[row], cities.population[row]));
+                    }
+                }
+                break;
+        }
+        return result;
+    }
+
+    // ===== Language report =====
+
+    /**
+     * Speakers of Chinese, English, Hindi, Spanish and Arabic, most speakers first.
+     */
+    public ArrayList<Language> languages() {
+        return new ArrayList<>(state.languages);
+    }
+
+    // ===== Helpers =====
+
+    private static int[] allRows(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * Sort row numbers by population, largest first, keeping the original order for ties.
+     * Packs (population, row) into one long so the sort runs on primitives.
+     */
+    static int[] orderByPopulation(int[] population, int[] rows) {
+        long[] keys = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            keys[i] = ((0x7FFFFFFFL - Math.max(0, population[rows[i]])) << 32) | rows[i];
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = (int) keys[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * One bitmap of country rows per symbol id found in the column.
+     */
+    private static BitSet[] members(int[] column, int rows, int symbolCount) {
+        BitSet[] members = new BitSet[symbolCount];
+        for (int row = 0; row < rows; row++) {
+            int id = column[row];
+            if (members[id] == null) {
+                members[id] = new BitSet(rows);
+            }
+            members[id].set(row);
+        }
+        return members;
+    }
+
+    /**
+     * Country rows in the continent or region with the given symbol id; empty if there are none.
+     */
+    private static BitSet members(State s, Scope scope, int id) {
+        BitSet[] members = scope == Scope.CONTINENT ? s.continentMembers : s.regionMembers;
+        if (id < 0 || id >= members.length || members[id] == null) {
+            return new BitSet();
+        }
+        return members[id];
+    }
+
+    private static int[] prefix(int[] order, int limit) {
+        return Arrays.copyOf(order, Math.min(Math.max(limit, 0), order.length));
+    }
+
+    private static void checkScope(Scope scope, Scope a, Scope b) {
+        if (scope != a && scope != b) {
+            throw new IllegalArgumentException("Cannot filter by " + scope);
+        }
+    }
+
+    private static String lower(String key) {
+        return key == null ? "" : key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Cities of every country with the given name. Names are unique in world.sql, so this is
+     * normally one posting list; several are merged with a bounded heap.
+     */
+    private static int[] citiesOfCountry(State s, String name, int limit) {
+        int[] countryRows = s.countriesByName.get(lower(name));
+        if (countryRows == null) {
+            return new int[0];
+        }
+        if (countryRows.length == 1) {
+            return s.citiesByCountry.slice(countryRows[0], limit);
+        }
+        int total = 0;
+        for (int country : countryRows) {
+            total += s.citiesByCountry.size(country);
+        }
+        int[] rows = new int[total];
+        int n = 0;
+        for (int country : countryRows) {
+            int[] slice = s.citiesByCountry.slice(country, ALL);
+            System.arraycopy(slice, 0, rows, n, slice.length);
+            n += slice.length;
+        }
+        return TopN.select(rows, row -> true, s.cities.population, limit);
+    }
+
+    private static Country toCountry(State s, int row) {
+        CountryTable countries = s.countries;
+        Country c = new Country();
+        c.code = countries.code[row];
+        c.name = countries.name[row];
+        c.continent = s.symbols.name(countries.continent[row]);
+        c.region = s.symbols.name(countries.region[row]);
+        c.population = countries.population[row];
+        c.capital = s.cities.name[countries.capitalRow[row]];
+        return c;
+    }
+
+    private static ArrayList<City> toCities(State s, int[] rows) {
+        ArrayList<City> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            City c = new City();
+            c.name = s.cities.name[row];
+            c.country = s.countries.name[s.cities.countryRow[row]];
+            c.district = s.symbols.name(s.cities.district[row]);
+            c.population = s.cities.population[row];
+            result.add(c);
+        }
+        return result;
+    }
+
+    private static Capital toCapital(State s, int row) {
+        Capital c = new Capital();
+        c.name = s.cities.name[row];
+        c.country = s.countries.name[s.cities.countryRow[row]];
+        c.population = s.cities.population[row];
+        return c;
+    }
+
+    /**
+     * Same numbers as the SQL in Population: each country's population is counted once, and
+     * countries without cities are included with nobody living in cities.
+     */
+    private static ArrayList<Population> breakdown(State s, Scope scope) {
+        CountryTable countries = s.countries;
+        CityTable cities = s.cities;
+        // Group number per country row: the symbol id for continent/region, the row itself for country
+        int groupCount = scope == Scope.COUNTRY ? countries.size : s.symbols.size();
+        long[] total = new long[groupCount];
+        long[] inCities = new long[groupCount];
+        boolean[] seen = new boolean[groupCount];
+        for (int row = 0; row < countries.size; row++) {
+            int group = group(countries, scope, row);
+            total[group] += countries.population[row];
+            seen[group] = true;
+        }
+        for (int row = 0; row < cities.size; row++) {
+            inCities[group(countries, scope, cities.countryRow[row])] += cities.population[row];
+        }
+        ArrayList<Population> result = new ArrayList<>();
+        for (int group = 0; group < groupCount; group++) {
+            if (!seen[group]) {
+                continue;
+            }
+            String name = scope == Scope.COUNTRY ? countries.name[group] : s.symbols.name(group);
+            result.add(new Population(name, total[group], inCities[group], total[group] - inCities[group],
+                    percentage(inCities[group], total[group]), percentage(total[group] - inCities[group], total[group])));
+        }
+        result.sort(Comparator.comparingLong(Population::getTotalPopulation).reversed()
+                .thenComparing(Population::getName));
+        return result;
+    }
+
+    private static int group(CountryTable countries, Scope scope, int row) {
+        return scope == Scope.CONTINENT ? countries.continent[row]
+                : scope == Scope.REGION ? countries.region[row] : row;
+    }
+
+    // (part / whole) * 100 to four decimal places, as MySQL returns it
+    static double percentage(long part, long whole) {
+        if (whole == 0) {
+            return 0;
+        }
+        return BigDecimal.valueOf(part).multiply(BigDecimal.valueOf(100))
+                .divide(BigDecimal.valueOf(whole), 4, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static ArrayList<Language> languages(State s, ArrayList<LanguageRow> rows) {
+        LinkedHashMap<String, long[]> groups = new LinkedHashMap<>();
+        for (String name : new String[]{"Chinese", "English", "Hindi", "Spanish", "Arabic"}) {
+            groups.put(name, null);
+        }
+        for (LanguageRow row : rows) {
+            String name = matchingLanguage(groups, row.language);
+            if (row.countryRow < 0 || name == null) {
+                continue;
+            }
+            long[] sums = groups.get(name);
+            if (sums == null) {
+                sums = new long[2];
+                groups.put(name, sums);
+            }
+            // Population * Percentage / 100 is exact in thousandths; ROUND() per country for speakers
+            long thousandths = (long) s.countries.population[row.countryRow] * row.percentageTenths;
+            sums[0] += (thousandths + 500) / 1000;
+            sums[1] += thousandths;
+        }
+        long world = s.worldPopulation;
+        ArrayList<Language> result = new ArrayList<>();
+        for (Map.Entry<String, long[]> e : groups.entrySet()) {
+            long[] sums = e.getValue();
+            if (sums == null) {
+                continue;
+            }
+            double share = world == 0 ? 0 : BigDecimal.valueOf(sums[1]).divide(BigDecimal.valueOf(world * 10L), 2, RoundingMode.HALF_UP).doubleValue();
+            result.add(new Language(e.getKey(), sums[0], share));
+        }
+        result.sort(Comparator.comparingLong(Language::getPopulation).reversed());
+        return result;
+    }
+
+    private static String matchingLanguage(Map<String, long[]> groups, String language) {
+        for (String name : groups.keySet()) {
+            if (name.equalsIgnoreCase(language)) {
+                return name;
+            }
+        }
+        return null;
+    }
+}
@@ -1,7 +1,7 @@
 package com.napier.sem;
 
 import org.junit.jupiter.api.*;
-import java.sql.Connection;
+import java.sql.SQLException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,28 +21,33 @@ public class AppIT {  // Renamed from AppIntegrationTest
     @DisplayName("Integration: App successfully connects to MySQL")
     public void testConnect() {
         app.connect();
-        assertNotNull(app.con, "Connection should not be null");
-
-        try {
-            assertFalse(app.con.isClosed(), "Connection should be open");
-        } catch (Exception e) {
-            fail("Unexpected SQL exception: " + e.getMessage());
-        }
+        assertTrue(app.connected, "Readiness probe should succeed");
+        // The probe goes back to the pool instead of holding a permit
+        assertEquals(0, app.pool.getActiveCount());
+        assertEquals(1, app.pool.getIdleCount());
+        app.disconnect();
     }
 
     @Test
     @Order(2)
-    @DisplayName("Integration: App disconnect() closes the connection")
+    @DisplayName("Integration: App disconnect() closes the pool")
     public void testDisconnect() {
         app.connect();
-        assertNotNull(app.con);
+        assertTrue(app.connected);
 
         app.disconnect();
 
-        try {
-            assertTrue(app.con.isClosed(), "Connection should be closed");
-        } catch (Exception e) {
-            fail("Unexpected SQL exception: " + e.getMessage());
-        }
+        assertFalse(app.connected);
+        assertEquals(0, app.pool.getOpenCount(), "Pooled connections should be closed");
+        assertThrows(SQLException.class, () -> app.pool.getConnection());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Integration: connect() records how long start-up took")
+    public void testStartupTimeRecorded() {
+        app.connect();
+        assertTrue(app.getStartupMillis() >= 0, "Start-up time should be recorded");
+        app.disconnect();
     }
-}
\ No newline at end of file
+}
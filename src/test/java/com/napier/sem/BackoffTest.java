@@ -0,0 +1,49 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the start-up Backoff.
+ */
+class BackoffTest {
+
+    @Test
+    void testDelaysGrowExponentiallyWithinJitterBounds() {
+        Backoff backoff = new Backoff(100, 10000, new Random(42));
+        long cap = 100;
+        for (int i = 0; i < 6; i++) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay >= cap / 2 && delay <= cap, "delay " + delay + " outside [" + cap / 2 + ", " + cap + "]");
+            cap *= 2;
+        }
+        assertEquals(6, backoff.getAttempts());
+    }
+
+    @Test
+    void testDelayIsCappedAtMax() {
+        Backoff backoff = new Backoff(100, 1000, new Random(1));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(backoff.nextDelayMillis() <= 1000);
+        }
+    }
+
+    @Test
+    void testSameSeedGivesSameDelays() {
+        Backoff a = new Backoff(50, 5000, new Random(7));
+        Backoff b = new Backoff(50, 5000, new Random(7));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(a.nextDelayMillis(), b.nextDelayMillis());
+        }
+    }
+
+    @Test
+    void testInvalidBoundsAreClamped() {
+        Backoff backoff = new Backoff(0, -5, new Random(3));
+        assertTrue(backoff.nextDelayMillis() >= 0);
+        assertTrue(backoff.nextDelayMillis() <= 1);
+    }
+}
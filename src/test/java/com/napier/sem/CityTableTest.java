@@ -0,0 +1,41 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CityTable column store.
+ */
+class CityTableTest {
+
+    @Test
+    void testAddGrowsPastInitialCapacity() {
+        CityTable table = new CityTable(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, table.add(i + 1, "City" + i, i % 3, i % 5, i * 10));
+        }
+
+        assertEquals(100, table.size());
+        assertEquals(100, table.id[99]);
+        assertEquals("City42", table.name[42]);
+        assertEquals(2, table.countryRow[41]);
+        assertEquals(990, table.population[99]);
+    }
+
+    @Test
+    void testOrderByPopulationIsDescendingAndStable() {
+        int[] population = {5, 9, 5, 1, 9};
+        int[] order = WorldSnapshot.orderByPopulation(population, new int[]{0, 1, 2, 3, 4});
+
+        assertArrayEquals(new int[]{1, 4, 0, 2, 3}, order);
+    }
+
+    @Test
+    void testOrderByPopulationOfSubset() {
+        int[] population = {5, 9, 7, 1};
+        int[] order = WorldSnapshot.orderByPopulation(population, new int[]{3, 2, 0});
+
+        assertArrayEquals(new int[]{2, 0, 3}, order);
+    }
+}
@@ -6,8 +6,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -461,6 +470,16 @@ class CityTest {
         assertEquals(0, cities.get(0).population);
     }
 
+    @Test
+    void testStreamCitiesFromSnapshot() {
+        City memory = new City(new WorldGenerator(42, 1).snapshot());
+
+        long rows = memory.streamCities("stream-test.md", WorldSnapshot.Scope.CONTINENT, "Asia");
+
+        assertEquals(memory.getCitiesContinent("Asia").size(), rows);
+        assertTrue(rows > 0);
+    }
+
     // Test outputCities method thoroughly
     @Test
     void testOutputCitiesWithNullList() {
@@ -688,4 +707,91 @@ class CityTest {
         verify(mockPreparedStatement).setString(1, "California");
         verify(mockPreparedStatement).setInt(2, -3);
     }
+
+    private static EmbeddedDatabase world() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(7, 1).writeSql(sql);
+        EmbeddedDatabase db = new EmbeddedDatabase();
+        db.runScript(new StringReader(sql.toString()));
+        return db;
+    }
+
+    private static ArrayList<City> allPages(City city, WorldSnapshot.Scope scope, String name, int size) {
+        ArrayList<City> all = new ArrayList<>();
+        ArrayList<City> page = city.getCitiesPage(scope, name, null, size);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= size);
+            all.addAll(page);
+            page = city.getCitiesPage(scope, name, page.get(page.size() - 1), size);
+        }
+        return all;
+    }
+
+    // Test keyset pages cover every city once, largest first
+    @Test
+    void testCitiesPagesCoverEveryCityInOrder() throws SQLException, IOException {
+        try (EmbeddedDatabase db = world()) {
+            City cities = new City(db);
+
+            ArrayList<City> pages = allPages(cities, WorldSnapshot.Scope.WORLD, null, 97);
+
+            assertEquals(cities.getCities().size(), pages.size());
+            Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i < pages.size(); i++) {
+                assertTrue(ids.add(pages.get(i).id), "City " + pages.get(i).id + " on two pages");
+                if (i > 0) {
+                    assertTrue(pages.get(i - 1).population >= pages.get(i).population);
+                }
+            }
+            String country = cities.getCities().get(0).country;
+            ArrayList<City> inCountry = allPages(cities, WorldSnapshot.Scope.COUNTRY, country, 5);
+            assertEquals(cities.getCitiesCountry(country).size(), inCountry.size());
+            for (City c : inCountry) {
+                assertEquals(country, c.country);
+            }
+        }
+    }
+
+    // Test the paged viewer fetches a page only when asked for more
+    @Test
+    void testPageCitiesStopsWhenAsked() throws SQLException, IOException {
+        PrintStream console = System.out;
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (EmbeddedDatabase db = world()) {
+            City cities = new City(db);
+            int[] asked = new int[1];
+
+            System.setOut(new PrintStream(text, true, StandardCharsets.UTF_8));
+            long printed;
+            try {
+                printed = cities.pageCities(WorldSnapshot.Scope.WORLD, null, 10, () -> ++asked[0] < 3);
+            } finally {
+                System.setOut(console);
+            }
+
+            assertEquals(30, printed);
+            assertEquals(3, asked[0]);
+            String[] lines = text.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+            assertEquals(30 + 4, lines.length);
+            assertEquals(lines[0], lines[lines.length - 1]);
+
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                printed = cities.pageCities(WorldSnapshot.Scope.WORLD, null, 500, () -> true);
+            } finally {
+                System.setOut(console);
+            }
+            assertEquals(cities.getCities().size(), printed);
+        }
+    }
+
+    // Test paging is refused where it cannot work
+    @Test
+    void testCitiesPageRejectsSnapshotAndCityScope() {
+        assertThrows(IllegalArgumentException.class,
+                () -> city.getCitiesPage(WorldSnapshot.Scope.CITY, "London", null, 10));
+        City fromSnapshot = new City(new WorldGenerator(7, 1).snapshot());
+        assertThrows(IllegalStateException.class,
+                () -> fromSnapshot.getCitiesPage(WorldSnapshot.Scope.WORLD, null, null, 10));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ConnectionPool using mocked physical connections.
+ */
+class ConnectionPoolTest {
+
+    private final ArrayList<Connection> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private ConnectionPool newPool(ConnectionPool.Settings settings) {
+        pool = new ConnectionPool(() -> {
+            Connection raw = mock(Connection.class);
+            when(raw.isValid(anyInt())).thenReturn(true);
+            when(raw.getAutoCommit()).thenReturn(true);
+            opened.add(raw);
+            return raw;
+        }, settings);
+        return pool;
+    }
+
+    private static ConnectionPool.Settings settings(int maxSize) {
+        ConnectionPool.Settings s = new ConnectionPool.Settings();
+        s.maxSize = maxSize;
+        s.borrowTimeoutMillis = 100;
+        s.housekeepingMillis = 0;
+        return s;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testReturnedConnectionIsReused() throws SQLException {
+        newPool(settings(2));
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        second.close();
+
+        assertEquals(1, opened.size());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+        verify(opened.get(0), never()).close();
+    }
+
+    @Test
+    void testClosedProxyRejectsUse() throws SQLException {
+        newPool(settings(1));
+        Connection con = pool.getConnection();
+        con.close();
+
+        assertTrue(con.isClosed());
+        assertThrows(SQLException.class, () -> con.prepareStatement("SELECT 1"));
+    }
+
+    @Test
+    void testProxyHoldsNoLockDuringDriverCalls() throws Exception {
+        newPool(settings(1));
+        Connection con = pool.getConnection();
+        CountDownLatch inDriver = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(opened.get(0).prepareStatement("SELECT SLEEP(1)")).thenAnswer(inv -> {
+            inDriver.countDown();
+            release.await();
+            return null;
+        });
+        Thread query = new Thread(() -> {
+            try {
+                con.prepareStatement("SELECT SLEEP(1)");
+            } catch (SQLException e) {
+                fail(e);
+            }
+        });
+        query.start();
+        assertTrue(inDriver.await(5, TimeUnit.SECONDS));
+
+        // Would wait for the query to finish if calls ran under the proxy's monitor
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertFalse(con.isClosed()));
+        release.countDown();
+        query.join();
+        con.close();
+        con.close();
+        assertEquals(1, pool.getIdleCount());
+        assertDoesNotThrow(() -> pool.getConnection().close());
+    }
+
+    @Test
+    void testBorrowTimesOutWhenPoolExhausted() throws SQLException {
+        newPool(settings(1));
+        Connection held = pool.getConnection();
+
+        assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+        held.close();
+        assertDoesNotThrow(() -> pool.getConnection().close());
+    }
+
+    @Test
+    void testSeparateConnectionsForConcurrentBorrowers() throws SQLException {
+        newPool(settings(3));
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+
+        assertEquals(2, opened.size());
+        assertEquals(2, pool.getActiveCount());
+        a.close();
+        b.close();
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void testInvalidConnectionIsDiscardedOnBorrow() throws SQLException {
+        ConnectionPool.Settings s = settings(1);
+        s.validationBypassMillis = -1;
+        newPool(s);
+        pool.getConnection().close();
+        when(opened.get(0).isValid(anyInt())).thenReturn(false);
+
+        pool.getConnection().close();
+
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+    }
+
+    @Test
+    void testExpiredConnectionIsNotReturnedToPool() throws SQLException {
+        ConnectionPool.Settings s = settings(1);
+        s.maxLifetimeMillis = 1;
+        newPool(s);
+        Connection con = pool.getConnection();
+        sleep(5);
+        con.close();
+
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getOpenCount());
+        verify(opened.get(0)).close();
+    }
+
+    @Test
+    void testIdleConnectionsAreEvicted() throws SQLException {
+        ConnectionPool.Settings s = settings(2);
+        s.idleTimeoutMillis = 1;
+        newPool(s);
+        pool.getConnection().close();
+        sleep(5);
+
+        pool.housekeep();
+
+        assertEquals(0, pool.getIdleCount());
+        verify(opened.get(0)).close();
+    }
+
+    @Test
+    void testLeakIsReportedOnce() throws SQLException {
+        ConnectionPool.Settings s = settings(1);
+        s.leakThresholdMillis = 1;
+        newPool(s);
+        Connection leaked = pool.getConnection();
+        sleep(5);
+
+        pool.housekeep();
+        pool.housekeep();
+
+        assertEquals(1, pool.getLeakCount());
+        leaked.close();
+    }
+
+    @Test
+    void testUncommittedWorkIsRolledBackOnReturn() throws SQLException {
+        newPool(settings(1));
+        Connection con = pool.getConnection();
+        when(opened.get(0).getAutoCommit()).thenReturn(false);
+        con.close();
+
+        verify(opened.get(0)).rollback();
+        verify(opened.get(0)).setAutoCommit(true);
+    }
+
+    @Test
+    void testCloseClosesIdleConnectionsAndRejectsBorrow() throws SQLException {
+        newPool(settings(2));
+        pool.getConnection().close();
+
+        pool.close();
+
+        verify(opened.get(0)).close();
+        assertThrows(SQLException.class, () -> pool.getConnection());
+    }
+
+    @Test
+    void testSingleConnectionProviderDoesNotCloseSharedConnection() throws SQLException {
+        Connection shared = mock(Connection.class);
+        ConnectionProvider provider = ConnectionProvider.of(shared);
+
+        provider.getConnection().close();
+        provider.getConnection().createStatement();
+
+        verify(shared, never()).close();
+        verify(shared).createStatement();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the console table shared by the printX reports.
+ */
+class ConsoleTableTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private static String render(String[] headers, List<Object[]> rows, ConsoleTable.Columns<Object[]> columns,
+                                 long[] chars) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        chars[0] = ConsoleTable.print(out, headers, rows, columns);
+        out.flush();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testLayoutMatchesPrintf() {
+        List<Object[]> rows = Arrays.asList(
+                new Object[]{"Edinburgh", 450180, 2.5},
+                new Object[]{"Rio de Janeiro", 5598953, 12.25});
+        long[] chars = new long[1];
+
+        String table = render(new String[]{"Name", "Population", "Share"}, rows, (r, row) -> row
+                .cell((String) r[0]).cell((Integer) r[1]).cell((Double) r[2]), chars);
+
+        StringBuilder expected = new StringBuilder();
+        String border = "+----------------+------------+-------+" + NL;
+        expected.append(border);
+        expected.append(String.format("| %-14s | %-10s | %-5s |", "Name", "Population", "Share")).append(NL);
+        expected.append(border);
+        for (Object[] r : rows) {
+            expected.append(String.format("| %-14s | %-10s | %-5s |", r[0], r[1], r[2])).append(NL);
+        }
+        expected.append(border);
+        assertEquals(expected.toString(), table);
+        assertEquals(table.length(), chars[0]);
+    }
+
+    @Test
+    void testRightAlignedNumbersAndNulls() {
+        List<Object[]> rows = Arrays.asList(new Object[]{null, 7L}, new Object[]{"ABW", 103000L});
+        long[] chars = new long[1];
+
+        String table = render(new String[]{"Code", "Population"}, rows, (r, row) -> row
+                .cell((String) r[0]).right((Long) r[1]), chars);
+
+        String[] lines = table.split(NL);
+        assertEquals("| null |          7 |", lines[3]);
+        assertEquals("| ABW  |     103000 |", lines[4]);
+        assertEquals(6, lines.length);
+    }
+
+    @Test
+    void testTablesLargerThanBufferAreWrittenWhole() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(new Object[]{"City " + i, (long) i * 37});
+        }
+        // A single cell longer than the buffer is copied in pieces
+        rows.add(new Object[]{"x".repeat(ConsoleTable.CHUNK * 2 + 5), -1L});
+        long[] chars = new long[1];
+
+        String table = render(new String[]{"Name", "Population"}, rows, (r, row) -> row
+                .cell((String) r[0]).cell((Long) r[1]), chars);
+
+        String[] lines = table.split(NL);
+        assertEquals(rows.size() + 4, lines.length);
+        int width = lines[0].length();
+        for (String line : lines) {
+            assertEquals(width, line.length());
+        }
+        assertTrue(lines[3].startsWith("| City 0 "), lines[3]);
+        assertTrue(lines[rows.size() + 2].endsWith(" | -1         |"), lines[rows.size() + 2]);
+        assertEquals(table.length(), chars[0]);
+    }
+
+    @Test
+    void testEmptyTableHasHeaderOnly() {
+        long[] chars = new long[1];
+
+        String table = render(new String[]{"Language"}, new ArrayList<>(), (r, row) -> row.cell((String) r[0]), chars);
+
+        assertEquals("+----------+" + NL + "| Language |" + NL + "+----------+" + NL + "+----------+" + NL, table);
+    }
+
+    @Test
+    void testFixedWidthsCutLongTextAcrossPages() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        String[] headers = {"Name", "Population"};
+        ConsoleTable.Columns<Object[]> columns = (r, row) -> row.cell((String) r[0]).right((Long) r[1]);
+        List<Object[]> first = List.<Object[]>of(new Object[]{"Rome", 2643581L});
+
+        ConsoleTable table = ConsoleTable.open(out, headers, ConsoleTable.widths(headers, first, columns));
+        table.rows(first, columns);
+        long afterFirst = table.getWritten();
+        table.rows(List.<Object[]>of(new Object[]{"Ho Chi Minh City", 3980000L}), columns);
+        long chars = table.end();
+        out.flush();
+
+        String[] lines = bytes.toString(StandardCharsets.UTF_8).split(NL);
+        assertEquals("| Rome |    2643581 |", lines[3]);
+        assertEquals("| H... |    3980000 |", lines[4]);
+        assertEquals(lines[0], lines[5]);
+        assertEquals(4 * lines[0].length() + 4 * NL.length(), afterFirst);
+        assertEquals(bytes.size(), chars);
+    }
+
+    @Test
+    void testEncodesLikeTheStreamAcrossChunks() {
+        // Each run of surrogate pairs holds a chunk boundary, one run shifted by a char, so a pair
+        // is split across chunks whatever the header takes up
+        String pairs = "\uD83C\uDF0D".repeat(ConsoleTable.CHUNK / 2 + 1);
+        String name = pairs + "x" + pairs + " Île-de-France";
+        List<Object[]> rows = List.<Object[]>of(new Object[]{name});
+        ConsoleTable.Columns<Object[]> columns = (r, row) -> row.cell((String) r[0]);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, Charset.defaultCharset());
+
+        long chars = ConsoleTable.print(out, new String[]{"Name"}, rows, columns);
+
+        String border = "+" + "-".repeat(name.length() + 2) + "+" + NL;
+        String expected = border + "| Name" + " ".repeat(name.length() - 4) + " |" + NL + border
+                + "| " + name + " |" + NL + border;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        new PrintStream(printed, true, Charset.defaultCharset()).print(expected);
+        assertArrayEquals(printed.toByteArray(), bytes.toByteArray());
+        assertEquals(expected.length(), chars);
+    }
+}
@@ -0,0 +1,27 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CountryTable column store.
+ */
+class CountryTableTest {
+
+    @Test
+    void testAddStoresColumnsAndGrows() {
+        CountryTable table = new CountryTable(0);
+        for (int i = 0; i < 40; i++) {
+            table.add("C" + i, "Country" + i, i % 7, i % 25, 1000 + i, i + 1);
+        }
+
+        assertEquals(40, table.size());
+        assertEquals("C39", table.code[39]);
+        assertEquals("Country7", table.name[7]);
+        assertEquals(0, table.continent[7]);
+        assertEquals(1039, table.population[39]);
+        assertEquals(40, table.capitalId[39]);
+        assertEquals(-1, table.capitalRow[39]);
+    }
+}
@@ -6,8 +6,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -467,6 +472,72 @@ class CountryTest {
         assertNull(countries.get(0).capital);
     }
 
+    @Test
+    void testStreamCountriesWritesRowsWithoutCollectingThem() throws SQLException, IOException {
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getString("Code")).thenReturn("CHN", "IND");
+        when(mockResultSet.getString("Name")).thenReturn("China", "India");
+        when(mockResultSet.getString("Continent")).thenReturn("Asia", "Asia");
+        when(mockResultSet.getString("Region")).thenReturn("Eastern Asia", "Southern and Central Asia");
+        when(mockResultSet.getInt("Population")).thenReturn(1277558000, 1013662000);
+        when(mockResultSet.getString("Capital")).thenReturn("Peking", "New Delhi");
+
+        long rows = country.streamCountries("stream-test.md", WorldSnapshot.Scope.CONTINENT, "Asia");
+
+        assertEquals(2, rows);
+        // A fetch size alone is ignored by Connector/J, so streaming asks for rows one by one
+        verify(mockPreparedStatement).setFetchSize(QueryHelper.rowByRowMode() == QueryHelper.FetchMode.STREAM
+                ? Integer.MIN_VALUE : QueryHelper.FETCH_SIZE);
+        verify(mockPreparedStatement).setString(1, "Asia");
+        List<String> lines = Files.readAllLines(new File(MarkdownWriter.REPORTS_DIR, "stream-test.md").toPath());
+        assertEquals(4, lines.size());
+        assertEquals("| CHN | China | Asia | Eastern Asia | 1277558000 | Peking |", lines.get(2));
+    }
+
+    @Test
+    void testStreamCountriesQueryFailure() throws SQLException {
+        when(mockConnection.prepareStatement(anyString())).thenThrow(new SQLException("Database error"));
+
+        assertEquals(-1, country.streamCountries("stream-failed.md", WorldSnapshot.Scope.WORLD, null));
+        assertFalse(new File(MarkdownWriter.REPORTS_DIR, "stream-failed.md").exists());
+    }
+
+    @Test
+    void testStreamCountriesFailingPartwayLeavesNoFile() throws SQLException {
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenThrow(new SQLException("Connection reset"));
+        when(mockResultSet.getString(anyString())).thenReturn("CHN");
+
+        assertEquals(-1, country.streamCountries("stream-failed.md", WorldSnapshot.Scope.WORLD, null));
+        assertFalse(new File(MarkdownWriter.REPORTS_DIR, "stream-failed.md").exists());
+        assertThrows(SQLException.class, () -> country.streamCountries(
+                new MarkdownWriter(new StringWriter(), "Code"), WorldSnapshot.Scope.WORLD, null));
+    }
+
+    @Test
+    void testReportAfterStreamingStillReturnsRows() throws SQLException {
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false, true, false);
+        when(mockResultSet.getString(anyString())).thenReturn("CHN");
+        when(mockResultSet.getInt("Population")).thenReturn(1277558000);
+
+        assertEquals(1, country.streamCountries("stream-test.md", WorldSnapshot.Scope.CONTINENT, "Asia"));
+        ArrayList<Country> countries = country.getCountriesByContinent("Asia");
+
+        assertEquals(1, countries.size());
+        assertEquals(1277558000, countries.get(0).population);
+    }
+
+    @Test
+    void testStreamCountriesRejectsScopeWithoutListReport() {
+        assertThrows(IllegalArgumentException.class,
+                () -> country.streamCountries("stream-test.md", WorldSnapshot.Scope.CITY, "Paris"));
+    }
+
     // Test outputCountries method thoroughly
     @Test
     void testOutputCountriesWithNullList() {
@@ -0,0 +1,159 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every report against db/world.sql loaded into the embedded database, without Docker,
+ * and checks the SQL answers against known values and against the in-memory snapshot.
+ */
+public class EmbeddedDatabaseIT {
+
+    private static EmbeddedDatabase db;
+    private static WorldSnapshot snapshot;
+
+    @BeforeAll
+    static void load() throws Exception {
+        db = EmbeddedDatabase.fromScript(new File("db/world.sql"));
+        snapshot = new WorldSnapshot(db);
+    }
+
+    @AfterAll
+    static void close() {
+        db.close();
+    }
+
+    @Test
+    @DisplayName("Integration: world.sql loads completely")
+    public void testWorldLoaded() {
+        assertEquals(239, snapshot.getCountryCount());
+        assertEquals(4079, snapshot.getCityCount());
+    }
+
+    @Test
+    @DisplayName("Integration: country reports match MySQL results")
+    public void testCountryReports() {
+        Country country = new Country(db);
+
+        ArrayList<Country> all = country.getAllCountriesByPopulation();
+        assertEquals("CHN", all.get(0).code);
+        assertEquals(1277558000, all.get(0).population);
+        assertEquals("Peking", all.get(0).capital);
+        assertEquals(5, country.getTopCountriesInContinent("europe", 5).size());
+        assertEquals("Brazil", country.getCountriesByRegion("South America").get(0).name);
+    }
+
+    @Test
+    @DisplayName("Integration: population and language reports match MySQL results")
+    public void testPopulationAndLanguageReports() {
+        Population population = new Population(db);
+
+        assertEquals(6078749450L, population.populationWorld().get(0).getTotalPopulation());
+        assertEquals(7285000L, population.populationCity("London").get(0).getTotalPopulation());
+        assertEquals("Chinese", new Language(db).getLanguages().get(0).getLanguage());
+        assertTrue(population.continentPopulation().get(0).getCityPercentage() > 0);
+    }
+
+    @Test
+    @DisplayName("Integration: all 32 reports give the same rows from SQL and from the snapshot")
+    public void testSqlMatchesSnapshot() throws SQLException {
+        Country sqlCountry = new Country(db);
+        Country memCountry = new Country(snapshot);
+        same(sqlCountry.getAllCountriesByPopulation(), memCountry.getAllCountriesByPopulation(), EmbeddedDatabaseIT::row);
+        same(sqlCountry.getCountriesByContinent("Asia"), memCountry.getCountriesByContinent("Asia"), EmbeddedDatabaseIT::row);
+        same(sqlCountry.getCountriesByRegion("Caribbean"), memCountry.getCountriesByRegion("Caribbean"), EmbeddedDatabaseIT::row);
+        same(sqlCountry.getTopCountriesInWorld(10), memCountry.getTopCountriesInWorld(10), EmbeddedDatabaseIT::row);
+        same(sqlCountry.getTopCountriesInContinent("Africa", 5), memCountry.getTopCountriesInContinent("Africa", 5), EmbeddedDatabaseIT::row);
+        same(sqlCountry.getTopCountriesInRegion("Middle East", 5), memCountry.getTopCountriesInRegion("Middle East", 5), EmbeddedDatabaseIT::row);
+
+        City sqlCity = new City(db);
+        City memCity = new City(snapshot);
+        same(sqlCity.getCities(), memCity.getCities(), EmbeddedDatabaseIT::row);
+        same(sqlCity.getCitiesContinent("Europe"), memCity.getCitiesContinent("Europe"), EmbeddedDatabaseIT::row);
+        same(sqlCity.getCitiesRegion("Southeast Asia"), memCity.getCitiesRegion("Southeast Asia"), EmbeddedDatabaseIT::row);
+        same(sqlCity.getCitiesCountry("Japan"), memCity.getCitiesCountry("Japan"), EmbeddedDatabaseIT::row);
+        same(sqlCity.getCitiesDistrict("England"), memCity.getCitiesDistrict("England"), EmbeddedDatabaseIT::row);
+        same(sqlCity.getCitiesPopulation(10), memCity.getCitiesPopulation(10), EmbeddedDatabaseIT::row);
+        same(sqlCity.getTopCitiesContinent("Asia", 5), memCity.getTopCitiesContinent("Asia", 5), EmbeddedDatabaseIT::row);
+        same(sqlCity.getTopCitiesRegion("Western Europe", 5), memCity.getTopCitiesRegion("Western Europe", 5), EmbeddedDatabaseIT::row);
+        same(sqlCity.getTopCitiesCountry("Brazil", 5), memCity.getTopCitiesCountry("Brazil", 5), EmbeddedDatabaseIT::row);
+        same(sqlCity.getTopCitiesDistrict("California", 5), memCity.getTopCitiesDistrict("California", 5), EmbeddedDatabaseIT::row);
+
+        Capital sqlCapital = new Capital(db);
+        Capital memCapital = new Capital(snapshot);
+        same(sqlCapital.getCapitals(), memCapital.getCapitals(), EmbeddedDatabaseIT::row);
+        same(sqlCapital.getCapitalsContinent("Oceania"), memCapital.getCapitalsContinent("Oceania"), EmbeddedDatabaseIT::row);
+        same(sqlCapital.getCapitalsRegion("Eastern Europe"), memCapital.getCapitalsRegion("Eastern Europe"), EmbeddedDatabaseIT::row);
+        same(sqlCapital.getCapitalsPopulation(10), memCapital.getCapitalsPopulation(10), EmbeddedDatabaseIT::row);
+        same(sqlCapital.topCapitalsContinent("Europe", 5), memCapital.topCapitalsContinent("Europe", 5), EmbeddedDatabaseIT::row);
+        same(sqlCapital.topCapitalsRegion("Caribbean", 5), memCapital.topCapitalsRegion("Caribbean", 5), EmbeddedDatabaseIT::row);
+
+        Population sqlPopulation = new Population(db);
+        Population memPopulation = new Population(snapshot);
+        same(sqlPopulation.continentPopulation(), memPopulation.continentPopulation(), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.regionPopulation(), memPopulation.regionPopulation(), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.countryPopulation(), memPopulation.countryPopulation(), EmbeddedDatabaseIT::row);
+        // The pre-aggregated breakdown queries agree with the incrementally kept rollups too
+        PopulationRollup rollup = PopulationRollup.load(db);
+        same(sqlPopulation.continentPopulation(), rollup.breakdown(WorldSnapshot.Scope.CONTINENT), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.regionPopulation(), rollup.breakdown(WorldSnapshot.Scope.REGION), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.countryPopulation(), rollup.breakdown(WorldSnapshot.Scope.COUNTRY), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.populationWorld(), memPopulation.populationWorld(), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.populationContinent("Asia"), memPopulation.populationContinent("Asia"), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.populationRegion("Polynesia"), memPopulation.populationRegion("Polynesia"), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.populationCountry("France"), memPopulation.populationCountry("France"), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.populationDistrict("Texas"), memPopulation.populationDistrict("Texas"), EmbeddedDatabaseIT::row);
+        same(sqlPopulation.populationCity("Edinburgh"), memPopulation.populationCity("Edinburgh"), EmbeddedDatabaseIT::row);
+
+        same(new Language(db).getLanguages(), new Language(snapshot).getLanguages(), EmbeddedDatabaseIT::row);
+    }
+
+    // Rows with equal population may come back in either order, so compare them sorted
+    private static <T> void same(List<T> sql, List<T> memory, Function<T, String> row) {
+        assertFalse(sql.isEmpty());
+        ArrayList<String> a = new ArrayList<>();
+        ArrayList<String> b = new ArrayList<>();
+        for (int i = 0; i < sql.size(); i++) {
+            a.add(row.apply(sql.get(i)));
+        }
+        for (int i = 0; i < memory.size(); i++) {
+            b.add(row.apply(memory.get(i)));
+        }
+        Collections.sort(a);
+        Collections.sort(b);
+        assertEquals(a, b);
+    }
+
+    private static String row(Country c) {
+        return c.code + "|" + c.name + "|" + c.continent + "|" + c.region + "|" + c.population + "|" + c.capital;
+    }
+
+    private static String row(City c) {
+        return c.name + "|" + c.country + "|" + c.district + "|" + c.population;
+    }
+
+    private static String row(Capital c) {
+        return c.name + "|" + c.country + "|" + c.population;
+    }
+
+    private static String row(Population p) {
+        return p.getName() + "|" + p.getTotalPopulation() + "|" + p.getCityPopulation() + "|" + p.getNoCityPopulation()
+                + "|" + String.format(Locale.ROOT, "%.4f|%.4f", p.getCityPercentage(), p.getNoCityPercentage());
+    }
+
+    private static String row(Language l) {
+        return l.getLanguage() + "|" + l.getPopulation() + "|" + String.format(Locale.ROOT, "%.2f", l.getPercentage());
+    }
+}
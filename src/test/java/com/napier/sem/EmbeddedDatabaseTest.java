@@ -0,0 +1,153 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the embedded stand-in database and its MySQL dump loader.
+ */
+class EmbeddedDatabaseTest {
+
+    // A cut-down dump in the shape of db/world.sql: city is created before country and
+    // references it, and strings use MySQL backslash escapes
+    private static final String DUMP = "/*!40101 SET NAMES utf8mb4 */;\n"
+            + "CREATE DATABASE `world` DEFAULT CHARACTER SET utf8mb4;\n"
+            + "USE `world`;\n"
+            + "-- Table structure for table `city`\n"
+            + "CREATE TABLE `city` (\n"
+            + "  `ID` int NOT NULL AUTO_INCREMENT,\n"
+            + "  `Name` char(35) NOT NULL DEFAULT '',\n"
+            + "  `CountryCode` char(3) NOT NULL DEFAULT '',\n"
+            + "  `District` char(20) NOT NULL DEFAULT '',\n"
+            + "  `Population` int NOT NULL DEFAULT '0',\n"
+            + "  PRIMARY KEY (`ID`),\n"
+            + "  KEY `CountryCode` (`CountryCode`),\n"
+            + "  CONSTRAINT `city_ibfk_1` FOREIGN KEY (`CountryCode`) REFERENCES `country` (`Code`)\n"
+            + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n"
+            + "set autocommit=0;\n"
+            + "INSERT INTO `city` VALUES (1,'London','GBR','England',7285000);\n"
+            + "INSERT INTO `city` VALUES (2,'St. John\\'s','GBR','England',100000);\n"
+            + "commit;\n"
+            + "CREATE TABLE `country` (\n"
+            + "  `Code` char(3) NOT NULL DEFAULT '',\n"
+            + "  `Name` char(52) NOT NULL DEFAULT '',\n"
+            + "  `Continent` enum('Asia','Europe') NOT NULL DEFAULT 'Asia',\n"
+            + "  `Region` char(26) NOT NULL DEFAULT '',\n"
+            + "  `Population` int NOT NULL DEFAULT '0',\n"
+            + "  `Capital` int DEFAULT NULL,\n"
+            + "  KEY `CountryCode` (`Code`),\n"
+            + "  PRIMARY KEY (`Code`)\n"
+            + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n"
+            + "INSERT INTO `country` VALUES ('GBR','United Kingdom','Europe','British Islands',59623400,1);\n";
+
+    private EmbeddedDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        db = new EmbeddedDatabase();
+        db.runScript(new StringReader(DUMP));
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void testSplitDropsCommentsAndRewritesEscapes() {
+        List<String> statements = EmbeddedDatabase.split("/*!40101 SET x=1 */;\n-- note; here\n"
+                + "INSERT INTO t VALUES ('a;b','it\\'s','say \"hi\"',\"dq\");\nSELECT 1");
+
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO t VALUES ('a;b','it''s','say \"hi\"','dq')", statements.get(0));
+        assertEquals("SELECT 1", statements.get(1));
+    }
+
+    @Test
+    void testTranslateTable() {
+        String sql = EmbeddedDatabase.translateTable("CREATE TABLE `t` (\n"
+                + "  `ID` int NOT NULL AUTO_INCREMENT,\n"
+                + "  `Name` char(35) NOT NULL,\n"
+                + "  `Population` int NOT NULL,\n"
+                + "  KEY `Name` (`Name`)\n)");
+
+        assertTrue(sql.contains("`ID` int NOT NULL AUTO_INCREMENT"));
+        assertTrue(sql.contains("`Name` varchar(35)"));
+        assertTrue(sql.contains("`Population` decimal(11,0)"));
+        assertTrue(sql.contains("  KEY (`Name`)"));
+    }
+
+    @Test
+    void testReportSqlRunsUnchanged() {
+        ArrayList<Country> countries = new Country(db).getCountriesByContinent("europe");
+        ArrayList<City> cities = new City(db).getCitiesDistrict("ENGLAND");
+
+        assertEquals(1, countries.size());
+        assertEquals("London", countries.get(0).capital);
+        assertEquals(2, cities.size());
+        assertEquals("St. John's", cities.get(1).name);
+    }
+
+    @Test
+    void testDivisionIsNotTruncated() {
+        ArrayList<Population> continents = new Population(db).continentPopulation();
+
+        assertEquals(1, continents.size());
+        // (7285000 + 100000) / 59623400 * 100
+        assertEquals(12.3861, continents.get(0).getCityPercentage(), 0.0001);
+    }
+
+    @Test
+    void testAppConnectsThroughProvider() {
+        App app = new App();
+        app.connect(db);
+
+        assertTrue(app.connected);
+        assertEquals(0, app.pool.getActiveCount());
+        assertEquals(59623400L, new Population(app.pool).populationContinent("Europe").get(0).getTotalPopulation());
+        app.disconnect();
+    }
+
+    @Test
+    void testConnectLeavesEveryPermitForReports() throws SQLException {
+        System.setProperty("db.pool.maxSize", "2");
+        System.setProperty("db.pool.borrowTimeoutMillis", "100");
+        App app = new App();
+        try {
+            app.connect(db);
+
+            // Both permits are free once the readiness probe is done
+            try (Connection first = app.pool.getConnection(); Connection second = app.pool.getConnection()) {
+                assertFalse(first.isClosed());
+                assertFalse(second.isClosed());
+            }
+        } finally {
+            System.clearProperty("db.pool.maxSize");
+            System.clearProperty("db.pool.borrowTimeoutMillis");
+            app.disconnect();
+        }
+    }
+
+    @Test
+    void testGeneratedScriptLoads() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(1, 1).writeSql(sql);
+        try (EmbeddedDatabase generated = new EmbeddedDatabase()) {
+            generated.runScript(new StringReader(sql.toString()));
+
+            assertEquals(WorldGenerator.BASE_COUNTRIES, new Population(generated).countryPopulation().size(), 20);
+            assertFalse(new Language(generated).getLanguages().isEmpty());
+        }
+    }
+}
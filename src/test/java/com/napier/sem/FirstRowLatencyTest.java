@@ -0,0 +1,85 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for fetch modes and the first-row latency they are measured with.
+ */
+class FirstRowLatencyTest {
+
+    @AfterEach
+    void tearDown() {
+        FirstRowLatency.clear();
+    }
+
+    @Test
+    void testRecordKeepsLastRun() {
+        assertNull(FirstRowLatency.last("City.getCities"));
+
+        FirstRowLatency.record("City.getCities", QueryHelper.FetchMode.BUFFERED, 900, 1000, 10);
+        FirstRowLatency.record("City.getCities", QueryHelper.FetchMode.CURSOR, 50, 1100, 10);
+
+        FirstRowLatency.Sample last = FirstRowLatency.last("City.getCities");
+        assertEquals(QueryHelper.FetchMode.CURSOR, last.mode);
+        assertEquals(50, last.firstRowNanos);
+        assertEquals(1100, last.totalNanos);
+        assertEquals(10, last.rows);
+    }
+
+    @Test
+    void testApplyFetchMode() throws SQLException {
+        PreparedStatement buffered = mock(PreparedStatement.class);
+        PreparedStatement cursor = mock(PreparedStatement.class);
+        PreparedStatement stream = mock(PreparedStatement.class);
+
+        QueryHelper.applyFetchMode(buffered, QueryHelper.FetchMode.BUFFERED);
+        QueryHelper.applyFetchMode(cursor, QueryHelper.FetchMode.CURSOR);
+        QueryHelper.applyFetchMode(stream, QueryHelper.FetchMode.STREAM);
+
+        verify(buffered, never()).setFetchSize(anyInt());
+        verify(cursor).setFetchSize(QueryHelper.FETCH_SIZE);
+        verify(stream).setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Test
+    void testUnboundedReportIsTimed() throws SQLException {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+        when(rset.next()).thenReturn(true, true, true, false);
+
+        new City(con).getCities();
+
+        FirstRowLatency.Sample last = FirstRowLatency.last("City.getCities");
+        assertEquals(QueryHelper.FETCH_MODE, last.mode);
+        assertEquals(3, last.rows);
+        assertTrue(last.firstRowNanos >= 0 && last.firstRowNanos <= last.totalNanos);
+    }
+
+    @Test
+    void testEmptyResultHasNoFirstRow() throws SQLException {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+
+        new Country(con).getAllCountriesByPopulation();
+
+        assertEquals(-1, FirstRowLatency.last("Country.getAllCountriesByPopulation").firstRowNanos);
+        assertEquals(0, FirstRowLatency.last("Country.getAllCountriesByPopulation").rows);
+    }
+}
@@ -0,0 +1,45 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the latency histogram's percentiles.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testEmpty() {
+        LatencyHistogram h = new LatencyHistogram();
+
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.percentileNanos(99));
+        assertEquals(0, h.getMeanNanos());
+    }
+
+    @Test
+    void testPercentilesWithinBucketError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int us = 1; us <= 10000; us++) {
+            h.record(us * 1000L);
+        }
+
+        assertEquals(10000, h.getCount());
+        assertEquals(5_000_000, h.percentileNanos(50), 5_000_000 * 0.125);
+        assertEquals(9_900_000, h.percentileNanos(99), 9_900_000 * 0.125);
+        assertEquals(10_000_000, h.getMaxNanos());
+        assertTrue(h.percentileNanos(100) <= h.getMaxNanos());
+    }
+
+    @Test
+    void testBucketsAreOrdered() {
+        int last = -1;
+        for (long us = 0; us < 1_000_000; us = us * 2 + 1) {
+            int bucket = LatencyHistogram.bucket(us);
+            assertTrue(bucket > last);
+            last = bucket;
+        }
+        assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE / 1000) < 488);
+    }
+}
@@ -0,0 +1,159 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the LRU/TTL report cache.
+ */
+class LruReportCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void testRepeatedReportIsServedFromMemory() {
+        LruReportCache cache = new LruReportCache(10, 0);
+
+        cache.get("Country.getCountriesByContinent", new Object[]{"Asia"}, () -> load(1, 2));
+        ArrayList<Integer> second = cache.get("Country.getCountriesByContinent", new Object[]{"asia"}, () -> load(1, 2));
+
+        assertEquals(Arrays.asList(1, 2), second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testParametersAndReportsAreSeparate() {
+        LruReportCache cache = new LruReportCache(10, 0);
+
+        cache.get("City.getTopCitiesContinent", new Object[]{"Asia", 5}, () -> load(1));
+        cache.get("City.getTopCitiesContinent", new Object[]{"Asia", 10}, () -> load(1));
+        cache.get("City.getCitiesContinent", new Object[]{"Asia"}, () -> load(1));
+
+        assertEquals(3, loads.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        LruReportCache cache = new LruReportCache(2, 0);
+
+        cache.get("a", new Object[0], () -> load(1));
+        cache.get("b", new Object[0], () -> load(2));
+        cache.get("a", new Object[0], () -> load(1));
+        cache.get("c", new Object[0], () -> load(3));
+        cache.get("a", new Object[0], () -> load(1));
+        cache.get("b", new Object[0], () -> load(2));
+
+        // b was the least recently used when c arrived
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    void testExpiredResultIsReloaded() {
+        AtomicLong now = new AtomicLong();
+        LruReportCache cache = new LruReportCache(10, 1000, now::get);
+
+        cache.get("Language.getLanguages", new Object[0], () -> load(1));
+        now.set(999);
+        cache.get("Language.getLanguages", new Object[0], () -> load(1));
+        now.set(1000);
+        cache.get("Language.getLanguages", new Object[0], () -> load(1));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void testInvalidateDropsOnlyThatReport() {
+        LruReportCache cache = new LruReportCache(10, 0);
+        cache.get("a", new Object[]{"x"}, () -> load(1));
+        cache.get("a", new Object[]{"y"}, () -> load(1));
+        cache.get("b", new Object[0], () -> load(1));
+
+        cache.invalidate("a");
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidationDuringLoadIsNotUndone() {
+        LruReportCache cache = new LruReportCache(10, 0);
+
+        // The data changes while the query is running, so its rows may already be stale
+        ArrayList<Integer> stale = cache.get("a", new Object[0], () -> {
+            cache.invalidate("a");
+            return load(1);
+        });
+        cache.get("b", new Object[0], () -> {
+            cache.invalidateAll();
+            return load(2);
+        });
+
+        assertEquals(Arrays.asList(1), stale);
+        assertEquals(0, cache.size());
+        assertEquals(Arrays.asList(3), cache.get("a", new Object[0], () -> load(3)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testZeroEntriesMeansNoCache() {
+        System.setProperty("report.cache.maxEntries", "0");
+        try {
+            assertSame(ReportCache.NONE, LruReportCache.fromSystemProperties());
+        } finally {
+            System.clearProperty("report.cache.maxEntries");
+        }
+        assertSame(ReportCache.NONE, LruReportCache.fromSystemProperties());
+        assertThrows(IllegalArgumentException.class, () -> new LruReportCache(0, 0));
+    }
+
+    @Test
+    void testEmptyAndMutatedResultsDoNotLeakIntoCache() {
+        LruReportCache cache = new LruReportCache(10, 0);
+
+        assertTrue(cache.get("a", new Object[0], () -> load()).isEmpty());
+        cache.get("a", new Object[0], () -> load(1)).add(99);
+
+        assertEquals(Arrays.asList(1), cache.get("a", new Object[0], () -> load(1)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testCountryReportQueriesDatabaseOnce() throws SQLException {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+        when(rset.next()).thenReturn(true, false);
+        when(rset.getString(anyString())).thenReturn("x");
+
+        Country country = new Country(con);
+        country.setCache(new LruReportCache(10, 0));
+
+        assertEquals(1, country.getAllCountriesByPopulation().size());
+        assertEquals(1, country.getAllCountriesByPopulation().size());
+        verify(con, times(1)).prepareStatement(anyString());
+    }
+
+    private ArrayList<Integer> load(Integer... values) {
+        loads.incrementAndGet();
+        return new ArrayList<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,49 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the row-at-a-time Markdown table writer.
+ */
+class MarkdownWriterTest {
+
+    @Test
+    void testWritesHeaderAndRows() throws IOException {
+        StringWriter text = new StringWriter();
+        try (MarkdownWriter out = new MarkdownWriter(text, "Name", "Population")) {
+            out.cell("Edinburgh").cell(450180).endRow();
+            out.cell("Percentage").cell(12.5).endRow();
+            assertEquals(2, out.getRows());
+        }
+
+        assertEquals("| Name | Population |\r\n"
+                + "| --- | --- |\r\n"
+                + "| Edinburgh | 450180 |\r\n"
+                + "| Percentage | 12.5 |\r\n", text.toString());
+    }
+
+    @Test
+    void testNullCellIsEmpty() throws IOException {
+        StringWriter text = new StringWriter();
+        new MarkdownWriter(text, "Name").cell((String) null).endRow();
+
+        assertTrue(text.toString().endsWith("|  |\r\n"));
+    }
+
+    @Test
+    void testCountsUtf8Bytes() throws IOException {
+        StringWriter text = new StringWriter();
+        try (MarkdownWriter out = new MarkdownWriter(text, "Name")) {
+            out.cell("Île-de-France").endRow();
+            out.cell("東京").endRow();
+
+            assertEquals(text.toString().getBytes(StandardCharsets.UTF_8).length, out.getBytes());
+        }
+    }
+}
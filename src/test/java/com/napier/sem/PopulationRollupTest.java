@@ -0,0 +1,191 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Unit tests for the precomputed population rollups and their incremental updates.
+ */
+class PopulationRollupTest {
+
+    private static PopulationRollup small() {
+        PopulationRollup rollup = new PopulationRollup();
+        rollup.addCountry("GBR", "United Kingdom", "Europe", "British Islands", 59623400);
+        rollup.addCountry("IRL", "Ireland", "Europe", "British Islands", 3775100);
+        rollup.addCountry("FRA", "France", "Europe", "Western Europe", 59225700);
+        rollup.addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 0);
+        rollup.addCity(456, "GBR", 7285000);
+        rollup.addCity(457, "gbr", 1013000);
+        rollup.addCity(1447, "IRL", 481854);
+        rollup.addCity(2974, "FRA", 2125246);
+        return rollup;
+    }
+
+    @Test
+    void testEachCountryCountedOnce() {
+        ArrayList<Population> continents = small().breakdown(WorldSnapshot.Scope.CONTINENT);
+
+        assertEquals(2, continents.size());
+        Population europe = continents.get(0);
+        assertEquals("Europe", europe.getName());
+        assertEquals(59623400L + 3775100 + 59225700, europe.getTotalPopulation());
+        assertEquals(7285000L + 1013000 + 481854 + 2125246, europe.getCityPopulation());
+        assertEquals(europe.getTotalPopulation() - europe.getCityPopulation(), europe.getNoCityPopulation());
+        assertEquals(8.8931, europe.getCityPercentage(), 0.00001);
+        assertEquals(100, europe.getCityPercentage() + europe.getNoCityPercentage(), 0.0002);
+        // Nobody lives in Antarctica, so it has no share either way
+        assertEquals(0, continents.get(1).getCityPercentage());
+    }
+
+    @Test
+    void testRegionsAndCountries() {
+        PopulationRollup rollup = small();
+
+        ArrayList<Population> regions = rollup.breakdown(WorldSnapshot.Scope.REGION);
+        ArrayList<Population> countries = rollup.breakdown(WorldSnapshot.Scope.COUNTRY);
+
+        assertEquals("British Islands", regions.get(0).getName());
+        assertEquals(59623400L + 3775100, regions.get(0).getTotalPopulation());
+        assertEquals(4, countries.size());
+        assertEquals("United Kingdom", countries.get(0).getName());
+        assertEquals(8298000, countries.get(0).getCityPopulation());
+        assertThrows(IllegalArgumentException.class, () -> rollup.breakdown(WorldSnapshot.Scope.DISTRICT));
+    }
+
+    @Test
+    void testUpdatesMoveEveryLevel() {
+        PopulationRollup rollup = small();
+
+        assertTrue(rollup.setCityPopulation(456, 7300000));
+        assertTrue(rollup.setCountryPopulation("FRA", 60000000));
+        assertTrue(rollup.removeCity(1447));
+        assertTrue(rollup.addCity(1, "ATA", 10));
+        assertFalse(rollup.setCityPopulation(1447, 5));
+        assertFalse(rollup.setCountryPopulation("XXX", 5));
+        assertFalse(rollup.addCity(2, "XXX", 5));
+
+        Population europe = rollup.breakdown(WorldSnapshot.Scope.CONTINENT).get(0);
+        assertEquals(59623400L + 3775100 + 60000000, europe.getTotalPopulation());
+        assertEquals(7300000L + 1013000 + 2125246, europe.getCityPopulation());
+        Population ireland = find(rollup.breakdown(WorldSnapshot.Scope.COUNTRY), "Ireland");
+        assertEquals(0, ireland.getCityPopulation());
+        assertEquals(100, ireland.getNoCityPercentage());
+    }
+
+    @Test
+    void testIncrementalMatchesRebuild() throws IOException {
+        // Apply random changes to a generated world, then compare with a rollup built from the final rows
+        List<Object[]> countryRows = new ArrayList<>();
+        List<Object[]> cityRows = new ArrayList<>();
+        new WorldGenerator(5, 1).generate(new WorldGenerator.Sink() {
+            @Override
+            public void country(String code, String name, String continent, String region, int population, int capitalId) {
+                countryRows.add(new Object[]{code, name, continent, region, population});
+            }
+
+            @Override
+            public void city(int id, String name, String countryCode, String district, int population) {
+                cityRows.add(new Object[]{id, countryCode, population});
+            }
+
+            @Override
+            public void language(String countryCode, String language, boolean official, double percentage) {
+            }
+        });
+        PopulationRollup live = build(countryRows, cityRows);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextBoolean()) {
+                Object[] city = cityRows.get(random.nextInt(cityRows.size()));
+                city[2] = random.nextInt(1_000_000);
+                live.setCityPopulation((Integer) city[0], (Integer) city[2]);
+            } else {
+                Object[] country = countryRows.get(random.nextInt(countryRows.size()));
+                country[4] = random.nextInt(100_000_000);
+                live.setCountryPopulation((String) country[0], (Integer) country[4]);
+            }
+            if (i % 500 == 0) {
+                // Reading in between must not leave stale views behind
+                live.breakdown(WorldSnapshot.Scope.REGION);
+            }
+        }
+        PopulationRollup rebuilt = build(countryRows, cityRows);
+
+        for (WorldSnapshot.Scope scope : new WorldSnapshot.Scope[]{
+                WorldSnapshot.Scope.CONTINENT, WorldSnapshot.Scope.REGION, WorldSnapshot.Scope.COUNTRY}) {
+            assertEquals(rows(rebuilt.breakdown(scope)), rows(live.breakdown(scope)));
+        }
+    }
+
+    @Test
+    void testLoadFromDatabase() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(3, 1).writeSql(sql);
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.runScript(new StringReader(sql.toString()));
+
+            PopulationRollup rollup = PopulationRollup.load(db);
+
+            long world = new Population(db).populationWorld().get(0).getTotalPopulation();
+            long total = 0;
+            for (Population p : rollup.breakdown(WorldSnapshot.Scope.CONTINENT)) {
+                total += p.getTotalPopulation();
+            }
+            assertEquals(world, total);
+            assertEquals(WorldGenerator.BASE_COUNTRIES, rollup.breakdown(WorldSnapshot.Scope.COUNTRY).size());
+        }
+    }
+
+    @Test
+    void testPopulationReportsUseRollupWithoutQuerying() {
+        Connection con = mock(Connection.class);
+        Population population = new Population(con);
+        population.setRollup(small());
+
+        assertEquals("Europe", population.continentPopulation().get(0).getName());
+        assertEquals("British Islands", population.regionPopulation().get(0).getName());
+        assertEquals(4, population.countryPopulation().size());
+        verifyNoInteractions(con);
+    }
+
+    private static PopulationRollup build(List<Object[]> countryRows, List<Object[]> cityRows) {
+        PopulationRollup rollup = new PopulationRollup();
+        for (Object[] c : countryRows) {
+            rollup.addCountry((String) c[0], (String) c[1], (String) c[2], (String) c[3], (Integer) c[4]);
+        }
+        for (Object[] c : cityRows) {
+            rollup.addCity((Integer) c[0], (String) c[1], (Integer) c[2]);
+        }
+        return rollup;
+    }
+
+    private static List<String> rows(List<Population> populations) {
+        List<String> rows = new ArrayList<>();
+        for (Population p : populations) {
+            rows.add(p.getName() + "|" + p.getTotalPopulation() + "|" + p.getCityPopulation() + "|"
+                    + p.getCityPercentage() + "|" + p.getNoCityPercentage());
+        }
+        return rows;
+    }
+
+    private static Population find(List<Population> populations, String name) {
+        for (Population p : populations) {
+            if (p.getName().equals(name)) {
+                return p;
+            }
+        }
+        throw new AssertionError("No " + name);
+    }
+}
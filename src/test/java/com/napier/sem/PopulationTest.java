@@ -8,7 +8,12 @@ import org.mockito.MockitoAnnotations;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
+import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -841,6 +846,77 @@ class PopulationTest {
         assertDoesNotThrow(() -> population.outputPopulation(populations, "multiple-populations.md"));
     }
 
+    @Test
+    void testBreakdownQueriesMatchRollup() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(7, 2).writeSql(sql);
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.runScript(new StringReader(sql.toString()));
+            Population queries = new Population(db);
+            PopulationRollup rollup = PopulationRollup.load(db);
+
+            assertEquals(breakdownRows(rollup.breakdown(WorldSnapshot.Scope.CONTINENT)),
+                    breakdownRows(queries.continentPopulation()));
+            assertEquals(breakdownRows(rollup.breakdown(WorldSnapshot.Scope.REGION)),
+                    breakdownRows(queries.regionPopulation()));
+            assertEquals(breakdownRows(rollup.breakdown(WorldSnapshot.Scope.COUNTRY)),
+                    breakdownRows(queries.countryPopulation()));
+        }
+    }
+
+    @Test
+    void testBreakdownCountsEachCountryOnceAndCountriesWithoutCities() throws SQLException, IOException {
+        // One country with several cities and one with none
+        String dump = "CREATE TABLE `country` (\n"
+                + "  `Code` char(3) NOT NULL DEFAULT '',\n"
+                + "  `Name` char(52) NOT NULL DEFAULT '',\n"
+                + "  `Continent` enum('Asia','Europe') NOT NULL DEFAULT 'Asia',\n"
+                + "  `Region` char(26) NOT NULL DEFAULT '',\n"
+                + "  `Population` int NOT NULL DEFAULT '0',\n"
+                + "  PRIMARY KEY (`Code`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n"
+                + "CREATE TABLE `city` (\n"
+                + "  `ID` int NOT NULL AUTO_INCREMENT,\n"
+                + "  `Name` char(35) NOT NULL DEFAULT '',\n"
+                + "  `CountryCode` char(3) NOT NULL DEFAULT '',\n"
+                + "  `District` char(20) NOT NULL DEFAULT '',\n"
+                + "  `Population` int NOT NULL DEFAULT '0',\n"
+                + "  PRIMARY KEY (`ID`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n"
+                + "INSERT INTO `country` VALUES ('GBR','United Kingdom','Europe','British Islands',1000);\n"
+                + "INSERT INTO `country` VALUES ('IRL','Ireland','Europe','British Islands',500);\n"
+                + "INSERT INTO `city` VALUES (1,'London','GBR','England',300),(2,'Birmingham','GBR','England',200),"
+                + "(3,'Edinburgh','GBR','Scotland',100);\n";
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.runScript(new StringReader(dump));
+            Population queries = new Population(db);
+
+            assertEquals(List.of("United Kingdom|1000|600|400", "Ireland|500|0|500"),
+                    totals(queries.countryPopulation()));
+            assertEquals(List.of("British Islands|1500|600|900"), totals(queries.regionPopulation()));
+            assertEquals(List.of("Europe|1500|600|900"), totals(queries.continentPopulation()));
+        }
+    }
+
+    private static List<String> totals(ArrayList<Population> populations) {
+        List<String> rows = new ArrayList<>();
+        for (Population p : populations) {
+            rows.add(p.getName() + "|" + p.getTotalPopulation() + "|" + p.getCityPopulation() + "|"
+                    + p.getNoCityPopulation());
+        }
+        return rows;
+    }
+
+    private static ArrayList<String> breakdownRows(ArrayList<Population> populations) {
+        ArrayList<String> rows = new ArrayList<>();
+        for (Population p : populations) {
+            rows.add(p.getName() + "|" + p.getTotalPopulation() + "|" + p.getCityPopulation() + "|"
+                    + p.getNoCityPopulation() + "|" + String.format(Locale.ROOT, "%.4f|%.4f",
+                    p.getCityPercentage(), p.getNoCityPercentage()));
+        }
+        return rows;
+    }
+
     // Helper method to get private field values using reflection
     private Object getPrivateField(Population population, String fieldName) {
         try {
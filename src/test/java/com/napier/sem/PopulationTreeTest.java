@@ -0,0 +1,171 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Unit tests for the population hierarchy and its drill-downs.
+ */
+class PopulationTreeTest {
+
+    private static PopulationTree small() {
+        PopulationTree tree = new PopulationTree();
+        tree.addCountry("GBR", "United Kingdom", "Europe", "British Islands", 59623400);
+        tree.addCountry("IRL", "Ireland", "Europe", "British Islands", 3775100);
+        tree.addCountry("FRA", "France", "Europe", "Western Europe", 59225700);
+        tree.addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 0);
+        tree.addCity(456, "London", "GBR", "England", 7285000);
+        tree.addCity(457, "Birmingham", "gbr", "England", 1013000);
+        tree.addCity(465, "Edinburgh", "GBR", "Scotland", 450180);
+        tree.addCity(1447, "Dublin", "IRL", "Leinster", 481854);
+        tree.addCity(2974, "Paris", "FRA", "Île-de-France", 2125246);
+        assertFalse(tree.addCity(1, "Nowhere", "XXX", "None", 5));
+        return tree.finish();
+    }
+
+    @Test
+    void testEveryLevel() {
+        PopulationTree tree = small();
+
+        assertEquals(59623400L + 3775100 + 59225700, only(tree.population(WorldSnapshot.Scope.WORLD, null)));
+        assertEquals(59623400L + 3775100 + 59225700, only(tree.population(WorldSnapshot.Scope.CONTINENT, "europe")));
+        assertEquals(59623400L + 3775100, only(tree.population(WorldSnapshot.Scope.REGION, "British Islands")));
+        assertEquals(59623400L, only(tree.population(WorldSnapshot.Scope.COUNTRY, "United Kingdom")));
+        assertEquals(List.of("England|7285000", "England|1013000"),
+                rows(tree.population(WorldSnapshot.Scope.DISTRICT, "England")));
+        assertEquals(450180L, only(tree.population(WorldSnapshot.Scope.CITY, "EDINBURGH")));
+        assertEquals("Europe", tree.population(WorldSnapshot.Scope.CONTINENT, "europe").get(0).getName());
+        assertTrue(tree.population(WorldSnapshot.Scope.CITY, "Atlantis").isEmpty());
+        assertTrue(tree.population(WorldSnapshot.Scope.REGION, null).isEmpty());
+    }
+
+    @Test
+    void testSameNameInTwoCountries() {
+        PopulationTree tree = new PopulationTree();
+        tree.addCountry("GBR", "United Kingdom", "Europe", "British Islands", 100);
+        tree.addCountry("CAN", "Canada", "North America", "North America", 100);
+        tree.addCity(1, "London", "GBR", "England", 70);
+        tree.addCity(2, "London", "CAN", "Ontario", 30);
+        tree.addCity(3, "Hamilton", "CAN", "Central", 20);
+        tree.addCity(4, "Hamilton", "GBR", "Central", 10);
+        tree.finish();
+
+        // Cities stay separate, largest first; a district has a row per city in every country
+        ArrayList<Population> london = tree.population(WorldSnapshot.Scope.CITY, "London");
+        assertEquals(2, london.size());
+        assertEquals(70, london.get(0).getTotalPopulation());
+        assertEquals(List.of("Central|20", "Central|10"),
+                rows(tree.population(WorldSnapshot.Scope.DISTRICT, "central")));
+        assertEquals(2, tree.find(WorldSnapshot.Scope.DISTRICT, "Central").size());
+    }
+
+    @Test
+    void testDrillDownAndUp() {
+        PopulationTree tree = small();
+
+        assertEquals(List.of("Europe", "Antarctica"), names(tree.drillDown(WorldSnapshot.Scope.WORLD, null)));
+        assertEquals(List.of("British Islands", "Western Europe"),
+                names(tree.drillDown(WorldSnapshot.Scope.CONTINENT, "Europe")));
+        assertEquals(List.of("United Kingdom", "Ireland"),
+                names(tree.drillDown(WorldSnapshot.Scope.REGION, "British Islands")));
+        assertEquals(List.of("England", "Scotland"),
+                names(tree.drillDown(WorldSnapshot.Scope.COUNTRY, "United Kingdom")));
+        assertEquals(List.of("London", "Birmingham"), names(tree.drillDown(WorldSnapshot.Scope.DISTRICT, "England")));
+        assertTrue(tree.drillDown(WorldSnapshot.Scope.CITY, "London").isEmpty());
+        assertTrue(tree.drillDown(WorldSnapshot.Scope.COUNTRY, "Antarctica").isEmpty());
+
+        PopulationTree.Node edinburgh = tree.find(WorldSnapshot.Scope.CITY, "Edinburgh").get(0);
+        assertEquals("Scotland", edinburgh.getParent().getName());
+        assertEquals("United Kingdom", edinburgh.getParent().getParent().getName());
+        assertEquals(WorldSnapshot.Scope.COUNTRY, edinburgh.getParent().getParent().getLevel());
+        assertNull(tree.getWorld().getParent());
+    }
+
+    @Test
+    void testFinishedTreeIsReadOnly() {
+        PopulationTree tree = small();
+
+        assertThrows(IllegalStateException.class, () -> tree.addCountry("DEU", "Germany", "Europe", "Western Europe", 1));
+        assertThrows(UnsupportedOperationException.class, () -> tree.getWorld().getChildren().clear());
+        assertThrows(IllegalStateException.class, () -> new PopulationTree().population(WorldSnapshot.Scope.WORLD, null));
+        assertThrows(IllegalArgumentException.class, () -> {
+            PopulationTree t = new PopulationTree();
+            t.addCountry("GBR", "United Kingdom", "Europe", "British Islands", 1);
+            t.addCountry("gbr", "United Kingdom", "Europe", "British Islands", 1);
+        });
+    }
+
+    @Test
+    void testLoadMatchesQueries() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(3, 1).writeSql(sql);
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.runScript(new StringReader(sql.toString()));
+            Population queries = new Population(db);
+
+            PopulationTree tree = PopulationTree.load(db);
+
+            assertEquals(only(queries.populationWorld()), only(tree.population(WorldSnapshot.Scope.WORLD, null)));
+            for (PopulationTree.Node continent : tree.getWorld().getChildren()) {
+                assertEquals(only(queries.populationContinent(continent.getName())), continent.getPopulation());
+                for (PopulationTree.Node region : continent.getChildren()) {
+                    assertEquals(only(queries.populationRegion(region.getName())),
+                            only(tree.population(WorldSnapshot.Scope.REGION, region.getName())));
+                }
+            }
+            PopulationTree.Node city = tree.getWorld().getChildren().get(0).getChildren().get(0)
+                    .getChildren().get(0).getChildren().get(0).getChildren().get(0);
+            assertEquals(rows(queries.populationCity(city.getName())),
+                    rows(tree.population(WorldSnapshot.Scope.CITY, city.getName())));
+            assertEquals(rows(queries.populationDistrict(city.getParent().getName())),
+                    rows(tree.population(WorldSnapshot.Scope.DISTRICT, city.getParent().getName())));
+        }
+    }
+
+    @Test
+    void testPopulationReportsUseTreeWithoutQuerying() {
+        Connection con = mock(Connection.class);
+        Population population = new Population(con);
+        population.setTree(small());
+
+        assertEquals("World", population.populationWorld().get(0).getName());
+        assertEquals(1, population.populationContinent("Europe").size());
+        assertEquals(1, population.populationRegion("Western Europe").size());
+        assertEquals(3775100, population.populationCountry("Ireland").get(0).getTotalPopulation());
+        assertEquals(2, population.populationDistrict("England").size());
+        assertEquals("Paris", population.populationCity("Paris").get(0).getName());
+        verifyNoInteractions(con);
+    }
+
+    private static long only(List<Population> rows) {
+        assertEquals(1, rows.size());
+        return rows.get(0).getTotalPopulation();
+    }
+
+    private static List<String> names(List<Population> rows) {
+        List<String> names = new ArrayList<>();
+        for (Population p : rows) {
+            names.add(p.getName());
+        }
+        return names;
+    }
+
+    private static List<String> rows(List<Population> populations) {
+        List<String> rows = new ArrayList<>();
+        for (Population p : populations) {
+            rows.add(p.getName() + "|" + p.getTotalPopulation());
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,42 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PostingIndex.
+ */
+class PostingIndexTest {
+
+    // Rows 0..5 with keys 1, 0, 1, 2, 0, -1 listed in the order 5, 3, 0, 4, 2, 1
+    private final int[] keys = {1, 0, 1, 2, 0, -1};
+    private final PostingIndex index = new PostingIndex(new int[]{5, 3, 0, 4, 2, 1}, row -> keys[row], 4);
+
+    @Test
+    void testPostingListsKeepSourceOrder() {
+        assertArrayEquals(new int[]{4, 1}, index.slice(0, WorldSnapshot.ALL));
+        assertArrayEquals(new int[]{0, 2}, index.slice(1, WorldSnapshot.ALL));
+        assertArrayEquals(new int[]{3}, index.slice(2, WorldSnapshot.ALL));
+    }
+
+    @Test
+    void testSliceHonoursLimit() {
+        assertArrayEquals(new int[]{4}, index.slice(0, 1));
+        assertEquals(0, index.slice(0, 0).length);
+        assertEquals(0, index.slice(0, -3).length);
+    }
+
+    @Test
+    void testUnknownAndEmptyKeys() {
+        assertEquals(0, index.size(3));
+        assertEquals(0, index.slice(-1, 10).length);
+        assertEquals(0, index.slice(99, 10).length);
+    }
+
+    @Test
+    void testSizeAndGet() {
+        assertEquals(2, index.size(1));
+        assertEquals(2, index.get(1, 1));
+    }
+}
@@ -0,0 +1,123 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the parallel "run all reports" batch.
+ */
+class ReportBatchTest {
+
+    @Test
+    void testParse() {
+        assertEquals(Arrays.asList(1, 2, 3, 5, 23), ReportBatch.parse("5, 1-3,23,2"));
+        assertEquals(ReportBatch.REPORTS, ReportBatch.parse(null).size());
+        assertEquals(ReportBatch.REPORTS, ReportBatch.parse("all").size());
+        assertThrows(IllegalArgumentException.class, () -> ReportBatch.parse("0-3"));
+        assertThrows(IllegalArgumentException.class, () -> ReportBatch.parse("33"));
+    }
+
+    @Test
+    void testRunsEveryReportFromSnapshot() {
+        WorldSnapshot snapshot = new WorldGenerator(42, 1).snapshot();
+
+        List<ReportBatch.Result> results = new ReportBatch(snapshot, 4).run(ReportBatch.parse(null));
+
+        assertEquals(ReportBatch.REPORTS, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1, results.get(i).report);
+            assertNull(results.get(i).error);
+        }
+        assertEquals(snapshot.getCityCount(), results.get(6).rows);
+        assertEquals(10, results.get(11).rows);
+    }
+
+    @Test
+    void testRunsReportsInParallelOnTheirOwnConnections() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(7, 1).writeSql(sql);
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.runScript(new StringReader(sql.toString()));
+            ConnectionPool pool = new ConnectionPool(db, new ConnectionPool.Settings());
+
+            List<ReportBatch.Result> results = new ReportBatch(pool, 4).run(ReportBatch.parse("1,4,7,12,25,32"));
+            pool.close();
+
+            WorldSnapshot snapshot = new WorldGenerator(7, 1).snapshot();
+            assertEquals(6, results.size());
+            assertEquals(new Country(snapshot).getAllCountriesByPopulation().size(), results.get(0).rows);
+            assertEquals(10, results.get(1).rows);
+            assertEquals(snapshot.getCityCount(), results.get(2).rows);
+            assertEquals(10, results.get(3).rows);
+            for (ReportBatch.Result r : results) {
+                assertNull(r.error);
+            }
+        }
+    }
+
+    @Test
+    void testUnknownReportIsAnError() {
+        List<ReportBatch.Result> results = new ReportBatch(new WorldGenerator(1, 1).snapshot(), 2)
+                .run(Arrays.asList(1, 99));
+
+        assertNull(results.get(0).error);
+        assertTrue(results.get(1).error.contains("No report 99"));
+    }
+
+    @Test
+    void testFailedQueryIsAnErrorNotAnEmptyReport() {
+        ReportBatch batch = new ReportBatch(() -> {
+            throw new SQLException("Communications link failure");
+        }, 2);
+
+        List<ReportBatch.Result> results = batch.run(Arrays.asList(1, 26, 32));
+
+        assertEquals("query failed: Country.getAllCountriesByPopulation", results.get(0).error);
+        assertEquals("query failed: Population.populationWorld", results.get(1).error);
+        assertEquals("query failed: Language.getLanguages", results.get(2).error);
+        for (ReportBatch.Result r : results) {
+            assertEquals(0, r.rows);
+        }
+        ReportMetrics.clear();
+    }
+
+    @Test
+    void testDuplicateReportsRunOnce() {
+        WorldSnapshot snapshot = new WorldGenerator(42, 1).snapshot();
+
+        List<ReportBatch.Result> results = new ReportBatch(snapshot, 4).run(Arrays.asList(26, 12, 26, 26));
+
+        assertEquals(4, results.size());
+        assertEquals(12, results.get(1).report);
+        assertSame(results.get(0), results.get(2));
+        assertSame(results.get(0), results.get(3));
+        assertEquals(1, results.get(0).rows);
+    }
+
+    @Test
+    void testSummaryListsSlowestFirst() {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(text));
+        try {
+            ReportBatch.printSummary(Arrays.asList(new ReportBatch.Result(1, 239, 5, null),
+                    new ReportBatch.Result(7, 4079, 40, null)), 41);
+        } finally {
+            System.setOut(original);
+        }
+
+        String summary = text.toString();
+        assertTrue(summary.indexOf("|      7 |") < summary.indexOf("|      1 |"));
+        assertTrue(summary.contains("2 reports in 41ms (45ms if run one after another)"));
+    }
+}
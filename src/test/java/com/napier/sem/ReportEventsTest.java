@@ -0,0 +1,144 @@
+package com.napier.sem;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the flight recorder events of the query, render and write phases.
+ */
+class ReportEventsTest {
+
+    @AfterEach
+    void tearDown() {
+        ReportMetrics.clear();
+    }
+
+    @Test
+    void testRenderBytesMatchPrintedTable() throws Exception {
+        ArrayList<Language> rows = new ArrayList<>();
+        rows.add(new Language("English", 347077867L, 5.71));
+        rows.add(new Language("Arabic", 233839239L, 3.85));
+        CountingStream counted = new CountingStream();
+
+        Path file = Files.createTempFile("report-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.napier.sem.ReportRender").withThreshold(Duration.ZERO);
+            recording.start();
+            PrintStream console = System.out;
+            System.setOut(new PrintStream(counted));
+            try {
+                new Language(mock(Connection.class)).printLanguages(rows);
+            } finally {
+                System.setOut(console);
+            }
+            recording.stop();
+            recording.dump(file);
+
+            RecordedEvent render = only(RecordingFile.readAllEvents(file), "com.napier.sem.ReportRender");
+            assertEquals(2, render.getLong("rows"));
+            assertEquals(counted.bytes, render.getLong("bytes"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testEveryPhaseIsRecorded() throws Exception {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+        when(rset.next()).thenReturn(true, true, false);
+        when(rset.getString(anyString())).thenReturn("Name");
+        Country country = new Country(con);
+
+        Path file = Files.createTempFile("report-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"ReportQuery", "ReportRender", "ReportWrite"}) {
+                recording.enable("com.napier.sem." + name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            ArrayList<Country> rows = country.getCountriesByRegion("Caribbean");
+            PrintStream console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                country.printCountries(rows);
+            } finally {
+                System.setOut(console);
+            }
+            country.outputCountries(rows, "events-test.md");
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent query = only(events, "com.napier.sem.ReportQuery");
+            assertEquals("Country.getCountriesByRegion", query.getString("report"));
+            assertEquals("Caribbean", query.getString("params"));
+            assertEquals(2, query.getLong("rows"));
+            RecordedEvent render = only(events, "com.napier.sem.ReportRender");
+            assertEquals("Country.getCountriesByRegion", render.getString("report"));
+            assertTrue(render.getLong("bytes") > 0);
+            RecordedEvent write = only(events, "com.napier.sem.ReportWrite");
+            assertEquals(2, write.getLong("rows"));
+            assertTrue(write.getLong("bytes") > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testNothingCommittedWithoutRecording() {
+        ReportEvents.Query event = new ReportEvents.Query();
+        event.begin();
+
+        ReportEvents.commit(event, "Country.getCountriesByRegion", new Object[]{"Caribbean"}, 1, 0);
+
+        // Fields are only filled in for a recording that wants the event
+        assertNull(event.report);
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        RecordedEvent found = null;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals(name)) {
+                assertNull(found, "More than one " + name);
+                found = e;
+            }
+        }
+        assertNotNull(found, "No " + name);
+        return found;
+    }
+
+    private static final class CountingStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
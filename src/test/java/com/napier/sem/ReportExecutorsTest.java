@@ -0,0 +1,92 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for the report executors and their fallback on runtimes without virtual threads.
+ */
+class ReportExecutorsTest {
+
+    @Test
+    void testVirtualThreadsFollowRuntimeVersion() {
+        assertEquals(Runtime.version().feature() >= 21, ReportExecutors.virtualThreadsAvailable());
+        assertEquals(ReportExecutors.virtualThreadsAvailable(), ReportExecutors.newVirtualThreadPerTaskExecutor() != null);
+    }
+
+    @Test
+    void testPlatformExecutorNamesItsThreads() throws Exception {
+        ExecutorService executor = ReportExecutors.forReports("reports", false, 2);
+        try {
+            String name = executor.submit(() -> Thread.currentThread().getName()).get();
+            boolean daemon = executor.submit(() -> Thread.currentThread().isDaemon()).get();
+
+            assertTrue(name.startsWith("reports-"));
+            assertTrue(daemon);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testVirtualRequestAlwaysGivesAnExecutor() throws Exception {
+        ExecutorService executor = ReportExecutors.forReports("reports", true, 2);
+        try {
+            assertEquals(42, executor.submit(() -> 42).get());
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    // On Java 17 this runs on the platform fallback; the virtual path is covered by the test below
+    @Test
+    void testThousandsOfBlockingTasksOnVirtualOrFallbackExecutor() throws Exception {
+        ExecutorService executor = ReportExecutors.forReports("reports", true, 8);
+        try {
+            assertEquals(2000, runBlockingTasks(executor, 2000));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testThousandsOfBlockingTasksOnVirtualThreads() throws Exception {
+        assumeTrue(ReportExecutors.virtualThreadsAvailable(), "virtual threads need Java 21 or later");
+        ExecutorService executor = ReportExecutors.newVirtualThreadPerTaskExecutor();
+        try {
+            Method isVirtual = Thread.class.getMethod("isVirtual");
+            assertEquals(Boolean.TRUE, executor.submit(() -> isVirtual.invoke(Thread.currentThread())).get());
+            assertEquals(2000, runBlockingTasks(executor, 2000));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    // Tasks that block briefly, like a report waiting on its query, without touching disk
+    private static int runBlockingTasks(ExecutorService executor, int tasks) throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            futures.add(executor.submit(() -> {
+                Thread.sleep(1);
+                return 1;
+            }));
+        }
+        int done = 0;
+        for (Future<Integer> f : futures) {
+            done += f.get(30, TimeUnit.SECONDS);
+        }
+        return done;
+    }
+}
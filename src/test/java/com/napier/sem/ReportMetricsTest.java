@@ -0,0 +1,130 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the per-report latency, row, byte and failure metrics.
+ */
+class ReportMetricsTest {
+
+    @AfterEach
+    void tearDown() {
+        ReportMetrics.clear();
+    }
+
+    @Test
+    void testTimeRecordsLatencyAndRows() {
+        assertNull(ReportMetrics.get("City.getCities"));
+
+        ReportMetrics.time("City.getCities", new Object[0], () -> new ArrayList<>(List.of(1, 2, 3)));
+        ReportMetrics.time("City.getCities", new Object[0], () -> new ArrayList<>(List.of(4)));
+
+        ReportMetrics.Stats stats = ReportMetrics.get("City.getCities");
+        assertEquals(2, stats.getCalls());
+        assertEquals(4, stats.getRows());
+        assertEquals(0, stats.getFailures());
+        assertTrue(stats.getLatency().getMaxNanos() >= 0);
+    }
+
+    @Test
+    void testBytesGoToLastReportOnThread() {
+        ReportMetrics.recordBytes(100);
+        assertTrue(ReportMetrics.all().isEmpty());
+
+        ReportMetrics.recordQuery("Language.getLanguages", new Object[0], 1000, 5);
+        ReportMetrics.recordBytes(120);
+        ReportMetrics.recordBytes(30);
+        ReportMetrics.beginReport();
+        ReportMetrics.recordBytes(999);
+
+        assertEquals(150, ReportMetrics.get("Language.getLanguages").getBytes());
+    }
+
+    @Test
+    void testFailedQueryIsCounted() throws SQLException {
+        Connection con = mock(Connection.class);
+        when(con.prepareStatement(anyString())).thenThrow(new SQLException("gone away"));
+
+        assertTrue(new Capital(con).getCapitals().isEmpty());
+        assertTrue(new Population(con).populationCity("Edinburgh").isEmpty());
+
+        assertEquals(1, ReportMetrics.get("Capital.getCapitals").getFailures());
+        assertEquals(1, ReportMetrics.get("Capital.getCapitals").getCalls());
+        assertEquals(1, ReportMetrics.get("Population.populationCity").getFailures());
+        assertEquals("Population.populationCity", ReportMetrics.failedReport());
+        ReportMetrics.beginReport();
+        assertNull(ReportMetrics.failedReport());
+    }
+
+    @Test
+    void testReportAndRenderAreRecorded() throws SQLException {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+        when(rset.next()).thenReturn(true, true, false);
+        when(rset.getString(anyString())).thenReturn("Name");
+        Country country = new Country(con);
+
+        country.outputCountries(country.getCountriesByRegion("Caribbean"), "metrics-test.md");
+
+        ReportMetrics.Stats stats = ReportMetrics.get("Country.getCountriesByRegion");
+        assertEquals(1, stats.getCalls());
+        assertEquals(2, stats.getRows());
+        assertTrue(stats.getBytes() > 0);
+    }
+
+    @Test
+    void testTopNReportsAreRecordedUnderTheirOwnIds() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(5, 1).writeSql(sql);
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.runScript(new StringReader(sql.toString()));
+            City city = new City(db);
+            city.setTopN(new TopN());
+
+            city.getTopCitiesContinent("Asia", 3);
+            ReportMetrics.beginReport();
+            city.outputCities(city.getTopCitiesContinent("Asia", 5), "metrics-test.md");
+
+            ReportMetrics.Stats top = ReportMetrics.get("City.getTopCitiesContinent");
+            assertEquals(2, top.getCalls());
+            assertEquals(8, top.getRows());
+            assertTrue(top.getBytes() > 0);
+            assertArrayEquals(new Object[]{"Asia", 5}, ReportMetrics.lastParams());
+            // Both answered from one load of the full ordering, which renders nothing itself
+            assertEquals(1, ReportMetrics.get("City.getCitiesContinent").getCalls());
+            assertEquals(0, ReportMetrics.get("City.getCitiesContinent").getBytes());
+        }
+    }
+
+    @Test
+    void testPrometheusText() {
+        ReportMetrics.recordQuery("Population.populationWorld", new Object[0], 2_000_000, 1);
+        ReportMetrics.recordFailure("Population.populationWorld");
+
+        String text = ReportMetrics.prometheus();
+
+        assertTrue(text.contains("report_latency_seconds_count{report=\"Population.populationWorld\"} 1\n"));
+        assertTrue(text.contains("report_latency_seconds{report=\"Population.populationWorld\",quantile=\"0.99\"}"));
+        assertTrue(text.contains("report_rows_total{report=\"Population.populationWorld\"} 1\n"));
+        assertTrue(text.contains("report_failures_total{report=\"Population.populationWorld\"} 1\n"));
+        assertTrue(text.contains("# TYPE report_bytes_total counter\n"));
+    }
+}
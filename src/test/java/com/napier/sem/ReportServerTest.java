@@ -0,0 +1,165 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the HTTP report endpoints, served from a generated in-memory world.
+ */
+class ReportServerTest {
+
+    private static ReportServer server;
+    private static WorldSnapshot snapshot;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws IOException {
+        snapshot = new WorldGenerator(42, 1).snapshot();
+        server = new ReportServer(snapshot, 0, 4, 16);
+        server.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.stop();
+    }
+
+    @Test
+    void testTopCountriesAsJson() throws Exception {
+        HttpResponse<String> response = get("/countries?continent=Asia&top=3");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        String first = new Country(snapshot).getTopCountriesInContinent("Asia", 1).get(0).code;
+        assertTrue(response.body().startsWith("[\n{\"code\":\"" + first + "\","));
+        assertEquals(3, response.body().split("\"code\":").length - 1);
+    }
+
+    @Test
+    void testMarkdownByParameterOrAcceptHeader() throws Exception {
+        HttpResponse<String> byParam = get("/population?format=markdown");
+        HttpResponse<String> byHeader = client.send(HttpRequest.newBuilder(uri("/languages"))
+                .header("Accept", "text/markdown").build(), HttpResponse.BodyHandlers.ofString());
+
+        assertTrue(byParam.body().startsWith("| name | population |\r\n| --- | --- |\r\n"));
+        assertTrue(byHeader.body().startsWith("| language | population | percentage |"));
+    }
+
+    @Test
+    void testLargeResponsesAreGzipped() throws Exception {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri("/cities"))
+                .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(""));
+        String body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(snapshot.getCityCount(), body.split("\"district\":").length - 1);
+    }
+
+    @Test
+    void testEveryReportFamilyAnswers() throws Exception {
+        String[] paths = {"/countries", "/countries?region=Caribbean&top=2", "/cities?top=5",
+                "/cities?continent=Europe", "/capitals?region=Caribbean", "/capitals?top=5",
+                "/population/breakdown?by=continent", "/population/breakdown?by=country",
+                "/population?continent=Asia", "/languages"};
+        for (String path : paths) {
+            HttpResponse<String> response = get(path);
+            assertEquals(200, response.statusCode(), path);
+            assertTrue(response.body().contains("\"population\":"), path);
+        }
+    }
+
+    @Test
+    void testBadRequests() throws Exception {
+        assertEquals(400, get("/countries?top=abc").statusCode());
+        assertEquals(400, get("/cities?continent=Asia&region=Caribbean").statusCode());
+        assertEquals(400, get("/population/breakdown?by=planet").statusCode());
+        assertEquals(404, get("/countries/all").statusCode());
+        HttpResponse<String> post = client.send(HttpRequest.newBuilder(uri("/countries"))
+                .POST(HttpRequest.BodyPublishers.ofString("x")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, post.statusCode());
+    }
+
+    @Test
+    void testMetricsPerEndpoint() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            get("/capitals?top=3");
+        }
+
+        HttpResponse<String> metrics = get("/metrics");
+
+        assertTrue(server.getLatency("/capitals").getCount() >= 5);
+        assertTrue(metrics.body().contains("\"/capitals\":{\"count\":"));
+        assertTrue(metrics.body().contains("\"p99Ms\":"));
+    }
+
+    @Test
+    void testMetricsSubPathsAreNotFound() throws Exception {
+        assertEquals(404, get("/metrics/anything").statusCode());
+        assertEquals(404, get("/metrics/reports/x").statusCode());
+        assertEquals(200, get("/metrics").statusCode());
+    }
+
+    @Test
+    void testFailedQueryIsServerError() throws Exception {
+        ReportServer broken = new ReportServer(() -> {
+            throw new SQLException("Communications link failure");
+        }, 0, 1, 1);
+        broken.start();
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + broken.getPort() + "/countries?region=Caribbean")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(500, response.statusCode());
+            assertEquals("Report Country.getCountriesByRegion failed\n", response.body());
+        } finally {
+            broken.stop();
+            ReportMetrics.clear();
+        }
+    }
+
+    @Test
+    void testReportMetricsScrape() throws Exception {
+        ReportMetrics.recordQuery("Country.getCountriesByRegion", new Object[0], 1_000_000, 7);
+        try {
+            HttpResponse<String> scrape = get("/metrics/reports");
+
+            assertEquals(200, scrape.statusCode());
+            assertTrue(scrape.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            assertTrue(scrape.body().contains("report_rows_total{report=\"Country.getCountriesByRegion\"} 7\n"));
+        } finally {
+            ReportMetrics.clear();
+        }
+    }
+
+    @Test
+    void testParseQuery() {
+        assertEquals("South America", ReportServer.parseQuery("Region=South+America&top=5").get("region"));
+        assertEquals("", ReportServer.parseQuery("flag").get("flag"));
+        assertTrue(ReportServer.parseQuery(null).isEmpty());
+    }
+
+    private static HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+}
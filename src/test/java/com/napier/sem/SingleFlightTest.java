@@ -0,0 +1,155 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SingleFlight request coalescing.
+ */
+class SingleFlightTest {
+
+    @Test
+    void testConcurrentCallersShareOneExecution() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<ArrayList<Integer>>> results = new ArrayList<>();
+            results.add(pool.submit(() -> flight.get("Population.continentPopulation", new Object[0], () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return new ArrayList<>(Arrays.asList(1, 2, 3));
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(pool.submit(() -> flight.get("Population.continentPopulation", new Object[0], () -> {
+                    loads.incrementAndGet();
+                    return new ArrayList<>();
+                })));
+            }
+            // Wait until every follower is parked on the leader's execution
+            while (flight.getCollapsedCount() < callers - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (Future<ArrayList<Integer>> f : results) {
+                assertEquals(Arrays.asList(1, 2, 3), f.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getExecutions());
+        assertEquals(callers - 1, flight.getCollapsedCount());
+        assertEquals(0, flight.getInFlightCount());
+    }
+
+    @Test
+    void testFailedQueryIsAFailureForEveryCaller() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // As the report classes do: record the failure and answer with no rows
+            Future<String> leader = pool.submit(() -> {
+                ReportMetrics.beginReport();
+                flight.get("Country.getCountriesByRegion", new Object[]{"Caribbean"}, () -> {
+                    started.countDown();
+                    await(release);
+                    ReportMetrics.recordFailure("Country.getCountriesByRegion");
+                    return new ArrayList<Integer>();
+                });
+                return ReportMetrics.failedReport();
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> follower = pool.submit(() -> {
+                ReportMetrics.beginReport();
+                assertTrue(flight.get("Country.getCountriesByRegion", new Object[]{"Caribbean"},
+                        () -> new ArrayList<Integer>(Arrays.asList(1))).isEmpty());
+                return ReportMetrics.failedReport();
+            });
+            while (flight.getCollapsedCount() < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertEquals("Country.getCountriesByRegion", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("Country.getCountriesByRegion", follower.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+            ReportMetrics.clear();
+        }
+        assertEquals(0, flight.getInFlightCount());
+    }
+
+    @Test
+    void testSequentialCallsRunAgain() {
+        SingleFlight flight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+
+        flight.get("Language.getLanguages", new Object[0], () -> load(loads));
+        flight.get("Language.getLanguages", new Object[0], () -> load(loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, flight.getCollapsedCount());
+    }
+
+    @Test
+    void testFailureIsRethrownAndNotRemembered() {
+        SingleFlight flight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> flight.get("a", new Object[0], () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, flight.get("a", new Object[0], () -> load(loads)).size());
+        assertEquals(0, flight.getInFlightCount());
+    }
+
+    @Test
+    void testExecutionGoesThroughNextCache() {
+        LruReportCache lru = new LruReportCache(10, 0);
+        SingleFlight flight = new SingleFlight(lru);
+        AtomicInteger loads = new AtomicInteger();
+
+        flight.get("a", new Object[]{"Asia"}, () -> load(loads));
+        flight.get("a", new Object[]{"Asia"}, () -> load(loads));
+        flight.invalidateAll();
+
+        assertEquals(1, loads.get());
+        assertEquals(1, lru.getHits());
+        assertEquals(0, lru.size());
+    }
+
+    private static ArrayList<Integer> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new ArrayList<>(Arrays.asList(1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
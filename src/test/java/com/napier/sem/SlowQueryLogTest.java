@@ -0,0 +1,130 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Unit tests for the slow query log, its EXPLAIN capture and rotation.
+ */
+class SlowQueryLogTest {
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void tearDown() {
+        SlowQueryLog.set(SlowQueryLog.fromSystemProperties());
+    }
+
+    private static EmbeddedDatabase world() throws SQLException, IOException {
+        StringWriter sql = new StringWriter();
+        new WorldGenerator(5, 1).writeSql(sql);
+        EmbeddedDatabase db = new EmbeddedDatabase();
+        db.runScript(new StringReader(sql.toString()));
+        return db;
+    }
+
+    @Test
+    void testReportOverThresholdIsLogged() throws SQLException, IOException {
+        File file = new File(dir, "slow.log");
+        SlowQueryLog.set(new SlowQueryLog(0, file, 1024 * 1024, 2));
+        try (EmbeddedDatabase db = world()) {
+            int rows = new Country(db).getCountriesByContinent("Europe").size();
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(1, lines.size());
+            String line = lines.get(0);
+            assertTrue(line.startsWith("{\"time\":\""), line);
+            assertTrue(line.contains("\"report\":\"Country.getCountriesByContinent\""), line);
+            assertTrue(line.contains("\"rows\":" + rows + ","), line);
+            assertTrue(line.contains("\"params\":[\"Europe\"]"), line);
+            assertTrue(line.contains("\"sql\":\"SELECT"), line);
+            // H2 explains as the optimised query under a PLAN column
+            assertTrue(line.contains("\"plan\":[\"PLAN="), line);
+            assertFalse(line.contains("EXPLAIN failed"), line);
+        }
+    }
+
+    @Test
+    void testUnboundQueriesAndStreamsAreLogged() throws SQLException, IOException {
+        File file = new File(dir, "slow.log");
+        SlowQueryLog.set(new SlowQueryLog(0, file, 1024 * 1024, 2));
+        try (EmbeddedDatabase db = world()) {
+            new Population(db).populationWorld();
+            QueryHelper.forEachRow(db, "Test.stream", "SELECT Name FROM city WHERE Population > ?",
+                    new Object[]{1000}, rset -> { });
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).contains("\"report\":\"Population.populationWorld\""), lines.get(0));
+            assertTrue(lines.get(0).contains("\"params\":[]"), lines.get(0));
+            assertTrue(lines.get(1).contains("\"report\":\"Test.stream\""), lines.get(1));
+            assertTrue(lines.get(1).contains("\"params\":[1000]"), lines.get(1));
+        }
+    }
+
+    @Test
+    void testUnderThresholdOrDisabledIsNotLogged() {
+        File file = new File(dir, "slow.log");
+        Connection con = mock(Connection.class);
+
+        new SlowQueryLog(1000, file, 1024, 1).check(con, "Test.fast", "SELECT 1", null, 999_999_999, 1);
+        SlowQueryLog off = new SlowQueryLog(-1, file, 1024, 1);
+        off.check(con, "Test.off", "SELECT 1", null, Long.MAX_VALUE, 1);
+
+        assertFalse(off.isEnabled());
+        assertFalse(file.exists());
+        verifyNoInteractions(con);
+    }
+
+    @Test
+    void testExplainFailureIsRecordedInPlan() throws SQLException {
+        try (EmbeddedDatabase db = new EmbeddedDatabase(); Connection con = db.getConnection()) {
+            List<String> plan = SlowQueryLog.explain(con, "SELECT * FROM missing", null);
+
+            assertEquals(1, plan.size());
+            assertTrue(plan.get(0).startsWith("EXPLAIN failed: "), plan.get(0));
+        }
+    }
+
+    @Test
+    void testLogRotatesAndKeepsNewestFiles() throws SQLException, IOException {
+        File file = new File(dir, "slow.log");
+        SlowQueryLog log = new SlowQueryLog(0, file, 300, 2);
+        try (EmbeddedDatabase db = new EmbeddedDatabase(); Connection con = db.getConnection()) {
+            for (int i = 0; i < 10; i++) {
+                log.check(con, "Test.query" + i, "SELECT " + i, null, 1_000_000, 1);
+            }
+        }
+
+        assertTrue(file.exists());
+        assertTrue(log.rotated(1).exists());
+        assertTrue(log.rotated(2).exists());
+        assertFalse(log.rotated(3).exists());
+        assertTrue(file.length() <= 300);
+        String newest = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        assertTrue(newest.contains("Test.query9"), newest);
+        assertFalse(Files.readString(log.rotated(2).toPath(), StandardCharsets.UTF_8).contains("Test.query0"));
+    }
+
+    @Test
+    void testBadSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SlowQueryLog(0, new File(dir, "x"), 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new SlowQueryLog(0, new File(dir, "x"), 1, -1));
+    }
+}
@@ -0,0 +1,78 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SymbolTable.
+ */
+class SymbolTableTest {
+
+    @Test
+    void testInternReturnsSameIdForSameValue() {
+        SymbolTable symbols = new SymbolTable();
+        int asia = symbols.intern("Asia");
+        int europe = symbols.intern("Europe");
+
+        assertNotEquals(asia, europe);
+        assertEquals(asia, symbols.intern("Asia"));
+        assertEquals(2, symbols.size());
+        assertEquals("Europe", symbols.name(europe));
+    }
+
+    @Test
+    void testLookupIgnoresCaseAndKeepsFirstSpelling() {
+        SymbolTable symbols = new SymbolTable();
+        int id = symbols.intern("North America");
+
+        assertEquals(id, symbols.lookup("north america"));
+        assertEquals(id, symbols.intern("NORTH AMERICA"));
+        assertEquals("North America", symbols.name(id));
+    }
+
+    @Test
+    void testLookupOfUnknownValue() {
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("Asia");
+
+        assertEquals(-1, symbols.lookup("Atlantis"));
+        assertEquals(-1, symbols.lookup(null));
+    }
+
+    @Test
+    void testGrowsPastInitialCapacity() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, symbols.intern("District" + i));
+        }
+        assertEquals("District99", symbols.name(99));
+    }
+
+    @Test
+    void testConcurrentInternHandsOutOneIdPerValue() throws Exception {
+        SymbolTable symbols = new SymbolTable();
+        Thread[] threads = new Thread[8];
+        int[][] seen = new int[threads.length][500];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    seen[thread][i] = symbols.intern("Value" + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(500, symbols.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("Value" + i, symbols.name(seen[0][i]));
+            for (int[] ids : seen) {
+                assertEquals(seen[0][i], ids[i]);
+            }
+        }
+    }
+}
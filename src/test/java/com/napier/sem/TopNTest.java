@@ -0,0 +1,152 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the TopN engine.
+ */
+class TopNTest {
+
+    @Test
+    void testAnyNIsAPrefixOfOneLoad() {
+        TopN topN = new TopN();
+        AtomicInteger loads = new AtomicInteger();
+
+        ArrayList<Integer> top2 = topN.top("cities.continent", "Asia", 2, () -> load(loads, 9, 7, 5, 3));
+        ArrayList<Integer> top3 = topN.top("cities.continent", "asia", 3, () -> load(loads, 9, 7, 5, 3));
+        ArrayList<Integer> top10 = topN.top("cities.continent", "ASIA", 10, () -> load(loads, 9, 7, 5, 3));
+
+        assertEquals(Arrays.asList(9, 7), top2);
+        assertEquals(Arrays.asList(9, 7, 5), top3);
+        assertEquals(4, top10.size());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testKeysAndOrderingsAreSeparate() {
+        TopN topN = new TopN();
+        AtomicInteger loads = new AtomicInteger();
+
+        topN.top("cities.continent", "Asia", 1, () -> load(loads, 1));
+        topN.top("cities.continent", "Europe", 1, () -> load(loads, 2));
+        topN.top("cities.region", "Asia", 1, () -> load(loads, 3));
+
+        topN.top("cities.continent", "Europe", 2, () -> load(loads, 2));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testEmptyResultIsNotKept() {
+        TopN topN = new TopN();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertTrue(topN.top("countries.world", null, 5, () -> load(loads)).isEmpty());
+        topN.top("countries.world", null, 5, () -> load(loads, 1));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testNegativeNAndClear() {
+        TopN topN = new TopN();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertTrue(topN.top("countries.world", null, -1, () -> load(loads, 1, 2)).isEmpty());
+        topN.clear();
+        topN.top("countries.world", null, 1, () -> load(loads, 1, 2));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testOrderingExpiresWithCache() {
+        long[] now = {0};
+        ReportCache cache = new LruReportCache(16, 1000, () -> now[0]);
+        TopN topN = new TopN(cache);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(Arrays.asList(9), topN.top("cities.world", null, 1, () -> load(loads, 9, 7)));
+        now[0] = 999;
+        assertEquals(Arrays.asList(9), topN.top("cities.world", null, 1, () -> load(loads, 8, 6)));
+        now[0] = 1000;
+        assertEquals(Arrays.asList(8), topN.top("cities.world", null, 1, () -> load(loads, 8, 6)));
+        cache.invalidateAll();
+        assertEquals(Arrays.asList(5), topN.top("cities.world", null, 1, () -> load(loads, 5)));
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testCountryTopNChangesAfterReportExpires() throws SQLException {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+        when(rset.next()).thenReturn(true, true, false, true, true, false);
+        when(rset.getString(anyString())).thenReturn("x");
+        when(rset.getString("Code")).thenReturn("CHN", "IND", "IND", "CHN");
+        long[] now = {0};
+        ReportCache cache = new LruReportCache(16, 1000, () -> now[0]);
+        Country country = new Country(con);
+        country.setCache(cache);
+        country.setTopN(new TopN(cache));
+
+        assertEquals("CHN", country.getTopCountriesInWorld(1).get(0).code);
+        assertEquals("CHN", country.getTopCountriesInWorld(1).get(0).code);
+        // Both the full report and the ordering cut from it are reloaded once they expire
+        now[0] = 1000;
+        assertEquals("IND", country.getTopCountriesInWorld(1).get(0).code);
+        verify(con, times(2)).prepareStatement(anyString());
+    }
+
+    @Test
+    void testSelectKeepsLargestInOrder() {
+        int[] population = {10, 50, 20, 50, 5, 40};
+        int[] rows = {0, 1, 2, 3, 4, 5};
+
+        assertArrayEquals(new int[]{1, 3, 5}, TopN.select(rows, row -> true, population, 3));
+        assertArrayEquals(new int[]{5, 2}, TopN.select(rows, row -> row % 2 == 0 || row == 5, population, 2));
+        assertArrayEquals(new int[]{1, 3, 5, 2, 0, 4}, TopN.select(rows, row -> true, population, 100));
+        assertEquals(0, TopN.select(rows, row -> true, population, 0).length);
+    }
+
+    @Test
+    void testCountryTopNQueriesDatabaseOnce() throws SQLException {
+        Connection con = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rset = mock(ResultSet.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rset);
+        when(rset.next()).thenReturn(true, true, true, false);
+        when(rset.getString("Code")).thenReturn("CHN", "IND", "USA");
+        when(rset.getString(anyString())).thenReturn("x");
+        when(rset.getInt("Population")).thenReturn(3, 2, 1);
+
+        Country country = new Country(con);
+        country.setTopN(new TopN());
+
+        assertEquals(1, country.getTopCountriesInWorld(1).size());
+        assertEquals(2, country.getTopCountriesInWorld(2).size());
+        assertEquals(3, country.getTopCountriesInWorld(5).size());
+        verify(con, times(1)).prepareStatement(anyString());
+        verify(stmt, never()).setInt(anyInt(), anyInt());
+    }
+
+    private static ArrayList<Integer> load(AtomicInteger loads, Integer... values) {
+        loads.incrementAndGet();
+        return new ArrayList<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,121 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the synthetic world generator.
+ */
+class WorldGeneratorTest {
+
+    @Test
+    void testSameSeedGivesSameRows() throws IOException {
+        assertEquals(sql(7, 1), sql(7, 1));
+        assertNotEquals(sql(7, 1), sql(8, 1));
+    }
+
+    @Test
+    void testScaleMultipliesCities() {
+        WorldSnapshot one = new WorldGenerator(42, 1).snapshot();
+        WorldSnapshot ten = new WorldGenerator(42, 10).snapshot();
+
+        assertEquals(WorldGenerator.BASE_COUNTRIES, one.getCountryCount());
+        assertEquals(WorldGenerator.BASE_COUNTRIES * 10, ten.getCountryCount());
+        assertEquals(WorldGenerator.BASE_CITIES, one.getCityCount(), WorldGenerator.BASE_CITIES * 0.1);
+        assertEquals(WorldGenerator.BASE_CITIES * 10, ten.getCityCount(), WorldGenerator.BASE_CITIES);
+    }
+
+    @Test
+    void testCountryCodesStopAtThreeLetters() {
+        assertEquals(17576, new WorldGenerator(1, 10000).getCountryCount());
+        assertEquals("AAA", WorldGenerator.code(0));
+        assertEquals("ZZZ", WorldGenerator.code(17575));
+    }
+
+    @Test
+    void testGeneratedWorldAnswersReports() {
+        WorldSnapshot snapshot = new WorldGenerator(42, 1).snapshot();
+
+        ArrayList<Country> countries = new Country(snapshot).getAllCountriesByPopulation();
+        ArrayList<City> cities = new City(snapshot).getCities();
+        assertFalse(countries.isEmpty());
+        assertTrue(cities.get(0).population >= cities.get(cities.size() - 1).population);
+        // Every country except the uninhabited ones has a capital
+        assertEquals(countries.size(), new Capital(snapshot).getCapitals().size());
+        assertTrue(countries.size() > WorldGenerator.BASE_COUNTRIES - 20);
+        // Antarctica has no cities but is still one of the seven continents
+        assertEquals(7, new Population(snapshot).continentPopulation().size());
+        assertFalse(new Language(snapshot).getLanguages().isEmpty());
+    }
+
+    @Test
+    void testLanguagesAreUniquePerCountryAndSumToAtMostHundred() throws IOException {
+        ArrayList<String> rows = new ArrayList<>();
+        new WorldGenerator(3, 1).generate(new WorldGenerator.Sink() {
+            @Override
+            public void country(String code, String name, String continent, String region, int population, int capitalId) {
+            }
+
+            @Override
+            public void city(int id, String name, String countryCode, String district, int population) {
+                assertTrue(name.length() <= 35 && district.length() <= 20);
+            }
+
+            @Override
+            public void language(String countryCode, String language, boolean official, double percentage) {
+                rows.add(countryCode + "|" + language + "|" + percentage);
+            }
+        });
+        HashSet<String> keys = new HashSet<>();
+        HashMap<String, Double> totals = new HashMap<>();
+        for (String row : rows) {
+            String[] parts = row.split("\\|");
+            assertTrue(keys.add(parts[0] + parts[1]));
+            totals.merge(parts[0], Double.parseDouble(parts[2]), Double::sum);
+        }
+        for (double total : totals.values()) {
+            assertTrue(total <= 100.05);
+        }
+    }
+
+    @Test
+    void testSqlUsesBatchedInserts() throws IOException {
+        String sql = sql(42, 1);
+
+        assertTrue(sql.startsWith("DROP DATABASE IF EXISTS `world`;"));
+        assertTrue(sql.contains("CREATE TABLE `countrylanguage`"));
+        assertTrue(sql.contains("INSERT INTO `city` VALUES\n(1,"));
+        // 4,000 cities need a handful of statements, not one per row
+        assertTrue(sql.split("INSERT INTO `city`").length < 10);
+        assertTrue(sql.trim().endsWith("SET FOREIGN_KEY_CHECKS=1;"));
+    }
+
+    @Test
+    void testCsvFilesHaveHeaderAndRows(@TempDir File dir) throws IOException {
+        new WorldGenerator(42, 1).writeCsv(dir);
+
+        List<String> countries = Files.readAllLines(new File(dir, "country.csv").toPath());
+        List<String> cities = Files.readAllLines(new File(dir, "city.csv").toPath());
+        assertEquals("Code,Name,Continent,Region,Population,Capital", countries.get(0));
+        assertEquals(WorldGenerator.BASE_COUNTRIES + 1, countries.size());
+        assertEquals("ID,Name,CountryCode,District,Population", cities.get(0));
+        assertTrue(new File(dir, "countrylanguage.csv").length() > 0);
+    }
+
+    private static String sql(long seed, int scale) throws IOException {
+        StringWriter out = new StringWriter();
+        new WorldGenerator(seed, scale).writeSql(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.napier.sem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WorldSnapshot built from a small in-process dataset.
+ */
+class WorldSnapshotTest {
+
+    private WorldSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new WorldSnapshot.Loader()
+                .addCountry("GBR", "United Kingdom", "Europe", "British Islands", 59623400, 456)
+                .addCountry("FRA", "France", "Europe", "Western Europe", 59225700, 2974)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 126714000, 1532)
+                .addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 0, 0)
+                .addCity(456, "London", "GBR", "England", 7285000)
+                .addCity(457, "Birmingham", "GBR", "England", 1013000)
+                .addCity(2974, "Paris", "FRA", "Île-de-France", 2125246)
+                .addCity(2975, "Marseille", "FRA", "Provence-Alpes-Côte", 798430)
+                .addCity(1532, "Tokyo", "JPN", "Tokyo-to", 7980230)
+                .addCity(1533, "Jokohama [Yokohama]", "JPN", "Kanagawa", 3339594)
+                .addLanguage("GBR", "English", true, 97.3)
+                .addLanguage("FRA", "French", true, 93.6)
+                .addLanguage("FRA", "Arabic", false, 2.5)
+                .addLanguage("JPN", "Japanese", true, 99.1)
+                .addLanguage("JPN", "English", false, 0.1)
+                .build();
+    }
+
+    @Test
+    void testCountriesWithCapitalOrderedByPopulation() {
+        ArrayList<Country> countries = new Country(snapshot).getAllCountriesByPopulation();
+
+        assertEquals(3, countries.size());
+        assertEquals("JPN", countries.get(0).code);
+        assertEquals("Tokyo", countries.get(0).capital);
+        assertEquals("GBR", countries.get(1).code);
+        assertEquals("FRA", countries.get(2).code);
+    }
+
+    @Test
+    void testCountryFiltersAndLimits() {
+        Country country = new Country(snapshot);
+
+        assertEquals(2, country.getCountriesByContinent("europe").size());
+        assertEquals("FRA", country.getCountriesByRegion("Western Europe").get(0).code);
+        assertEquals(1, country.getTopCountriesInWorld(1).size());
+        assertEquals("GBR", country.getTopCountriesInContinent("Europe", 1).get(0).code);
+        assertTrue(country.getTopCountriesInRegion("Nowhere", 5).isEmpty());
+    }
+
+    @Test
+    void testCityReports() {
+        City city = new City(snapshot);
+
+        ArrayList<City> all = city.getCities();
+        assertEquals(6, all.size());
+        assertEquals("Tokyo", all.get(0).name);
+        assertEquals("Japan", all.get(0).country);
+        assertEquals(2, city.getCitiesCountry("France").size());
+        assertEquals("Birmingham", city.getCitiesDistrict("England").get(1).name);
+        assertEquals(4, city.getCitiesContinent("Europe").size());
+        assertEquals("Paris", city.getTopCitiesRegion("Western Europe", 1).get(0).name);
+        assertEquals(2, city.getCitiesPopulation(2).size());
+    }
+
+    @Test
+    void testCapitalReports() {
+        Capital capital = new Capital(snapshot);
+
+        ArrayList<Capital> capitals = capital.getCapitals();
+        assertEquals(3, capitals.size());
+        assertEquals("Tokyo", capitals.get(0).name);
+        assertEquals("London", capital.topCapitalsContinent("Europe", 1).get(0).name);
+        assertEquals(1, capital.getCapitalsRegion("British Islands").size());
+    }
+
+    @Test
+    void testPopulationBreakdownCountsEachCountryOnce() {
+        ArrayList<Population> continents = new Population(snapshot).continentPopulation();
+
+        // Antarctica has no cities but is still listed, with no share either way
+        assertEquals(3, continents.size());
+        assertEquals("Asia", continents.get(0).getName());
+        Population europe = continents.get(1);
+        assertEquals("Europe", europe.getName());
+        assertEquals(59623400L + 59225700, europe.getTotalPopulation());
+        assertEquals(7285000L + 1013000 + 2125246 + 798430, europe.getCityPopulation());
+        assertEquals(europe.getTotalPopulation() - europe.getCityPopulation(), europe.getNoCityPopulation());
+        assertEquals(9.4420, europe.getCityPercentage(), 0.00001);
+        assertEquals("Antarctica", continents.get(2).getName());
+        assertEquals(0, continents.get(2).getCityPercentage());
+    }
+
+    @Test
+    void testSinglePopulationReports() {
+        Population population = new Population(snapshot);
+
+        assertEquals(59623400L + 59225700 + 126714000, population.populationWorld().get(0).getTotalPopulation());
+        assertEquals(59623400L + 59225700, population.populationContinent("Europe").get(0).getTotalPopulation());
+        assertTrue(population.populationRegion("Nowhere").isEmpty());
+        assertEquals(126714000L, population.populationCountry("Japan").get(0).getTotalPopulation());
+        assertEquals(2, population.populationDistrict("England").size());
+        assertEquals(2125246L, population.populationCity("Paris").get(0).getTotalPopulation());
+    }
+
+    @Test
+    void testLanguagesUsePerCountryRounding() {
+        ArrayList<Language> languages = new Language(snapshot).getLanguages();
+
+        assertEquals(2, languages.size());
+        Language english = languages.get(0);
+        assertEquals("English", english.getLanguage());
+        // ROUND(59623400 * 97.3 / 100) + ROUND(126714000 * 0.1 / 100)
+        assertEquals(58013568L + 126714, english.getPopulation());
+        assertEquals(23.68, english.getPercentage(), 0.001);
+        assertEquals("Arabic", languages.get(1).getLanguage());
+    }
+
+    @Test
+    void testLoaderSnapshotCannotRefresh() {
+        assertThrows(IllegalStateException.class, () -> snapshot.refresh());
+    }
+
+    @Test
+    void testSharedSymbolTableKeepsIdsAcrossLoads() {
+        SymbolTable symbols = new SymbolTable();
+        new WorldSnapshot.Loader(symbols).addCountry("GBR", "United Kingdom", "Europe", "British Islands", 1, 0);
+        int europe = symbols.lookup("Europe");
+        WorldSnapshot second = new WorldSnapshot.Loader(symbols)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 2, 1)
+                .addCountry("FRA", "France", "Europe", "Western Europe", 3, 2)
+                .addCity(1, "Tokyo", "JPN", "Tokyo-to", 5)
+                .addCity(2, "Paris", "FRA", "Île-de-France", 4)
+                .build();
+
+        assertEquals(europe, symbols.lookup("Europe"));
+        assertEquals("Paris", new City(second).getCitiesContinent("Europe").get(0).name);
+        assertEquals(1, new Capital(second).getCapitalsContinent("asia").size());
+        assertTrue(new City(second).getCitiesRegion("British Islands").isEmpty());
+    }
+}